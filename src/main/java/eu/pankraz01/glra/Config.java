@@ -11,6 +11,11 @@ public class Config {
         MARIADB
     }
 
+    public enum RollbackLogBackend {
+        DATABASE,
+        JOURNAL
+    }
+
     private static final ModConfigSpec.Builder BUILDER = new ModConfigSpec.Builder();
 
     // Which database implementation should be used (case-insensitive)
@@ -44,15 +49,223 @@ public class Config {
             .comment("SQLite database file (used when dbType=SQLITE); relative paths are resolved from the server root")
             .define("dbFile", "config/grieflogger/grieflogger.sqlite");
 
+    static {
+        BUILDER.push("dbPool");
+    }
+
+    public static final ModConfigSpec.IntValue DB_POOL_SQLITE_MAX_SIZE = BUILDER
+            .comment("Maximum open connections to the SQLite file (SQLite allows only one writer at a time, so keep this small)")
+            .defineInRange("sqliteMaxSize", 4, 1, 64);
+
+    public static final ModConfigSpec.IntValue DB_POOL_MYSQL_MAX_SIZE = BUILDER
+            .comment("Maximum open connections to MySQL/MariaDB")
+            .defineInRange("mysqlMaxSize", 8, 1, 256);
+
+    public static final ModConfigSpec.IntValue DB_POOL_MAX_LIFETIME_MINUTES = BUILDER
+            .comment("Replace pooled connections after this many minutes (keep below the server's wait_timeout on MySQL/MariaDB)")
+            .defineInRange("maxLifetimeMinutes", 30, 1, 1440);
+
+    public static final ModConfigSpec.IntValue DB_POOL_IDLE_TIMEOUT_MINUTES = BUILDER
+            .comment("Close connections that have been idle for this many minutes")
+            .defineInRange("idleTimeoutMinutes", 10, 1, 1440);
+
+    public static final ModConfigSpec.IntValue DB_POOL_VALIDATION_SECONDS = BUILDER
+            .comment("Validate an idle connection before reuse if it has not been used for this many seconds")
+            .defineInRange("validationIntervalSeconds", 30, 0, 3600);
+
+    public static final ModConfigSpec.IntValue DB_POOL_ACQUIRE_TIMEOUT_MS = BUILDER
+            .comment("How long a caller waits for a free connection before failing")
+            .defineInRange("acquireTimeoutMs", 10000, 100, 600000);
+
+    public static final ModConfigSpec.IntValue DB_POOL_LEAK_DETECTION_SECONDS = BUILDER
+            .comment("Log a warning (with the borrowing stack trace) for connections held longer than this many seconds (0 = off)")
+            .defineInRange("leakDetectionSeconds", 60, 0, 3600);
+
+    public static final ModConfigSpec.IntValue DB_POOL_STATEMENT_CACHE_SIZE = BUILDER
+            .comment("Prepared statements cached per pooled connection, keyed by SQL (0 = no caching)")
+            .defineInRange("statementCacheSize", 64, 0, 1024);
+
+    public static final ModConfigSpec.BooleanValue DB_POOL_MYSQL_SERVER_PREP_STMTS = BUILDER
+            .comment("Use server-side prepared statements on MySQL/MariaDB (useServerPrepStmts/cachePrepStmts); disable for proxies that do not support them")
+            .define("mysqlServerPrepStmts", true);
+
+    public static final ModConfigSpec.IntValue DB_POOL_STREAM_FETCH_SIZE = BUILDER
+            .comment("Rows fetched per round trip for large rollback/undo loads, streamed instead of buffering the whole result in memory (MySQL uses a server-side cursor, MariaDB fetch-size streaming; 0 = buffer everything)")
+            .defineInRange("streamFetchSize", 1000, 0, 100000);
+
+    static {
+        BUILDER.pop();
+    }
+
+    static {
+        BUILDER.push("dbHealth");
+    }
+
+    public static final ModConfigSpec.BooleanValue DB_HEALTH_ENABLED = BUILDER
+            .comment("Probe the database in the background and fail database calls fast while it is down (circuit breaker). If disabled, a failed startup connection check disables the addon until restart")
+            .define("enabled", true);
+
+    public static final ModConfigSpec.IntValue DB_HEALTH_PROBE_INTERVAL_SECONDS = BUILDER
+            .comment("Seconds between health probes")
+            .defineInRange("probeIntervalSeconds", 5, 1, 3600);
+
+    public static final ModConfigSpec.IntValue DB_HEALTH_PROBE_TIMEOUT_SECONDS = BUILDER
+            .comment("Timeout for validating the probe connection")
+            .defineInRange("probeTimeoutSeconds", 3, 1, 600);
+
+    public static final ModConfigSpec.IntValue DB_HEALTH_FAILURE_THRESHOLD = BUILDER
+            .comment("Consecutive failed probes or connection errors before the database is treated as down")
+            .defineInRange("failureThreshold", 3, 1, 100);
+
+    public static final ModConfigSpec.IntValue DB_HEALTH_SLOW_THRESHOLD_MS = BUILDER
+            .comment("Probe latency above which the database is reported as degraded in /gl db stats")
+            .defineInRange("slowThresholdMs", 500, 1, 600000);
+
+    static {
+        BUILDER.pop();
+    }
+
+    static {
+        BUILDER.push("readReplica");
+    }
+
+    public static final ModConfigSpec.BooleanValue READ_REPLICA_ENABLED = BUILDER
+            .comment("Read GriefLogger data (rollback loading, audit queries, player/dimension lists) from a MySQL/MariaDB replica; glra_* tables and web tokens always use the primary")
+            .define("enabled", false);
+
+    public static final ModConfigSpec.ConfigValue<String> READ_REPLICA_HOST = BUILDER
+            .comment("Replica host")
+            .define("host", "localhost");
+
+    public static final ModConfigSpec.IntValue READ_REPLICA_PORT = BUILDER
+            .comment("Replica port")
+            .defineInRange("port", 3306, 1, 65535);
+
+    public static final ModConfigSpec.ConfigValue<String> READ_REPLICA_NAME = BUILDER
+            .comment("Replica database name (empty = same as dbName)")
+            .define("name", "");
+
+    public static final ModConfigSpec.ConfigValue<String> READ_REPLICA_USER = BUILDER
+            .comment("Replica user (empty = same as dbUser/dbPassword)")
+            .define("user", "");
+
+    public static final ModConfigSpec.ConfigValue<String> READ_REPLICA_PASSWORD = BUILDER
+            .comment("Replica password (only used when user is set)")
+            .define("password", "");
+
+    public static final ModConfigSpec.IntValue READ_REPLICA_RECENT_WINDOW_SECONDS = BUILDER
+            .comment("Queries whose time window starts less than this many seconds ago read from the primary, since the replica may not have those rows yet")
+            .defineInRange("recentWindowSeconds", 300, 0, 86400);
+
+    public static final ModConfigSpec.IntValue READ_REPLICA_MAX_LAG_SECONDS = BUILDER
+            .comment("Read from the primary while the replica reports more replication lag than this (SHOW REPLICA STATUS, checked every 10 seconds; 0 = do not check)")
+            .defineInRange("maxLagSeconds", 30, 0, 86400);
+
+    static {
+        BUILDER.pop();
+    }
+
+    static {
+        BUILDER.push("sqlite");
+    }
+
+    public static final ModConfigSpec.BooleanValue SQLITE_SEPARATE_READ_WRITE = BUILDER
+            .comment("Use read-only connections for queries and a single serialized writer connection for glra_* tables (dbType=SQLITE only)")
+            .define("separateReadWrite", true);
+
+    public static final ModConfigSpec.ConfigValue<String> SQLITE_JOURNAL_MODE = BUILDER
+            .comment("PRAGMA journal_mode (WAL, DELETE, TRUNCATE, PERSIST, MEMORY, OFF, or empty to leave unchanged). WAL lets readers run alongside GriefLogger's writes; it is stored in the database file")
+            .define("journalMode", "WAL");
+
+    public static final ModConfigSpec.IntValue SQLITE_MMAP_SIZE_MB = BUILDER
+            .comment("PRAGMA mmap_size in MiB (0 = disabled)")
+            .defineInRange("mmapSizeMb", 256, 0, 65536);
+
+    public static final ModConfigSpec.IntValue SQLITE_CACHE_SIZE_KB = BUILDER
+            .comment("PRAGMA cache_size per connection in KiB (0 = SQLite default)")
+            .defineInRange("cacheSizeKb", 16384, 0, 4194304);
+
+    public static final ModConfigSpec.IntValue SQLITE_BUSY_TIMEOUT_MS = BUILDER
+            .comment("PRAGMA busy_timeout: how long a connection waits for a lock before failing with SQLITE_BUSY")
+            .defineInRange("busyTimeoutMs", 5000, 0, 600000);
+
+    public static final ModConfigSpec.ConfigValue<String> SQLITE_TEMP_STORE = BUILDER
+            .comment("PRAGMA temp_store (DEFAULT, FILE, MEMORY)")
+            .define("tempStore", "MEMORY");
+
+    static {
+        BUILDER.pop();
+    }
+
+    public static final ModConfigSpec.BooleanValue ANALYZE_INDEXES_ON_STARTUP = BUILDER
+            .comment("Check GriefLogger's blocks/containers/chats tables for recommended indexes and full scans at startup and log the result (fix with /gl db optimize)")
+            .define("analyzeIndexesOnStartup", true);
+
     // Rollback processing tuning
     public static final ModConfigSpec.IntValue ROLLBACK_BATCH_SIZE = BUILDER
             .comment("Number of rollback actions processed per server tick")
             .defineInRange("rollbackBatchSize", 200, 1, 10000);
 
+    public static final ModConfigSpec.IntValue ROLLBACK_LOAD_TIMEOUT_SECONDS = BUILDER
+            .comment("Abort a rollback/undo load query after this many seconds (0 = no limit)")
+            .defineInRange("rollbackLoadTimeoutSeconds", 600, 0, 86400);
+
+    public static final ModConfigSpec.BooleanValue ROLLBACK_COMPACT_BLOCKS = BUILDER
+            .comment("Replay only the final change per block position during a rollback instead of every intermediate change")
+            .define("rollbackCompactBlocks", false);
+
     public static final ModConfigSpec.IntValue PROGRESS_TICK_INTERVAL = BUILDER
             .comment("How many ticks between progress logs during a running rollback")
             .defineInRange("progressTickInterval", 20, 1, 1200);
 
+    public static final ModConfigSpec.IntValue ROLLBACK_LOG_QUEUE_CAPACITY = BUILDER
+            .comment("Maximum number of applied rollback actions buffered in memory until they are written to the undo log; rollback processing pauses while the buffer is full")
+            .defineInRange("rollbackLogQueueCapacity", 20000, 100, 1000000);
+
+    public static final ModConfigSpec.IntValue ROLLBACK_LOG_FLUSH_SIZE = BUILDER
+            .comment("Maximum number of undo log entries written per database transaction")
+            .defineInRange("rollbackLogFlushSize", 500, 1, 10000);
+
+    public static final ModConfigSpec.ConfigValue<String> ROLLBACK_LOG_BACKEND = BUILDER
+            .comment("Where applied rollback actions (the undo log) are stored: DATABASE (glra_rollback_actions) or JOURNAL (append-only memory-mapped files). Changing this requires a restart; existing entries are not migrated")
+            .define("rollbackLogBackend", "DATABASE");
+
+    public static final ModConfigSpec.ConfigValue<String> ROLLBACK_JOURNAL_DIR = BUILDER
+            .comment("Directory for undo journal segments (used when rollbackLogBackend=JOURNAL); relative paths are resolved from the server root")
+            .define("rollbackJournalDir", "config/grieflogger/rollback-journal");
+
+    public static final ModConfigSpec.IntValue ROLLBACK_JOURNAL_SEGMENT_MB = BUILDER
+            .comment("Maximum size of one undo journal segment file in MiB; segments start at 64 KiB and grow, and a job that outgrows one continues in the next")
+            .defineInRange("rollbackJournalSegmentMb", 16, 1, 1024);
+
+    static {
+        BUILDER.push("rollbackLogRetention");
+    }
+
+    public static final ModConfigSpec.IntValue RETENTION_MAX_AGE_DAYS = BUILDER
+            .comment("Delete undo log entries and history of rollbacks older than this many days (0 = keep forever)")
+            .defineInRange("maxAgeDays", 0, 0, 3650);
+
+    public static final ModConfigSpec.IntValue RETENTION_MAX_JOBS = BUILDER
+            .comment("Keep the undo log of at most this many recent rollbacks (0 = unlimited)")
+            .defineInRange("maxJobs", 0, 0, 1000000);
+
+    public static final ModConfigSpec.IntValue RETENTION_MAX_ROWS = BUILDER
+            .comment("Keep at most this many undo log entries; the oldest rollbacks are removed as a whole (0 = unlimited)")
+            .defineInRange("maxRows", 0, 0, Integer.MAX_VALUE);
+
+    public static final ModConfigSpec.IntValue RETENTION_INTERVAL_MINUTES = BUILDER
+            .comment("How often the retention task runs")
+            .defineInRange("intervalMinutes", 60, 1, 10080);
+
+    public static final ModConfigSpec.IntValue RETENTION_BATCH_SIZE = BUILDER
+            .comment("Undo log rows deleted per statement; small batches keep write locks short")
+            .defineInRange("batchSize", 1000, 10, 100000);
+
+    static {
+        BUILDER.pop();
+    }
+
     // Lightweight web UI / HTTP API for triggering rollbacks from outside the game
     public static final ModConfigSpec.BooleanValue WEB_API_ENABLED = BUILDER
             .comment("Enable a small built-in HTTP server with a web UI to trigger rollbacks (default: false)")
@@ -78,6 +291,14 @@ public class Config {
             .comment("Include inventory/container history in the audit dashboard (default: true)")
             .define("webAuditContainersEnabled", true);
 
+    public static final ModConfigSpec.IntValue WEB_AUDIT_STREAM_INTERVAL_MS = BUILDER
+            .comment("How often (milliseconds) the live audit stream checks the database for new rows; one check serves all open dashboards")
+            .defineInRange("webAuditStreamIntervalMs", 2000, 500, 60000);
+
+    public static final ModConfigSpec.IntValue WEB_AUDIT_DEADLINE_MS = BUILDER
+            .comment("Time (milliseconds) an /api/audit request waits for its sections, which are queried in parallel; sections still loading after that are reported as timed out and their queries cancelled. Keep it below the pool's acquireTimeoutMs")
+            .defineInRange("webAuditDeadlineMs", 5000, 500, 120000);
+
     static {
         BUILDER.push("logUnauthorizedWebAccess");
     }
@@ -114,12 +335,83 @@ public class Config {
             .comment("Optional shared secret required for web requests; leave empty to disable auth (not recommended)")
             .define("webApiToken", "");
 
+    static {
+        BUILDER.push("webLimits");
+    }
+
+    public static final ModConfigSpec.IntValue WEB_MAX_STATIC_REQUESTS = BUILDER
+            .comment("Maximum concurrent web requests for pages, stylesheets and translations; further requests get 503")
+            .defineInRange("maxStaticRequests", 64, 1, 4096);
+
+    public static final ModConfigSpec.IntValue WEB_MAX_DATABASE_REQUESTS = BUILDER
+            .comment("Maximum concurrent web requests that query the database (audit data, rollbacks, player/dimension lists); further requests get 503")
+            .defineInRange("maxDatabaseRequests", 8, 1, 1024);
+
+    public static final ModConfigSpec.IntValue WEB_MAX_EVENT_STREAMS = BUILDER
+            .comment("Maximum concurrently open live event streams (rollback progress); further connections get 503")
+            .defineInRange("maxEventStreams", 16, 1, 1024);
+
+    public static final ModConfigSpec.IntValue WEB_RETRY_AFTER_SECONDS = BUILDER
+            .comment("Retry-After value (seconds) sent with 503 responses when a limit is reached")
+            .defineInRange("retryAfterSeconds", 2, 1, 3600);
+
+    static {
+        BUILDER.pop();
+    }
+
+    public static final ModConfigSpec.IntValue WEB_TOKEN_RECONCILE_SECONDS = BUILDER
+            .comment("How often (seconds) the web server's in-memory copy of the per-user web tokens is reloaded from the database; /gl web token add/remove update it immediately")
+            .defineInRange("webTokenReconcileSeconds", 300, 10, 86400);
+
+    public static final ModConfigSpec.IntValue WEB_PROGRESS_INTERVAL_MS = BUILDER
+            .comment("How often (milliseconds) rollback progress is pushed to web pages watching /api/rollback/progress")
+            .defineInRange("webProgressIntervalMs", 1000, 100, 60000);
+
+    static {
+        BUILDER.push("webCompression");
+    }
+
+    public static final ModConfigSpec.BooleanValue WEB_COMPRESSION_ENABLED = BUILDER
+            .comment("Compress web API responses with gzip or deflate when the client accepts it")
+            .define("enabled", true);
+
+    public static final ModConfigSpec.IntValue WEB_COMPRESSION_MIN_BYTES = BUILDER
+            .comment("Only compress responses of at least this many bytes; small ones are not worth the CPU")
+            .defineInRange("minSizeBytes", 1024, 0, 16 * 1024 * 1024);
+
+    public static final ModConfigSpec.IntValue WEB_COMPRESSION_LEVEL = BUILDER
+            .comment("Deflate compression level (1 = fastest, 9 = smallest)")
+            .defineInRange("level", 6, 1, 9);
+
+    static {
+        BUILDER.pop();
+    }
+
     static final ModConfigSpec SPEC = BUILDER.build();
 
     public static DatabaseType databaseType() {
         return parseDatabaseType(DB_TYPE.get());
     }
 
+    /**
+     * Oldest rollback timestamp still covered by the retention policy, or 0 if entries never expire by age.
+     */
+    public static long retentionCutoffMillis() {
+        int days = RETENTION_MAX_AGE_DAYS.get();
+        if (days <= 0) return 0L;
+        return System.currentTimeMillis() - days * 86_400_000L;
+    }
+
+    public static RollbackLogBackend rollbackLogBackend() {
+        String raw = ROLLBACK_LOG_BACKEND.get();
+        if (raw == null) return RollbackLogBackend.DATABASE;
+        try {
+            return RollbackLogBackend.valueOf(raw.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return RollbackLogBackend.DATABASE;
+        }
+    }
+
     private static DatabaseType parseDatabaseType(String raw) {
         if (raw == null) return DatabaseType.SQLITE;
         try {
@@ -24,8 +24,13 @@ import eu.pankraz01.glra.Permissions;
 import net.neoforged.neoforge.event.server.ServerStartingEvent;
 import net.neoforged.neoforge.event.server.ServerStoppingEvent;
 import eu.pankraz01.glra.web.RollbackWebServer;
+import eu.pankraz01.glra.web.WebTokenCache;
 import net.minecraft.world.level.Level;
+import eu.pankraz01.glra.database.DatabaseHealthMonitor;
 import eu.pankraz01.glra.database.DatabaseSetup;
+import eu.pankraz01.glra.database.IndexAdvisor;
+import eu.pankraz01.glra.database.ItemDataMigration;
+import eu.pankraz01.glra.rollback.log.RollbackLogRetention;
 
 // The value here should match an entry in the META-INF/neoforge.mods.toml file
 @Mod(GriefloggerRollbackAddon.MODID)
@@ -65,19 +70,75 @@ public class GriefloggerRollbackAddon {
     // Public manager instance for other classes (commands, tests, etc.)
     public static RollbackManager ROLLBACK_MANAGER;
     private static volatile boolean ENABLED = true;
+    private static final long SETUP_RETRY_INITIAL_MS = 30_000L;
+    private static final long SETUP_RETRY_MAX_MS = 600_000L;
     private RollbackWebServer webServer;
 
     private void commonSetup(FMLCommonSetupEvent event) {
-        if (!verifyDatabaseConnection()) {
+        // Without the health monitor a failed connection check disables the addon for good, so that is decided here,
+        // before commands are registered against the manager; with it, the check can run in the background
+        boolean healthMonitor = Config.DB_HEALTH_ENABLED.get();
+        if (!healthMonitor && !verifyDatabaseConnection()) {
             disableAddon("Database connection failed; disabling Grieflogger Rollback Addon functionality");
             return;
         }
-
-        DatabaseSetup.ensureTables();
         ROLLBACK_MANAGER = new RollbackManager();
+        RollbackManager manager = ROLLBACK_MANAGER;
+        // Schema migrations need database round trips and may take long; keep them off the startup thread.
+        // Entry points refuse work until DatabaseSetup.isReady()
+        Thread setup = new Thread(() -> setupDatabase(manager, healthMonitor), "glra-db-setup");
+        setup.setDaemon(true);
+        setup.start();
         LOGGER.info("[Grieflogger Rollback Addon] Common setup complete");
     }
 
+    private void setupDatabase(RollbackManager manager, boolean healthMonitor) {
+        if (healthMonitor) {
+            boolean connected = verifyDatabaseConnection();
+            DatabaseHealthMonitor.start(connected);
+            if (!connected) {
+                LOGGER.warn(MOD_PREFIX + "Database unreachable; database setup will run once the connection works");
+            }
+        }
+
+        runDatabaseSetup(manager, SETUP_RETRY_INITIAL_MS);
+    }
+
+    private void runDatabaseSetup(RollbackManager manager, long retryDelayMs) {
+        // Runs immediately when connected, otherwise once on the health monitor thread after the database recovers
+        DatabaseHealthMonitor.whenAvailable(() -> {
+            try {
+                DatabaseSetup.ensureTables();
+            } catch (RuntimeException e) {
+                LOGGER.error(MOD_PREFIX + "Database setup failed; retrying in {} s", retryDelayMs / 1000, e);
+                scheduleSetupRetry(manager, retryDelayMs);
+                return;
+            }
+            ItemDataMigration.start();
+            WebTokenCache.requestReload();
+            RollbackLogRetention.start(manager.actionStore(), manager::currentJobHistoryId);
+            if (Config.ANALYZE_INDEXES_ON_STARTUP.get()) {
+                IndexAdvisor.analyzeInBackground();
+            }
+            LOGGER.info("[Grieflogger Rollback Addon] Database setup complete");
+        });
+    }
+
+    // A failed migration would otherwise leave every entry point refusing work until the server restarts
+    private void scheduleSetupRetry(RollbackManager manager, long delayMs) {
+        Thread retry = new Thread(() -> {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            runDatabaseSetup(manager, Math.min(delayMs * 2, SETUP_RETRY_MAX_MS));
+        }, "glra-db-setup");
+        retry.setDaemon(true);
+        retry.start();
+    }
+
     // You can use SubscribeEvent and let the Event Bus discover methods to call
     @SubscribeEvent
     public void onServerStarting(ServerStartingEvent event) {
@@ -88,6 +149,10 @@ public class GriefloggerRollbackAddon {
 
         // Do something when the server starts
         LOGGER.info("HELLO from server starting");
+        if (Config.DB_HEALTH_ENABLED.get()) {
+            // stopped with the previous server; on an integrated server the next world runs in the same process
+            DatabaseHealthMonitor.start(true);
+        }
         try {
             var server = event.getServer();
             if (server != null) {
@@ -114,6 +179,11 @@ public class GriefloggerRollbackAddon {
     @SubscribeEvent
     public void onServerStopping(ServerStoppingEvent event) {
         stopWebServerCommand();
+        if (ROLLBACK_MANAGER != null) {
+            ROLLBACK_MANAGER.flushActionLog(10_000L);
+        }
+        DatabaseHealthMonitor.stop();
+        DBConnection.shutdown();
     }
 
     public static boolean isEnabled() {
@@ -217,9 +287,11 @@ public class GriefloggerRollbackAddon {
             eu.pankraz01.glra.commands.web.WebCommandToken.register(dispatcher);
             eu.pankraz01.glra.commands.web.WebCommandWebserver.register(dispatcher);
             eu.pankraz01.glra.commands.ConfigCommand.register(dispatcher);
+            eu.pankraz01.glra.commands.DatabaseCommand.register(dispatcher);
             registered.add("/gl web token");
             registered.add("/gl web start/stop");
             registered.add("/gl config reload");
+            registered.add("/gl db stats");
             LOGGER.info(MOD_PREFIX + "Registered commands: {}", String.join(", ", registered));
         } catch (Exception e) {
             LOGGER.error(MOD_PREFIX + "Failed to register commands", e);
@@ -18,6 +18,7 @@ public final class Permissions {
     public static final PermissionNode<Boolean> COMMAND_WEB_TOKEN = booleanNode("command.web.token", DEFAULT_OP_LEVEL);
     public static final PermissionNode<Boolean> COMMAND_WEB_SERVER = booleanNode("command.web.server", DEFAULT_OP_LEVEL);
     public static final PermissionNode<Boolean> COMMAND_CONFIG_RELOAD = booleanNode("command.config.reload", DEFAULT_OP_LEVEL);
+    public static final PermissionNode<Boolean> COMMAND_DB = booleanNode("command.db", DEFAULT_OP_LEVEL);
     public static final PermissionNode<Boolean> NOTIFY_ROLLBACK = booleanNode("notify.rollback", DEFAULT_OP_LEVEL);
     public static final PermissionNode<Boolean> NOTIFY_WEB_ROLLBACK = booleanNode("notify.web.rollback", DEFAULT_OP_LEVEL);
     public static final PermissionNode<Boolean> NOTIFY_WEB_UNAUTHORIZED = booleanNode("notify.web.unauthorized", DEFAULT_OP_LEVEL);
@@ -36,6 +37,7 @@ public final class Permissions {
                 COMMAND_WEB_TOKEN,
                 COMMAND_WEB_SERVER,
                 COMMAND_CONFIG_RELOAD,
+                COMMAND_DB,
                 NOTIFY_ROLLBACK,
                 NOTIFY_WEB_ROLLBACK,
                 NOTIFY_WEB_UNAUTHORIZED
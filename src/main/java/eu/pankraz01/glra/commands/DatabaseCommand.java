@@ -0,0 +1,181 @@
+package eu.pankraz01.glra.commands;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+
+import eu.pankraz01.glra.Config;
+import eu.pankraz01.glra.GriefloggerRollbackAddon;
+import eu.pankraz01.glra.Permissions;
+import eu.pankraz01.glra.database.ConnectionPool;
+import eu.pankraz01.glra.database.DBConnection;
+import eu.pankraz01.glra.database.DatabaseHealthMonitor;
+import eu.pankraz01.glra.database.IndexAdvisor;
+
+/**
+ * Database diagnostics (`/gl db ...`).
+ */
+public final class DatabaseCommand {
+    private static final String LANG_BASE = "message.griefloggerrollbackaddon.db.";
+    private static final String STATS_NONE = LANG_BASE + "stats.none";
+    private static final String STATS_POOL = LANG_BASE + "stats.pool";
+    private static final String STATS_HEALTH = LANG_BASE + "stats.health";
+    private static final String STATS_HEALTH_DOWN = LANG_BASE + "stats.health_down";
+    private static final String INDEX_BUSY = LANG_BASE + "index.busy";
+    private static final String ANALYZE_STARTED = LANG_BASE + "analyze.started";
+    private static final String ANALYZE_OK = LANG_BASE + "analyze.ok";
+    private static final String ANALYZE_MISSING = LANG_BASE + "analyze.missing";
+    private static final String ANALYZE_SCAN = LANG_BASE + "analyze.scan";
+    private static final String ANALYZE_EXPLAIN_FAILED = LANG_BASE + "analyze.explain_failed";
+    private static final String ANALYZE_HINT = LANG_BASE + "analyze.hint";
+    private static final String ANALYZE_FAILED = LANG_BASE + "analyze.failed";
+    private static final String OPTIMIZE_SQLITE_CONFIRM = LANG_BASE + "optimize.sqlite_confirm";
+    private static final String OPTIMIZE_STARTED = LANG_BASE + "optimize.started";
+    private static final String OPTIMIZE_NONE = LANG_BASE + "optimize.none";
+    private static final String OPTIMIZE_CREATED = LANG_BASE + "optimize.created";
+    private static final String OPTIMIZE_INDEX_FAILED = LANG_BASE + "optimize.index_failed";
+    private static final String OPTIMIZE_DONE = LANG_BASE + "optimize.done";
+
+    // analyze/optimize run off the server thread; only one at a time
+    private static final AtomicBoolean INDEX_TASK_RUNNING = new AtomicBoolean(false);
+
+    private DatabaseCommand() {}
+
+    @SuppressWarnings("null")
+    public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("gl")
+                .then(Commands.literal("db")
+                        .requires(src -> Permissions.has(src, Permissions.COMMAND_DB, Permissions.defaultOpLevel()))
+                        .then(Commands.literal("stats")
+                                .executes(DatabaseCommand::stats))
+                        .then(Commands.literal("analyze")
+                                .executes(DatabaseCommand::analyze))
+                        .then(Commands.literal("optimize")
+                                .executes(ctx -> optimize(ctx, false))
+                                .then(Commands.literal("confirm")
+                                        .executes(ctx -> optimize(ctx, true))))));
+    }
+
+    private static int stats(CommandContext<CommandSourceStack> ctx) {
+        if (Config.DB_HEALTH_ENABLED.get()) {
+            sendHealth(ctx);
+        }
+        var stats = DBConnection.poolStats();
+        if (stats.isEmpty()) {
+            ctx.getSource().sendSuccess(() -> Component.translatableWithFallback(STATS_NONE, "No database connections opened yet"), false);
+            return 1;
+        }
+        for (ConnectionPool.Stats s : stats) {
+            ctx.getSource().sendSuccess(() -> Component.translatableWithFallback(STATS_POOL,
+                    "Pool %s: %s active, %s idle, %s waiting (max %s) | opened %s, closed %s, borrowed %s, timeouts %s, leaks %s | statement cache %s hits, %s misses",
+                    s.name(), s.active(), s.idle(), s.waiting(), s.maxSize(), s.created(), s.closed(), s.borrowed(), s.timeouts(), s.leaks(),
+                    s.statementHits(), s.statementMisses()), false);
+        }
+        return stats.size();
+    }
+
+    private static void sendHealth(CommandContext<CommandSourceStack> ctx) {
+        DatabaseHealthMonitor.Snapshot health = DatabaseHealthMonitor.snapshot();
+        if (health.state() == DatabaseHealthMonitor.State.DOWN) {
+            long downSeconds = Math.max(0L, System.currentTimeMillis() - health.downSinceMillis()) / 1000L;
+            ctx.getSource().sendSuccess(() -> Component.translatableWithFallback(STATS_HEALTH_DOWN,
+                    "Database DOWN for %s s (%s) | %s calls rejected",
+                    downSeconds, String.valueOf(health.lastError()), health.rejectedCalls()), false);
+            return;
+        }
+        ctx.getSource().sendSuccess(() -> Component.translatableWithFallback(STATS_HEALTH,
+                "Database %s | probe %s ms (avg %s ms), error rate %s%% | %s probes, %s failed, %s calls rejected",
+                health.state(), health.lastLatencyMs(), health.avgLatencyMs(), health.errorRatePercent(),
+                health.probes(), health.failedProbes(), health.rejectedCalls()), false);
+    }
+
+    private static int analyze(CommandContext<CommandSourceStack> ctx) {
+        CommandSourceStack source = ctx.getSource();
+        return runIndexTask(source, ANALYZE_STARTED, "Analyzing GriefLogger indexes...", () -> {
+            IndexAdvisor.Report report = IndexAdvisor.analyze();
+            if (report.healthy()) {
+                reply(source, () -> Component.translatableWithFallback(ANALYZE_OK, "All recommended indexes exist and no query scans a whole table"));
+                return;
+            }
+            for (IndexAdvisor.IndexRecommendation rec : report.missing()) {
+                reply(source, () -> Component.translatableWithFallback(ANALYZE_MISSING, "Missing index: %s", rec.describe()));
+            }
+            for (IndexAdvisor.FullScan scan : report.fullScans()) {
+                reply(source, () -> Component.translatableWithFallback(ANALYZE_SCAN, "Full scan of %s in %s (%s)", scan.table(), scan.shape(), scan.detail()));
+            }
+            for (String error : report.errors()) {
+                reply(source, () -> Component.translatableWithFallback(ANALYZE_EXPLAIN_FAILED, "Could not explain %s", error));
+            }
+            if (!report.missing().isEmpty()) {
+                reply(source, () -> Component.translatableWithFallback(ANALYZE_HINT, "Run /gl db optimize to create the missing indexes"));
+            }
+        });
+    }
+
+    private static int optimize(CommandContext<CommandSourceStack> ctx, boolean confirmed) {
+        CommandSourceStack source = ctx.getSource();
+        if (Config.databaseType() == Config.DatabaseType.SQLITE && !confirmed) {
+            // SQLite has no online index build: GriefLogger cannot write until each index is done
+            source.sendFailure(Component.translatableWithFallback(OPTIMIZE_SQLITE_CONFIRM,
+                    "On SQLite, creating indexes blocks GriefLogger's logging until finished (can take minutes on large databases). Run /gl db optimize confirm to proceed"));
+            return 0;
+        }
+        return runIndexTask(source, OPTIMIZE_STARTED, "Creating missing indexes in the background...", () -> {
+            List<IndexAdvisor.CreateResult> results = IndexAdvisor.createMissingIndexes();
+            if (results.isEmpty()) {
+                reply(source, () -> Component.translatableWithFallback(OPTIMIZE_NONE, "No missing indexes"));
+                return;
+            }
+            int created = 0;
+            for (IndexAdvisor.CreateResult result : results) {
+                if (result.success()) {
+                    created++;
+                    reply(source, () -> Component.translatableWithFallback(OPTIMIZE_CREATED, "Created index %s on %s (%s ms)",
+                            result.index().name(), result.index().describe(), result.millis()));
+                } else {
+                    reply(source, () -> Component.translatableWithFallback(OPTIMIZE_INDEX_FAILED, "Could not create index %s on %s: %s",
+                            result.index().name(), result.index().describe(), result.error()));
+                }
+            }
+            int createdCount = created;
+            reply(source, () -> Component.translatableWithFallback(OPTIMIZE_DONE, "Index optimization finished: %s created, %s failed",
+                    createdCount, results.size() - createdCount));
+        });
+    }
+
+    private interface IndexTask {
+        void run() throws Exception;
+    }
+
+    private static int runIndexTask(CommandSourceStack source, String startedKey, String startedFallback, IndexTask task) {
+        if (!INDEX_TASK_RUNNING.compareAndSet(false, true)) {
+            source.sendFailure(Component.translatableWithFallback(INDEX_BUSY, "An index analysis or optimization is already running"));
+            return 0;
+        }
+        source.sendSuccess(() -> Component.translatableWithFallback(startedKey, startedFallback), false);
+        Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                GriefloggerRollbackAddon.LOGGER.warn(GriefloggerRollbackAddon.MOD_PREFIX + "Index task failed", e);
+                reply(source, () -> Component.translatableWithFallback(ANALYZE_FAILED, "Index analysis failed: %s", String.valueOf(e.getMessage())));
+            } finally {
+                INDEX_TASK_RUNNING.set(false);
+            }
+        }, "glra-index-advisor");
+        thread.setDaemon(true);
+        thread.start();
+        return 1;
+    }
+
+    // Results arrive on the worker thread; send them from the server thread
+    private static void reply(CommandSourceStack source, Supplier<Component> message) {
+        source.getServer().execute(() -> source.sendSuccess(message, false));
+    }
+}
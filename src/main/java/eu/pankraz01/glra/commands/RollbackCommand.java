@@ -19,6 +19,7 @@ import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.server.MinecraftServer;
 
 import eu.pankraz01.glra.GriefloggerRollbackAddon;
+import eu.pankraz01.glra.database.DatabaseSetup;
 import eu.pankraz01.glra.Messages;
 import eu.pankraz01.glra.Permissions;
 import eu.pankraz01.glra.rollback.RollbackManager;
@@ -29,6 +30,8 @@ public final class RollbackCommand {
     private static final String LANG_BASE = "message.griefloggerrollbackaddon.rollback.";
     private static final String USAGE_KEY = LANG_BASE + "usage";
     private static final String DISABLED_KEY = LANG_BASE + "disabled";
+    private static final String NOT_READY_KEY = LANG_BASE + "not_ready";
+    private static final String SETUP_FAILED_KEY = LANG_BASE + "setup_failed";
     private static final String NOT_INITIALIZED_KEY = LANG_BASE + "not_initialized";
     private static final String DUPLICATE_KIND_KEY = LANG_BASE + "parse.duplicate_kind";
     private static final String INVALID_ARGUMENT_KEY = LANG_BASE + "parse.invalid_argument";
@@ -75,6 +78,12 @@ public final class RollbackCommand {
             ctx.getSource().sendFailure(tr(DISABLED_KEY, "Rollback addon is disabled because no database connection was available during startup"));
             return 0;
         }
+        if (!DatabaseSetup.isReady()) {
+            ctx.getSource().sendFailure(DatabaseSetup.hasFailed()
+                    ? tr(SETUP_FAILED_KEY, "Database setup failed and is being retried; see the server log")
+                    : tr(NOT_READY_KEY, "Database setup is still running; try again in a moment"));
+            return 0;
+        }
 
         ParseResult result = parseArgs(rawArgs);
         if (!result.success()) {
@@ -13,17 +13,21 @@ import net.minecraft.ChatFormatting;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
 
+import eu.pankraz01.glra.Config;
 import eu.pankraz01.glra.GriefloggerRollbackAddon;
+import eu.pankraz01.glra.database.DatabaseSetup;
 import eu.pankraz01.glra.Permissions;
 import eu.pankraz01.glra.database.dao.RollbackActionLogDAO;
 import eu.pankraz01.glra.database.dao.RollbackHistoryDAO;
+import eu.pankraz01.glra.rollback.log.RollbackLogRetention;
 
 public final class RollbackUndoCommand {
     private static final String LANG_BASE = "message.griefloggerrollbackaddon.rollback.undo.";
     private static final String DISABLED_KEY = "message.griefloggerrollbackaddon.rollback.disabled";
+    private static final String NOT_READY_KEY = "message.griefloggerrollbackaddon.rollback.not_ready";
+    private static final String SETUP_FAILED_KEY = "message.griefloggerrollbackaddon.rollback.setup_failed";
     private static final String NOT_INITIALIZED_KEY = "message.griefloggerrollbackaddon.rollback.not_initialized";
     private static final RollbackHistoryDAO HISTORY = new RollbackHistoryDAO();
-    private static final RollbackActionLogDAO ACTION_LOG = new RollbackActionLogDAO();
 
     private RollbackUndoCommand() {
     }
@@ -45,6 +49,12 @@ public final class RollbackUndoCommand {
             ctx.getSource().sendFailure(tr(DISABLED_KEY, "Rollback addon is disabled because no database connection was available during startup"));
             return 0;
         }
+        if (!DatabaseSetup.isReady()) {
+            ctx.getSource().sendFailure(DatabaseSetup.hasFailed()
+                    ? tr(SETUP_FAILED_KEY, "Database setup failed and is being retried; see the server log")
+                    : tr(NOT_READY_KEY, "Database setup is still running; try again in a moment"));
+            return 0;
+        }
 
         var mgr = GriefloggerRollbackAddon.ROLLBACK_MANAGER;
         if (mgr == null) {
@@ -55,6 +65,10 @@ public final class RollbackUndoCommand {
         List<Long> jobIds;
         try {
             jobIds = HISTORY.loadRecentHistoryIds(steps);
+            long maxRows = Config.RETENTION_MAX_ROWS.get();
+            if (maxRows > 0) {
+                jobIds.removeAll(RollbackLogRetention.beyondRowLimit(mgr.actionStore().countActionsByJob(), maxRows));
+            }
         } catch (Exception e) {
             GriefloggerRollbackAddon.LOGGER.warn(GriefloggerRollbackAddon.MOD_PREFIX + "Could not load rollback history for undo", e);
             ctx.getSource().sendFailure(tr(LANG_BASE + "history_error", "Could not load rollback history"));
@@ -68,7 +82,7 @@ public final class RollbackUndoCommand {
 
         List<RollbackActionLogDAO.LoggedRollbackAction> actions;
         try {
-            actions = ACTION_LOG.loadActionsForJobs(jobIds);
+            actions = mgr.actionStore().loadActionsForJobs(jobIds);
         } catch (Exception e) {
             GriefloggerRollbackAddon.LOGGER.warn(GriefloggerRollbackAddon.MOD_PREFIX + "Could not load rollback actions for undo", e);
             ctx.getSource().sendFailure(tr(LANG_BASE + "actions_error", "Could not load rollback actions for undo"));
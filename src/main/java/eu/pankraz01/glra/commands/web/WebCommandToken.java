@@ -20,7 +20,9 @@ import net.minecraft.network.chat.Style;
 
 import eu.pankraz01.glra.GriefloggerRollbackAddon;
 import eu.pankraz01.glra.Permissions;
+import eu.pankraz01.glra.database.DatabaseSetup;
 import eu.pankraz01.glra.database.dao.WebTokenDAO;
+import eu.pankraz01.glra.web.WebTokenCache;
 
 /**
  * Handles /gl web token ... commands.
@@ -38,6 +40,8 @@ public final class WebCommandToken {
     private static final String LIST_EMPTY = LANG_WEB_BASE + "token.list.empty";
     private static final String LIST_COPY_HINT = LANG_WEB_BASE + "token.list.copy_hint";
     private static final String DISABLED = "message.griefloggerrollbackaddon.rollback.disabled";
+    private static final String NOT_READY = "message.griefloggerrollbackaddon.rollback.not_ready";
+    private static final String SETUP_FAILED = "message.griefloggerrollbackaddon.rollback.setup_failed";
 
     private WebCommandToken() {}
 
@@ -67,8 +71,16 @@ public final class WebCommandToken {
             ctx.getSource().sendFailure(Component.translatableWithFallback(DISABLED, "Rollback addon is disabled because no database connection was available during startup"));
             return 0;
         }
+        if (!DatabaseSetup.isReady()) {
+            ctx.getSource().sendFailure(DatabaseSetup.hasFailed()
+                    ? tr(SETUP_FAILED, "Database setup failed and is being retried; see the server log")
+                    : tr(NOT_READY, "Database setup is still running; try again in a moment"));
+            return 0;
+        }
         try {
-            String token = TOKENS.createOrReplace(playerName);
+            WebTokenDAO.TokenInfo created = TOKENS.createOrReplace(playerName);
+            WebTokenCache.tokenCreated(created);
+            String token = created.token();
             var msg = tr(CREATED_TITLE, "Web token created").copy();
             msg.setStyle(msg.getStyle().applyFormat(ChatFormatting.GOLD).applyFormat(ChatFormatting.BOLD));
             var playerLabel = tr(CREATED_PLAYER, "Player: ").copy();
@@ -108,9 +120,16 @@ public final class WebCommandToken {
             ctx.getSource().sendFailure(Component.translatableWithFallback(DISABLED, "Rollback addon is disabled because no database connection was available during startup"));
             return 0;
         }
+        if (!DatabaseSetup.isReady()) {
+            ctx.getSource().sendFailure(DatabaseSetup.hasFailed()
+                    ? tr(SETUP_FAILED, "Database setup failed and is being retried; see the server log")
+                    : tr(NOT_READY, "Database setup is still running; try again in a moment"));
+            return 0;
+        }
         try {
             boolean removed = TOKENS.remove(playerName);
             if (removed) {
+                WebTokenCache.invalidate(playerName);
                 ctx.getSource().sendSuccess(() -> tr(REMOVED, "Removed token for %s", playerName), false);
                 return 1;
             }
@@ -129,6 +148,12 @@ public final class WebCommandToken {
             ctx.getSource().sendFailure(Component.translatableWithFallback(DISABLED, "Rollback addon is disabled because no database connection was available during startup"));
             return 0;
         }
+        if (!DatabaseSetup.isReady()) {
+            ctx.getSource().sendFailure(DatabaseSetup.hasFailed()
+                    ? tr(SETUP_FAILED, "Database setup failed and is being retried; see the server log")
+                    : tr(NOT_READY, "Database setup is still running; try again in a moment"));
+            return 0;
+        }
         final int pageSize = 7;
         int offset = (page - 1) * pageSize;
         try {
@@ -64,8 +64,14 @@ public final class Action {
     }
 
     public Kind kind() {
-        // Group action codes by how they affect the world state for rollback.
-        return switch (actionType()) {
+        return kindOf(actionType());
+    }
+
+    /**
+     * Group action codes by how they affect the world state for rollback.
+     */
+    public static Kind kindOf(ActionType type) {
+        return switch (type) {
             case BREAK_BLOCK, TNT_IGNITE, TNT_EXPLOSION, TNT_REDSTONE, UNKNOWN_BREAK -> Kind.BREAK;
             case PLACE_BLOCK -> Kind.PLACE;
             default -> Kind.OTHER;
@@ -0,0 +1,98 @@
+package eu.pankraz01.glra.database;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.Config;
+
+/**
+ * Handle on the statement a long-running load is currently executing, so another thread can abort it with
+ * {@link Statement#cancel()} instead of waiting for the query to finish. One instance per job; DAOs call
+ * {@link #begin(Statement)} before executing and {@link #end(Statement)} when done, and {@link #onRow()} while reading.
+ */
+public final class CancellableQuery {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    /** SQLState for "query canceled". */
+    public static final String SQLSTATE_CANCELLED = "57014";
+    private static final int ROWS_PER_CHECK = 1024;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final AtomicReference<Statement> active = new AtomicReference<>();
+    private final int timeoutSeconds;
+    private int rows;
+
+    /**
+     * A query limited by `rollbackLoadTimeoutSeconds`.
+     */
+    public CancellableQuery() {
+        this(Config.ROLLBACK_LOAD_TIMEOUT_SECONDS.get());
+    }
+
+    /**
+     * A query whose statements time out after {@code timeoutSeconds}; 0 = no limit.
+     */
+    public CancellableQuery(int timeoutSeconds) {
+        this.timeoutSeconds = Math.max(0, timeoutSeconds);
+    }
+
+    /**
+     * Register the statement about to run and apply the timeout. Fails if already cancelled.
+     */
+    public void begin(Statement statement) throws SQLException {
+        checkCancelled();
+        // always set: pooled statements are reused, 0 = no limit
+        statement.setQueryTimeout(timeoutSeconds);
+        active.set(statement);
+        // cancel() may have run between the check and the registration
+        if (cancelled.get()) {
+            active.compareAndSet(statement, null);
+            throw cancelledException();
+        }
+    }
+
+    public void end(Statement statement) {
+        active.compareAndSet(statement, null);
+    }
+
+    /**
+     * Call once per fetched row; checks the cancel flag every few pages worth of rows.
+     */
+    public void onRow() throws SQLException {
+        if (++rows % ROWS_PER_CHECK == 0) {
+            checkCancelled();
+        }
+    }
+
+    public void checkCancelled() throws SQLException {
+        if (cancelled.get()) {
+            throw cancelledException();
+        }
+    }
+
+    /**
+     * Mark the load as cancelled and abort the statement that is currently running, if any. Safe to call from any thread.
+     */
+    public void cancel() {
+        if (!cancelled.compareAndSet(false, true)) return;
+        Statement statement = active.get();
+        if (statement == null) return;
+        try {
+            statement.cancel();
+        } catch (SQLException e) {
+            LOGGER.warn("[GLRA] Failed to cancel running query: {}", e.getMessage());
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    private static SQLException cancelledException() {
+        return new SQLException("Query cancelled", SQLSTATE_CANCELLED);
+    }
+}
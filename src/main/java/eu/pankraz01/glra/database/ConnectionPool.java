@@ -0,0 +1,490 @@
+package eu.pankraz01.glra.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+/**
+ * Small bounded JDBC connection pool. Callers keep using plain {@link Connection}s: {@code close()} on the handed-out
+ * connection returns the physical connection to the pool instead of closing it.
+ * <p>
+ * Idle connections are validated before reuse once they have been unused for a while, physical connections are
+ * replaced after their max lifetime, and connections borrowed for longer than the leak threshold are reported
+ * together with the stack trace of the code that borrowed them.
+ * <p>
+ * Each physical connection keeps an LRU cache of prepared statements keyed by SQL text, so the fixed DAO query
+ * shapes are parsed and planned once per connection. Closing a cached statement only clears its parameters.
+ */
+public final class ConnectionPool {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long HOUSEKEEPING_INTERVAL_MS = 5_000L;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private static final ScheduledExecutorService HOUSEKEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "glra-db-pool-housekeeper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    public record Settings(int maxSize, long maxLifetimeMs, long idleTimeoutMs, long validationIntervalMs,
+                           long acquireTimeoutMs, long leakThresholdMs, int statementCacheSize) {
+    }
+
+    public record Stats(String name, int maxSize, int active, int idle, int waiting, long created, long closed,
+                        long borrowed, long timeouts, long leaks, long statementHits, long statementMisses) {
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final Settings settings;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> inUse = ConcurrentHashMap.newKeySet();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+    private final ScheduledFuture<?> housekeeping;
+    private volatile boolean shutdown;
+
+    public ConnectionPool(String name, ConnectionFactory factory, Settings settings) {
+        this.name = name;
+        this.factory = factory;
+        this.settings = settings;
+        this.permits = new Semaphore(Math.max(1, settings.maxSize()), true);
+        this.housekeeping = HOUSEKEEPER.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_INTERVAL_MS, HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Borrow a connection, waiting up to the acquire timeout if all connections are in use.
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) throw new SQLException("Connection pool " + name + " is shut down");
+        try {
+            if (!permits.tryAcquire(settings.acquireTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLTimeoutException("Timed out after " + settings.acquireTimeoutMs() + " ms waiting for a database connection (" + name + " pool, "
+                        + inUse.size() + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeIdle();
+            if (pooled == null) {
+                pooled = new PooledConnection(factory.open());
+                created.incrementAndGet();
+            }
+            return borrow(pooled);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    public Stats stats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        return new Stats(name, settings.maxSize(), inUse.size(), idleCount, permits.getQueueLength(), created.get(), closed.get(),
+                borrowed.get(), timeouts.get(), leaks.get(), statementHits.get(), statementMisses.get());
+    }
+
+    /**
+     * Close idle connections and stop handing out new ones; borrowed connections are closed when returned.
+     */
+    public void shutdown() {
+        shutdown = true;
+        housekeeping.cancel(false);
+        List<PooledConnection> toClose;
+        synchronized (idle) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        toClose.forEach(this::closePhysical);
+    }
+
+    private PooledConnection takeIdle() {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (idle) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) return null;
+
+            long now = System.currentTimeMillis();
+            if (isExpired(pooled, now)) {
+                closePhysical(pooled);
+                continue;
+            }
+            if (now - pooled.lastUsedAt >= settings.validationIntervalMs() && !isValid(pooled)) {
+                LOGGER.debug("Discarding stale {} pool connection", name);
+                closePhysical(pooled);
+                continue;
+            }
+            return pooled;
+        }
+    }
+
+    private Connection borrow(PooledConnection pooled) {
+        pooled.borrowedAt = System.currentTimeMillis();
+        pooled.borrowSite = settings.leakThresholdMs() > 0 ? new Exception("Connection borrowed here") : null;
+        pooled.leakReported = false;
+        inUse.add(pooled);
+        borrowed.incrementAndGet();
+        Handle handle = new Handle(pooled);
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { Connection.class }, handle);
+    }
+
+    private void release(PooledConnection pooled) {
+        inUse.remove(pooled);
+        try {
+            pooled.dropStatementsInUse();
+            if (!pooled.broken) {
+                try {
+                    if (!pooled.physical.getAutoCommit()) {
+                        pooled.physical.rollback();
+                        pooled.physical.setAutoCommit(true);
+                    }
+                    pooled.physical.clearWarnings();
+                } catch (SQLException e) {
+                    pooled.broken = true;
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (pooled.broken || shutdown || isExpired(pooled, now)) {
+                closePhysical(pooled);
+                return;
+            }
+            pooled.lastUsedAt = now;
+            synchronized (idle) {
+                idle.addFirst(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> toClose = new ArrayList<>();
+        synchronized (idle) {
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                if (isExpired(pooled, now) || now - pooled.lastUsedAt >= settings.idleTimeoutMs()) {
+                    it.remove();
+                    toClose.add(pooled);
+                }
+            }
+        }
+        toClose.forEach(this::closePhysical);
+
+        long threshold = settings.leakThresholdMs();
+        if (threshold <= 0) return;
+        for (PooledConnection pooled : inUse) {
+            if (!pooled.leakReported && now - pooled.borrowedAt >= threshold) {
+                pooled.leakReported = true;
+                leaks.incrementAndGet();
+                LOGGER.warn("Possible connection leak in {} pool: connection borrowed {} ms ago was not returned", name, now - pooled.borrowedAt, pooled.borrowSite);
+            }
+        }
+    }
+
+    private boolean isExpired(PooledConnection pooled, long now) {
+        return settings.maxLifetimeMs() > 0 && now - pooled.createdAt >= settings.maxLifetimeMs();
+    }
+
+    private static boolean isValid(PooledConnection pooled) {
+        try {
+            return pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void closePhysical(PooledConnection pooled) {
+        closed.incrementAndGet();
+        pooled.statements.clear(); // closed together with the connection
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            LOGGER.debug("Failed to close {} pool connection: {}", name, e.getMessage());
+        }
+    }
+
+    private static final class PooledConnection {
+        private final Connection physical;
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsedAt = createdAt;
+        private volatile long borrowedAt;
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported;
+        private volatile boolean broken;
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * Statements still marked in use when the connection comes back were never closed; do not reuse them.
+         */
+        private void dropStatementsInUse() {
+            Iterator<CachedStatement> it = statements.values().iterator();
+            while (it.hasNext()) {
+                CachedStatement cached = it.next();
+                if (cached.inUse) {
+                    it.remove();
+                    cached.closeQuietly();
+                }
+            }
+        }
+    }
+
+    private static final class CachedStatement {
+        private final PreparedStatement physical;
+        // settings as prepared; a caller's setFetchSize/setQueryTimeout/setMaxRows must not leak to the next borrower
+        private final int fetchSize;
+        private final int queryTimeout;
+        private final int maxRows;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(PreparedStatement physical) throws SQLException {
+            this.physical = physical;
+            this.fetchSize = physical.getFetchSize();
+            this.queryTimeout = physical.getQueryTimeout();
+            this.maxRows = physical.getMaxRows();
+        }
+
+        private void restoreSettings() throws SQLException {
+            if (physical.getFetchSize() != fetchSize) physical.setFetchSize(fetchSize);
+            if (physical.getQueryTimeout() != queryTimeout) physical.setQueryTimeout(queryTimeout);
+            if (physical.getMaxRows() != maxRows) physical.setMaxRows(maxRows);
+        }
+
+        private void closeQuietly() {
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                // connection is probably gone already
+            }
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection; after {@code close()} this handle is dead even if the physical connection
+     * has been handed out again.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private volatile boolean closed;
+
+        private Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        release(pooled);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || pooled.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled[" + name + "]" + pooled.physical;
+                }
+                default -> {
+                }
+            }
+            if (closed) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            if ("prepareStatement".equals(method.getName()) && args != null && args.length == 1 && settings.statementCacheSize() > 0) {
+                return prepareCached((Connection) proxy, (String) args[0]);
+            }
+            return invokePhysical(pooled, pooled.physical, method, args);
+        }
+
+        private PreparedStatement prepareCached(Connection proxy, String sql) throws Throwable {
+            CachedStatement cached = pooled.statements.get(sql);
+            if (cached != null && cached.inUse) {
+                // same SQL open twice on one connection: hand out an uncached statement, still behind a handle so
+                // getConnection() does not leak the physical connection
+                return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                        new StatementHandle(proxy, pooled.physical.prepareStatement(sql), null));
+            }
+            if (cached != null) {
+                statementHits.incrementAndGet();
+            } else {
+                statementMisses.incrementAndGet();
+                cached = new CachedStatement(pooled.physical.prepareStatement(sql));
+                pooled.statements.put(sql, cached);
+                evictStatements();
+            }
+            cached.inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                    new StatementHandle(proxy, cached.physical, cached));
+        }
+
+        private void evictStatements() {
+            Iterator<CachedStatement> it = pooled.statements.values().iterator();
+            while (pooled.statements.size() > settings.statementCacheSize() && it.hasNext()) {
+                CachedStatement eldest = it.next();
+                it.remove();
+                if (eldest.inUse) {
+                    eldest.evicted = true; // closed for real when its current user closes it
+                } else {
+                    eldest.closeQuietly();
+                }
+            }
+        }
+
+        /**
+         * One use of a cached statement; closing it makes the statement available again. Without a {@code cached}
+         * entry the statement is closed for real.
+         */
+        private final class StatementHandle implements InvocationHandler {
+            private final Connection connection;
+            private final PreparedStatement physical;
+            private final CachedStatement cached;
+            // read by threads cancelling the statement
+            private volatile boolean closed;
+            // last result set handed out; closed before the statement is reused
+            private ResultSet results;
+
+            private StatementHandle(Connection connection, PreparedStatement physical, CachedStatement cached) {
+                this.connection = connection;
+                this.physical = physical;
+                this.cached = cached;
+            }
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close" -> {
+                        if (!closed) {
+                            closed = true;
+                            recycle();
+                        }
+                        return null;
+                    }
+                    case "isClosed" -> {
+                        return closed || physical.isClosed();
+                    }
+                    case "getConnection" -> {
+                        return connection;
+                    }
+                    case "equals" -> {
+                        return proxy == args[0];
+                    }
+                    case "hashCode" -> {
+                        return System.identityHashCode(proxy);
+                    }
+                    case "toString" -> {
+                        return (cached == null ? "Uncached[" : "Cached[") + name + "]" + physical;
+                    }
+                    default -> {
+                    }
+                }
+                if (closed) {
+                    throw new SQLException("Statement is closed");
+                }
+                Object result = invokePhysical(pooled, physical, method, args);
+                if (result instanceof ResultSet rs) {
+                    results = rs;
+                }
+                return result;
+            }
+
+            private void recycle() {
+                if (cached == null || cached.evicted) {
+                    try {
+                        physical.close();
+                    } catch (SQLException ignored) {
+                        // connection is probably gone already
+                    }
+                    return;
+                }
+                try {
+                    if (results != null) {
+                        // a caller that did not close its result set must not leave it open for the next borrower
+                        results.close();
+                        results = null;
+                    }
+                    cached.physical.clearParameters();
+                    cached.physical.clearBatch();
+                    cached.restoreSettings();
+                    cached.inUse = false;
+                } catch (SQLException e) {
+                    pooled.statements.values().remove(cached);
+                    cached.closeQuietly();
+                }
+            }
+        }
+    }
+
+    private static Object invokePhysical(PooledConnection pooled, Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) {
+                // connection exception class: do not hand this connection out again
+                pooled.broken = true;
+            }
+            throw cause;
+        }
+    }
+}
@@ -2,36 +2,399 @@ package eu.pankraz01.glra.database;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
 
 import eu.pankraz01.glra.Config;
 
+/**
+ * Entry point for all database access. Connections come from a {@link ConnectionPool} that is created on first use
+ * (pool settings from the `dbPool` config section apply on the next start); closing a connection returns it to the pool.
+ * <p>
+ * On SQLite, {@link #getReadConnection()} hands out read-only connections while {@link #getConnection()} goes through a
+ * single writer connection, so our own writes are serialized and long reads do not hold write locks. On MySQL/MariaDB
+ * both use the same pool.
+ * <p>
+ * With the `readReplica` section enabled, {@link #getReplicaConnection(long)} serves reads of GriefLogger's own tables
+ * from a MySQL/MariaDB replica, unless the queried window is very recent or the replica reports too much lag.
+ * <p>
+ * While {@link DatabaseHealthMonitor} reports the database as down, all of these fail fast.
+ */
 public final class DBConnection {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final Set<String> SQLITE_JOURNAL_MODES = Set.of("WAL", "DELETE", "TRUNCATE", "PERSIST", "MEMORY", "OFF");
+    private static final Set<String> SQLITE_TEMP_STORES = Set.of("DEFAULT", "FILE", "MEMORY");
+    private static final String SQLITE_OPEN_READONLY = "1";
+    private static final long REPLICA_LAG_CHECK_INTERVAL_MS = 10_000L;
+    private static final long REPLICA_LAG_UNKNOWN = -1L;
+    private static final long REPLICA_UNAVAILABLE = Long.MAX_VALUE;
+
+    private static final Object LOCK = new Object();
+    private static volatile Pools pools;
+
+    private static final Object REPLICA_LAG_LOCK = new Object();
+    private static volatile long replicaLagSeconds = REPLICA_LAG_UNKNOWN;
+    private static volatile long replicaLagCheckedAt;
+    private static volatile boolean replicaLagCheckUnsupported;
+    // Physical connection of the health probe, kept outside the pools: a saturated pool must not look like an outage
+    private static final AtomicReference<Connection> PROBE_CONNECTION = new AtomicReference<>();
+
+    /**
+     * @param replica replica pool for GriefLogger reads, or {@code null} when reads stay on {@link #read}
+     */
+    private record Pools(ConnectionPool write, ConnectionPool read, ConnectionPool replica) {
+    }
+
+    private DBConnection() {
+    }
+
+    /**
+     * Connection for writes (and reads that must see them in the same transaction).
+     */
     public static Connection getConnection() throws SQLException {
-        return switch (Config.databaseType()) {
-            case SQLITE -> getSqliteConnection();
-            case MYSQL -> getMysqlConnection("mysql");
-            case MARIADB -> getMysqlConnection("mariadb");
-        };
+        return borrow(pools().write());
+    }
+
+    /**
+     * Connection for read-only queries. Never write through it: on SQLite it is opened read-only.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        return borrow(pools().read());
+    }
+
+    /**
+     * Connection for reading GriefLogger's tables (`blocks`, `containers`, `chats`, `users`, `levels`, ...) without a
+     * lower time bound. Uses the read replica when configured and not lagging, otherwise {@link #getReadConnection()}.
+     */
+    public static Connection getReplicaConnection() throws SQLException {
+        return getReplicaConnection(Long.MIN_VALUE);
+    }
+
+    /**
+     * Like {@link #getReplicaConnection()}, but stays on the primary when the query window starts within
+     * `readReplica.recentWindowSeconds`, since those rows may not have been replicated yet.
+     */
+    public static Connection getReplicaConnection(long windowStartMillis) throws SQLException {
+        DatabaseHealthMonitor.ensureAvailable();
+        Pools current = pools();
+        if (current.replica() == null || !replicaUsable(current.replica(), windowStartMillis)) {
+            return borrow(current.read());
+        }
+        try {
+            return current.replica().getConnection();
+        } catch (SQLException e) {
+            LOGGER.warn("[GLRA] Read replica unavailable, using the primary database: {}", e.getMessage());
+            replicaLagSeconds = REPLICA_UNAVAILABLE;
+            replicaLagCheckedAt = System.currentTimeMillis();
+            return borrow(current.read());
+        }
+    }
+
+    /**
+     * Validate the probe's own connection (opened on first use and after a failure), bypassing the pools and the
+     * circuit breaker. Used by {@link DatabaseHealthMonitor}, from its single probe thread.
+     */
+    static boolean probe(int timeoutSeconds) throws SQLException {
+        Connection conn = PROBE_CONNECTION.get();
+        try {
+            if (conn == null || conn.isClosed()) {
+                conn = openProbeConnection();
+                PROBE_CONNECTION.set(conn);
+            }
+            if (conn.isValid(timeoutSeconds)) return true;
+        } catch (SQLException e) {
+            closeProbeConnection();
+            throw e;
+        }
+        closeProbeConnection();
+        return false;
+    }
+
+    private static Connection openProbeConnection() throws SQLException {
+        Config.DatabaseType type = Config.databaseType();
+        if (type == Config.DatabaseType.SQLITE) {
+            return getSqliteConnection(Config.SQLITE_SEPARATE_READ_WRITE.get());
+        }
+        return getMysqlConnection(type == Config.DatabaseType.MARIADB ? "mariadb" : "mysql");
+    }
+
+    private static void closeProbeConnection() {
+        Connection conn = PROBE_CONNECTION.getAndSet(null);
+        if (conn == null) return;
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            LOGGER.debug("[GLRA] Could not close the health probe connection: {}", e.getMessage());
+        }
+    }
+
+    private static Connection borrow(ConnectionPool pool) throws SQLException {
+        DatabaseHealthMonitor.ensureAvailable();
+        Connection conn;
+        try {
+            conn = pool.getConnection();
+        } catch (SQLException e) {
+            DatabaseHealthMonitor.recordConnectionFailure(e);
+            throw e;
+        }
+        DatabaseHealthMonitor.recordConnectionSuccess();
+        return conn;
+    }
+
+    /**
+     * Stream the results of a potentially large query in `dbPool.streamFetchSize` row chunks instead of letting the
+     * MySQL/MariaDB driver buffer the whole result before the first {@code next()}. Call before executing.
+     */
+    public static void streamResults(Statement statement) throws SQLException {
+        int fetchSize = Config.DB_POOL_STREAM_FETCH_SIZE.get();
+        if (fetchSize > 0) {
+            // MySQL honours this through useCursorFetch (see getMysqlConnection), MariaDB streams natively, SQLite steps lazily anyway
+            statement.setFetchSize(fetchSize);
+        }
+    }
+
+    public static List<ConnectionPool.Stats> poolStats() {
+        Pools current = pools;
+        if (current == null) return List.of();
+        List<ConnectionPool.Stats> stats = new ArrayList<>();
+        stats.add(current.write().stats());
+        if (current.read() != current.write()) stats.add(current.read().stats());
+        if (current.replica() != null) stats.add(current.replica().stats());
+        return stats;
+    }
+
+    /**
+     * Configured size of the pool behind {@link #getReadConnection()} (the replica pool has the same size).
+     */
+    public static int readPoolSize() {
+        return Config.databaseType() == Config.DatabaseType.SQLITE ? Config.DB_POOL_SQLITE_MAX_SIZE.get() : Config.DB_POOL_MYSQL_MAX_SIZE.get();
+    }
+
+    /**
+     * Close idle pooled connections, e.g. when the server stops. A later {@link #getConnection()} creates new pools.
+     */
+    public static void shutdown() {
+        closeProbeConnection();
+        synchronized (LOCK) {
+            if (pools != null) {
+                pools.write().shutdown();
+                if (pools.read() != pools.write()) {
+                    pools.read().shutdown();
+                }
+                if (pools.replica() != null) {
+                    pools.replica().shutdown();
+                }
+                pools = null;
+                replicaLagSeconds = REPLICA_LAG_UNKNOWN;
+                replicaLagCheckedAt = 0L;
+                replicaLagCheckUnsupported = false;
+            }
+        }
+    }
+
+    private static Pools pools() {
+        Pools current = pools;
+        if (current != null) return current;
+        synchronized (LOCK) {
+            if (pools == null) {
+                pools = createPools();
+            }
+            return pools;
+        }
+    }
+
+    private static Pools createPools() {
+        Config.DatabaseType type = Config.databaseType();
+        if (type == Config.DatabaseType.SQLITE) {
+            int maxSize = Config.DB_POOL_SQLITE_MAX_SIZE.get();
+            if (!Config.SQLITE_SEPARATE_READ_WRITE.get()) {
+                ConnectionPool pool = new ConnectionPool("sqlite", () -> getSqliteConnection(false), poolSettings(maxSize));
+                return new Pools(pool, pool, null);
+            }
+            ConnectionPool writer = new ConnectionPool("sqlite-write", () -> getSqliteConnection(false), poolSettings(1));
+            ConnectionPool reader = new ConnectionPool("sqlite-read", () -> getSqliteConnection(true), poolSettings(maxSize));
+            return new Pools(writer, reader, null);
+        }
+        String driver = type == Config.DatabaseType.MARIADB ? "mariadb" : "mysql";
+        int maxSize = Config.DB_POOL_MYSQL_MAX_SIZE.get();
+        ConnectionPool pool = new ConnectionPool(driver, () -> getMysqlConnection(driver), poolSettings(maxSize));
+        ConnectionPool replica = null;
+        if (Config.READ_REPLICA_ENABLED.get()) {
+            replica = new ConnectionPool(driver + "-replica", () -> getReplicaMysqlConnection(driver), poolSettings(maxSize));
+        }
+        return new Pools(pool, pool, replica);
+    }
+
+    private static boolean replicaUsable(ConnectionPool replica, long windowStartMillis) {
+        long now = System.currentTimeMillis();
+        if (windowStartMillis > now - Config.READ_REPLICA_RECENT_WINDOW_SECONDS.get() * 1_000L) {
+            return false;
+        }
+        int maxLag = Config.READ_REPLICA_MAX_LAG_SECONDS.get();
+        if (maxLag <= 0 || replicaLagCheckUnsupported) {
+            return replicaLagSeconds != REPLICA_UNAVAILABLE || now - replicaLagCheckedAt >= REPLICA_LAG_CHECK_INTERVAL_MS;
+        }
+        if (now - replicaLagCheckedAt >= REPLICA_LAG_CHECK_INTERVAL_MS) {
+            synchronized (REPLICA_LAG_LOCK) {
+                if (now - replicaLagCheckedAt >= REPLICA_LAG_CHECK_INTERVAL_MS) {
+                    replicaLagSeconds = measureReplicaLag(replica);
+                    replicaLagCheckedAt = System.currentTimeMillis();
+                }
+            }
+        }
+        long lag = replicaLagSeconds;
+        return lag == REPLICA_LAG_UNKNOWN ? replicaLagCheckUnsupported : lag <= maxLag;
+    }
+
+    /**
+     * Seconds the replica is behind, {@link #REPLICA_UNAVAILABLE} if it cannot be reached or replication is stopped.
+     */
+    private static long measureReplicaLag(ConnectionPool replica) {
+        try (Connection conn = replica.getConnection(); Statement st = conn.createStatement()) {
+            SQLException lastError = null;
+            // MySQL 8.0.22+ / MariaDB 10.5.1+ first, then the older spelling
+            String[][] candidates = {
+                    {"SHOW REPLICA STATUS", "Seconds_Behind_Source"},
+                    {"SHOW SLAVE STATUS", "Seconds_Behind_Master"}
+            };
+            for (String[] candidate : candidates) {
+                try (ResultSet rs = st.executeQuery(candidate[0])) {
+                    if (!rs.next()) {
+                        // not configured as a replica (e.g. a cluster node): nothing to lag behind
+                        return 0L;
+                    }
+                    long lag = readLagColumn(rs, candidate[1]);
+                    return rs.wasNull() ? REPLICA_UNAVAILABLE : lag;
+                } catch (SQLException e) {
+                    lastError = e;
+                }
+            }
+            replicaLagCheckUnsupported = true;
+            LOGGER.warn("[GLRA] Cannot read replication lag from the read replica (needs REPLICATION CLIENT); lag will not be checked: {}",
+                    lastError != null ? lastError.getMessage() : "unknown error");
+            return REPLICA_LAG_UNKNOWN;
+        } catch (SQLException e) {
+            LOGGER.warn("[GLRA] Read replica unavailable, using the primary database: {}", e.getMessage());
+            return REPLICA_UNAVAILABLE;
+        }
     }
 
-    private static Connection getSqliteConnection() throws SQLException {
+    private static long readLagColumn(ResultSet rs, String column) throws SQLException {
+        try {
+            return rs.getLong(column);
+        } catch (SQLException e) {
+            // MariaDB keeps Seconds_Behind_Master in SHOW REPLICA STATUS
+            return rs.getLong("Seconds_Behind_Master");
+        }
+    }
+
+    private static ConnectionPool.Settings poolSettings(int maxSize) {
+        return new ConnectionPool.Settings(
+                maxSize,
+                Config.DB_POOL_MAX_LIFETIME_MINUTES.get() * 60_000L,
+                Config.DB_POOL_IDLE_TIMEOUT_MINUTES.get() * 60_000L,
+                Config.DB_POOL_VALIDATION_SECONDS.get() * 1_000L,
+                Config.DB_POOL_ACQUIRE_TIMEOUT_MS.get(),
+                Config.DB_POOL_LEAK_DETECTION_SECONDS.get() * 1_000L,
+                Config.DB_POOL_STATEMENT_CACHE_SIZE.get());
+    }
+
+    private static Connection getSqliteConnection(boolean readOnly) throws SQLException {
         final String file = Config.DB_FILE.get();
         final Path path = Paths.get(file).toAbsolutePath();
         final String url = "jdbc:sqlite:" + path;
-        return DriverManager.getConnection(url);
+        Properties props = new Properties();
+        if (readOnly) {
+            props.setProperty("open_mode", SQLITE_OPEN_READONLY);
+        }
+        Connection conn = DriverManager.getConnection(url, props);
+        try {
+            applySqlitePragmas(conn, readOnly);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+        return conn;
+    }
+
+    private static void applySqlitePragmas(Connection conn, boolean readOnly) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            // first, so the remaining pragmas already wait for locks instead of failing
+            st.execute("PRAGMA busy_timeout = " + Config.SQLITE_BUSY_TIMEOUT_MS.get());
+
+            String journalMode = pragmaKeyword(Config.SQLITE_JOURNAL_MODE.get(), SQLITE_JOURNAL_MODES);
+            if (!readOnly && journalMode != null) {
+                try {
+                    st.execute("PRAGMA journal_mode = " + journalMode);
+                } catch (SQLException e) {
+                    LOGGER.warn("[GLRA] Could not switch SQLite journal_mode to {}: {}", journalMode, e.getMessage());
+                }
+            }
+            st.execute("PRAGMA mmap_size = " + Config.SQLITE_MMAP_SIZE_MB.get() * 1024L * 1024L);
+            int cacheKb = Config.SQLITE_CACHE_SIZE_KB.get();
+            if (cacheKb > 0) {
+                // negative values are KiB, positive values would be pages
+                st.execute("PRAGMA cache_size = -" + cacheKb);
+            }
+            String tempStore = pragmaKeyword(Config.SQLITE_TEMP_STORE.get(), SQLITE_TEMP_STORES);
+            if (tempStore != null) {
+                st.execute("PRAGMA temp_store = " + tempStore);
+            }
+        }
+    }
+
+    private static String pragmaKeyword(String raw, Set<String> allowed) {
+        if (raw == null || raw.isBlank()) return null;
+        String value = raw.trim().toUpperCase(Locale.ROOT);
+        if (!allowed.contains(value)) {
+            LOGGER.warn("[GLRA] Ignoring unsupported SQLite pragma value '{}' (allowed: {})", raw, allowed);
+            return null;
+        }
+        return value;
     }
 
     private static Connection getMysqlConnection(String driver) throws SQLException {
-        final String host = Config.DB_HOST.get();
-        final int port = Config.DB_PORT.getAsInt();
-        final String db = Config.DB_NAME.get();
-        final String user = Config.DB_USER.get();
-        final String password = Config.DB_PASSWORD.get();
+        return getMysqlConnection(driver, Config.DB_HOST.get(), Config.DB_PORT.getAsInt(), Config.DB_NAME.get(),
+                Config.DB_USER.get(), Config.DB_PASSWORD.get());
+    }
+
+    private static Connection getReplicaMysqlConnection(String driver) throws SQLException {
+        String db = Config.READ_REPLICA_NAME.get();
+        String user = Config.READ_REPLICA_USER.get();
+        boolean ownUser = user != null && !user.isBlank();
+        Connection conn = getMysqlConnection(driver, Config.READ_REPLICA_HOST.get(), Config.READ_REPLICA_PORT.getAsInt(),
+                db == null || db.isBlank() ? Config.DB_NAME.get() : db,
+                ownUser ? user : Config.DB_USER.get(),
+                ownUser ? Config.READ_REPLICA_PASSWORD.get() : Config.DB_PASSWORD.get());
+        conn.setReadOnly(true);
+        return conn;
+    }
 
-        final String url = String.format("jdbc:%s://%s:%d/%s?useSSL=false", driver, host, port, db);
+    private static Connection getMysqlConnection(String driver, String host, int port, String db, String user, String password) throws SQLException {
+        String url = String.format("jdbc:%s://%s:%d/%s?useSSL=false", driver, host, port, db);
+        if (Config.DB_POOL_MYSQL_SERVER_PREP_STMTS.get()) {
+            // statements are prepared once on the server and re-executed with binary parameters
+            url += "&useServerPrepStmts=true&cachePrepStmts=true&prepStmtCacheSize=250";
+            if ("mysql".equals(driver)) {
+                url += "&prepStmtCacheSqlLimit=2048";
+            }
+        }
+        if ("mysql".equals(driver) && Config.DB_POOL_STREAM_FETCH_SIZE.get() > 0) {
+            // Connector/J only uses a positive fetch size with a server-side cursor; statements without one stay buffered
+            url += "&useCursorFetch=true";
+        }
         return DriverManager.getConnection(url, user, password);
     }
 }
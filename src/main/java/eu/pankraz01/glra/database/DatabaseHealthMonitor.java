@@ -0,0 +1,269 @@
+package eu.pankraz01.glra.database;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.Config;
+
+/**
+ * Background health probe with a circuit breaker for the database.
+ * <p>
+ * A daemon thread validates its own connection (outside the pools, so a busy pool is not mistaken for an outage) every
+ * `dbHealth.probeIntervalSeconds` and tracks latency and the error
+ * rate of recent probes. After `dbHealth.failureThreshold` consecutive failures (probes or connection errors reported by
+ * {@link DBConnection}) the circuit opens: {@link DBConnection} then rejects calls immediately instead of letting every
+ * caller wait for TCP timeouts. The probe keeps running while the circuit is open and closes it on the first success,
+ * running the listeners registered with {@link #whenAvailable(Runnable)}.
+ */
+public final class DatabaseHealthMonitor {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int PROBE_WINDOW = 20;
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    public enum State {
+        UP,
+        /** Reachable, but probes are slow or some recent ones failed. */
+        DEGRADED,
+        /** Circuit open: database calls fail fast until a probe succeeds. */
+        DOWN
+    }
+
+    public record Snapshot(State state, long lastLatencyMs, long avgLatencyMs, int errorRatePercent, long probes,
+                           long failedProbes, long rejectedCalls, long downSinceMillis, String lastError) {
+    }
+
+    private static final Object LOCK = new Object();
+    private static final List<Runnable> RECOVERY_LISTENERS = new CopyOnWriteArrayList<>();
+    private static final AtomicLong PROBES = new AtomicLong();
+    private static final AtomicLong FAILED_PROBES = new AtomicLong();
+    private static final AtomicLong REJECTED = new AtomicLong();
+    // ring of recent probe outcomes for the error rate, guarded by LOCK
+    private static final boolean[] RECENT_FAILURES = new boolean[PROBE_WINDOW];
+    private static int recentIndex;
+    private static int recentCount;
+    // written under LOCK; volatile so recordConnectionSuccess() can skip the lock when there is nothing to reset
+    private static volatile int consecutiveFailures;
+
+    private static volatile boolean open;
+    private static volatile long downSince;
+    private static volatile long lastLatencyMs = -1L;
+    private static volatile double avgLatencyMs = -1d;
+    private static volatile String lastError;
+    private static volatile ScheduledExecutorService scheduler;
+
+    private DatabaseHealthMonitor() {
+    }
+
+    /**
+     * Start probing. With {@code initiallyAvailable = false} (startup connection check failed) the circuit starts open.
+     * Can be called again after {@link #stop()}, e.g. when an integrated server starts the next world.
+     */
+    public static synchronized void start(boolean initiallyAvailable) {
+        if (scheduler != null) {
+            if (!initiallyAvailable) {
+                synchronized (LOCK) {
+                    if (!open) trip("startup connection check failed");
+                }
+            }
+            return;
+        }
+        synchronized (LOCK) {
+            consecutiveFailures = 0;
+            recentIndex = 0;
+            recentCount = 0;
+            if (!initiallyAvailable) {
+                trip("startup connection check failed");
+            }
+        }
+        long interval = Math.max(1, Config.DB_HEALTH_PROBE_INTERVAL_SECONDS.get());
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "glra-db-health");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(DatabaseHealthMonitor::probe, initiallyAvailable ? interval : 1, interval, TimeUnit.SECONDS);
+        if (initiallyAvailable && !RECOVERY_LISTENERS.isEmpty()) {
+            // registered while the circuit was open and then left waiting by stop()
+            scheduler.execute(DatabaseHealthMonitor::runRecoveryListeners);
+        }
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        // without a probe nothing would close the circuit again
+        synchronized (LOCK) {
+            open = false;
+            LOCK.notifyAll();
+        }
+    }
+
+    public static boolean isAvailable() {
+        return !open;
+    }
+
+    /**
+     * Fail fast while the circuit is open. Called by {@link DBConnection} before handing out a connection.
+     */
+    public static void ensureAvailable() throws SQLException {
+        if (open) {
+            REJECTED.incrementAndGet();
+            throw new SQLTransientConnectionException("Database unavailable (circuit open for "
+                    + (System.currentTimeMillis() - downSince) / 1000L + " s): " + lastError, "08001");
+        }
+    }
+
+    /**
+     * Count a failed connection attempt outside the probe; only connection-class errors (SQLState 08xxx) count, and only
+     * while the monitor runs (otherwise nothing would close the circuit again).
+     */
+    public static void recordConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+        if (scheduler == null || state == null || !state.startsWith("08")) return;
+        synchronized (LOCK) {
+            lastError = e.getMessage();
+            if (++consecutiveFailures >= Config.DB_HEALTH_FAILURE_THRESHOLD.get() && !open) {
+                trip(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reset the failure streak after a connection was handed out successfully outside the probe.
+     */
+    public static void recordConnectionSuccess() {
+        if (consecutiveFailures == 0) return;
+        synchronized (LOCK) {
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Run {@code listener} now if the database is available, otherwise once (on the probe thread) after it recovers.
+     */
+    public static void whenAvailable(Runnable listener) {
+        if (!open) {
+            listener.run();
+            return;
+        }
+        RECOVERY_LISTENERS.add(listener);
+        // recovered between the check and the registration
+        if (!open && RECOVERY_LISTENERS.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Block until the circuit is closed or the timeout elapses.
+     */
+    public static boolean awaitAvailable(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (LOCK) {
+            while (open) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) return false;
+                LOCK.wait(wait);
+            }
+        }
+        return true;
+    }
+
+    public static Snapshot snapshot() {
+        int errorRate;
+        synchronized (LOCK) {
+            errorRate = errorRatePercent();
+        }
+        State state;
+        if (open) {
+            state = State.DOWN;
+        } else if (errorRate > 0 || lastLatencyMs > Config.DB_HEALTH_SLOW_THRESHOLD_MS.get()) {
+            state = State.DEGRADED;
+        } else {
+            state = State.UP;
+        }
+        return new Snapshot(state, lastLatencyMs, Math.round(avgLatencyMs), errorRate, PROBES.get(), FAILED_PROBES.get(),
+                REJECTED.get(), open ? downSince : 0L, lastError);
+    }
+
+    private static void probe() {
+        long start = System.nanoTime();
+        String error = null;
+        try {
+            if (!DBConnection.probe(Config.DB_HEALTH_PROBE_TIMEOUT_SECONDS.get())) {
+                error = "connection validation failed";
+            }
+        } catch (SQLException | RuntimeException e) {
+            error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        }
+        long latencyMs = (System.nanoTime() - start) / 1_000_000L;
+        PROBES.incrementAndGet();
+
+        boolean recovered = false;
+        synchronized (LOCK) {
+            RECENT_FAILURES[recentIndex] = error != null;
+            recentIndex = (recentIndex + 1) % PROBE_WINDOW;
+            recentCount = Math.min(PROBE_WINDOW, recentCount + 1);
+            if (error == null) {
+                lastLatencyMs = latencyMs;
+                avgLatencyMs = avgLatencyMs < 0 ? latencyMs : avgLatencyMs + LATENCY_SMOOTHING * (latencyMs - avgLatencyMs);
+                consecutiveFailures = 0;
+                if (open) {
+                    open = false;
+                    recovered = true;
+                    LOGGER.info("[GLRA] Database reachable again after {} s (probe {} ms); resuming", (System.currentTimeMillis() - downSince) / 1000L, latencyMs);
+                    LOCK.notifyAll();
+                }
+            } else {
+                FAILED_PROBES.incrementAndGet();
+                lastError = error;
+                if (++consecutiveFailures >= Config.DB_HEALTH_FAILURE_THRESHOLD.get() && !open) {
+                    trip(error);
+                }
+            }
+        }
+
+        if (recovered) {
+            runRecoveryListeners();
+        }
+    }
+
+    private static void runRecoveryListeners() {
+        for (Runnable listener : RECOVERY_LISTENERS) {
+            if (!RECOVERY_LISTENERS.remove(listener)) continue;
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("[GLRA] Database recovery listener failed", e);
+            }
+        }
+    }
+
+    // caller holds LOCK
+    private static void trip(String reason) {
+        open = true;
+        downSince = System.currentTimeMillis();
+        lastError = reason;
+        LOGGER.error("[GLRA] Database unavailable ({}); failing database calls fast and pausing rollbacks until it recovers", reason);
+    }
+
+    // caller holds LOCK
+    private static int errorRatePercent() {
+        if (recentCount == 0) return 0;
+        int failed = 0;
+        for (int i = 0; i < recentCount; i++) {
+            if (RECENT_FAILURES[i]) failed++;
+        }
+        return failed * 100 / recentCount;
+    }
+}
@@ -1,188 +1,338 @@
 package eu.pankraz01.glra.database;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 import eu.pankraz01.glra.Config;
 import org.slf4j.Logger;
 import com.mojang.logging.LogUtils;
 
 /**
- * Creates addon-owned tables if they do not yet exist.
+ * Creates and upgrades addon-owned tables.
+ * <p>
+ * The applied schema version is stored in `glra_schema_version`; on startup only the migrations newer than that version
+ * run, so an up-to-date database costs one query instead of a metadata lookup per column. Migrations are idempotent:
+ * installs from before the version table start at version 0 and re-run them all once.
  */
 public final class DatabaseSetup {
     private static final Logger LOGGER = LogUtils.getLogger();
+
+    @FunctionalInterface
+    private interface MigrationStep {
+        void apply(Statement st) throws SQLException;
+    }
+
+    private record Migration(int version, String description, MigrationStep step) {
+    }
+
+    // Ordered by version; append new migrations, never change applied ones
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "create addon tables", DatabaseSetup::createTables),
+            new Migration(2, "add columns missing in older installs", DatabaseSetup::addLegacyColumns),
+            new Migration(3, "auto-increment ids", st -> {
+                // Older installs created these ids without auto-increment (ids were derived from the clock).
+                ensureAutoIncrementId(st, "glra_rollback_history");
+                ensureAutoIncrementId(st, "glra_rollback_actions");
+            }),
+            new Migration(4, "rollback log indexes", st -> {
+                // Undo loads by job, the audit tab and retention scan by time
+                createIndexIfMissing(st, "glra_rollback_actions", "idx_glra_rollback_actions_job", "job_id, id");
+                createIndexIfMissing(st, "glra_rollback_actions", "idx_glra_rollback_actions_ts", "ts");
+                createIndexIfMissing(st, "glra_rollback_history", "idx_glra_rollback_history_ts", "ts");
+            }),
+            new Migration(5, "seed action types", DatabaseSetup::seedActionTypes),
+            new Migration(6, "background task markers", st -> st.execute("""
+                    CREATE TABLE IF NOT EXISTS glra_background_tasks (
+                      name VARCHAR(64) PRIMARY KEY,
+                      completed_at BIGINT NOT NULL
+                    )
+                    """))
+    );
+
+    public static final int SCHEMA_VERSION = MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+
+    // set once ensureTables() has brought the schema up to date
+    private static volatile boolean ready;
+    // set while the last ensureTables() attempt failed; cleared when an attempt succeeds
+    private static volatile boolean failed;
+
     private DatabaseSetup() {
     }
 
+    /**
+     * True once the addon's tables are up to date. Commands, the web API and new rollbacks are refused until then, since
+     * migrations run in the background and may still be creating tables or columns.
+     */
+    public static boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * True if the last setup attempt failed. The addon retries setup in the background; until one attempt succeeds
+     * entry points report the failure instead of claiming setup is still running.
+     */
+    public static boolean hasFailed() {
+        return failed;
+    }
+
     public static void ensureTables() {
         try (Connection conn = DBConnection.getConnection(); Statement st = conn.createStatement()) {
-            String tokenTable = switch (Config.databaseType()) {
-                case SQLITE -> """
-                        CREATE TABLE IF NOT EXISTS glra_web_tokens (
-                          user_id INTEGER PRIMARY KEY,
-                          token TEXT NOT NULL,
-                          created_at INTEGER NOT NULL
-                        )
-                        """;
-                default -> """
-                        CREATE TABLE IF NOT EXISTS glra_web_tokens (
-                          user_id INT PRIMARY KEY,
-                          token VARCHAR(128) NOT NULL,
-                          created_at BIGINT NOT NULL
-                        )
-                        """;
-            };
-            st.execute(tokenTable);
-
-            String historyTable = switch (Config.databaseType()) {
-                case SQLITE -> """
-                        CREATE TABLE IF NOT EXISTS glra_rollback_history (
-                          id INTEGER PRIMARY KEY,
-                          ts BIGINT NOT NULL,
-                          actor_id INTEGER,
-                          actor_name VARCHAR(64),
-                          source VARCHAR(16) NOT NULL,
-                          time_label VARCHAR(64),
-                          duration_ms BIGINT NOT NULL,
-                          player VARCHAR(64),
-                          radius VARCHAR(64),
-                          scope VARCHAR(32)
-                        )
-                        """;
-                default -> """
-                        CREATE TABLE IF NOT EXISTS glra_rollback_history (
-                          id BIGINT PRIMARY KEY,
-                          ts BIGINT NOT NULL,
-                          actor_id INT,
-                          actor_name VARCHAR(64),
-                          source VARCHAR(16) NOT NULL,
-                          time_label VARCHAR(64),
-                          duration_ms BIGINT NOT NULL,
-                          player VARCHAR(64),
-                          radius VARCHAR(64),
-                          scope VARCHAR(32)
-                        )
-                        """;
-            };
-            st.execute(historyTable);
-
-            String actionsTable = switch (Config.databaseType()) {
-                case SQLITE -> """
-                        CREATE TABLE IF NOT EXISTS glra_rollback_actions (
-                          id INTEGER PRIMARY KEY,
-                          job_id BIGINT NOT NULL,
-                          ts BIGINT NOT NULL,
-                          type VARCHAR(16) NOT NULL,
-                          level_name VARCHAR(128),
-                          x INT,
-                          y INT,
-                          z INT,
-                          material VARCHAR(128),
-                          old_material VARCHAR(128),
-                          amount INT,
-                          item_data TEXT,
-                          action_type INT NOT NULL
-                        )
-                        """;
-                default -> """
-                        CREATE TABLE IF NOT EXISTS glra_rollback_actions (
-                          id BIGINT PRIMARY KEY,
-                          job_id BIGINT NOT NULL,
-                          ts BIGINT NOT NULL,
-                          type VARCHAR(16) NOT NULL,
-                          level_name VARCHAR(128),
-                          x INT,
-                          y INT,
-                          z INT,
-                          material VARCHAR(128),
-                          old_material VARCHAR(128),
-                          amount INT,
-                          item_data TEXT,
-                          action_type INT NOT NULL
-                        )
-                        """;
-            };
-            st.execute(actionsTable);
-
-            String actionTypes = switch (Config.databaseType()) {
-                case SQLITE -> """
-                        CREATE TABLE IF NOT EXISTS glra_action_types (
-                          id INTEGER PRIMARY KEY,
-                          name VARCHAR(64) NOT NULL
-                        )
-                        """;
-                default -> """
-                        CREATE TABLE IF NOT EXISTS glra_action_types (
-                          id INT PRIMARY KEY,
-                          name VARCHAR(64) NOT NULL
-                        )
-                        """;
-            };
-            st.execute(actionTypes);
-
-            String unauthorizedTable = switch (Config.databaseType()) {
-                case SQLITE -> """
-                        CREATE TABLE IF NOT EXISTS glra_web_unauthorized (
-                          id INTEGER PRIMARY KEY AUTOINCREMENT,
-                          ts BIGINT NOT NULL,
-                          ip VARCHAR(64),
-                          method VARCHAR(16),
-                          path VARCHAR(256),
-                          query TEXT,
-                          headers TEXT,
-                          body TEXT,
-                          user_agent TEXT,
-                          referer TEXT,
-                          reason TEXT
-                        )
-                        """;
-                default -> """
-                        CREATE TABLE IF NOT EXISTS glra_web_unauthorized (
-                          id BIGINT PRIMARY KEY AUTO_INCREMENT,
-                          ts BIGINT NOT NULL,
-                          ip VARCHAR(64),
-                          method VARCHAR(16),
-                          path VARCHAR(256),
-                          query TEXT,
-                          headers TEXT,
-                          body TEXT,
-                          user_agent TEXT,
-                          referer TEXT,
-                          reason TEXT
-                        )
-                        """;
-            };
-            st.execute(unauthorizedTable);
-
-            addColumnIfMissing(st, "glra_web_tokens", "user_id", "INT");
-            addColumnIfMissing(st, "glra_web_tokens", "token", "VARCHAR(128)");
-            addColumnIfMissing(st, "glra_web_tokens", "created_at", "BIGINT");
-
-            addColumnIfMissing(st, "glra_rollback_history", "actor_id", "INT");
-            addColumnIfMissing(st, "glra_rollback_history", "actor_name", "VARCHAR(64)");
-
-            addColumnIfMissing(st, "glra_rollback_actions", "action_type", "INT");
-
-            addColumnIfMissing(st, "glra_web_unauthorized", "ip", "VARCHAR(64)");
-            addColumnIfMissing(st, "glra_web_unauthorized", "ts", "BIGINT");
-            addColumnIfMissing(st, "glra_web_unauthorized", "method", "VARCHAR(16)");
-            addColumnIfMissing(st, "glra_web_unauthorized", "path", "VARCHAR(256)");
-            addColumnIfMissing(st, "glra_web_unauthorized", "query", "TEXT");
-            addColumnIfMissing(st, "glra_web_unauthorized", "headers", "TEXT");
-            addColumnIfMissing(st, "glra_web_unauthorized", "body", "TEXT");
-            addColumnIfMissing(st, "glra_web_unauthorized", "user_agent", "TEXT");
-            addColumnIfMissing(st, "glra_web_unauthorized", "referer", "TEXT");
-            addColumnIfMissing(st, "glra_web_unauthorized", "reason", "TEXT");
-
-            seedActionTypes(st);
-        } catch (SQLException e) {
+            int current = readSchemaVersion(st);
+            if (current >= SCHEMA_VERSION) {
+                LOGGER.debug("[GLRA] Schema is up to date (version {})", current);
+                failed = false;
+                ready = true;
+                return;
+            }
+            LOGGER.info("[GLRA] Upgrading schema from version {} to {}", current, SCHEMA_VERSION);
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version() <= current) continue;
+                long start = System.currentTimeMillis();
+                migration.step().apply(st);
+                recordSchemaVersion(conn, migration);
+                LOGGER.info("[GLRA] Applied schema migration {} ({}) in {} ms", migration.version(), migration.description(), System.currentTimeMillis() - start);
+            }
+            failed = false;
+            ready = true;
+        } catch (SQLException | RuntimeException e) {
+            failed = true;
             throw new RuntimeException("Failed to ensure GLRA tables", e);
         }
     }
 
+    /**
+     * True once a one-off background task (such as {@link ItemDataMigration}) recorded itself as done with
+     * {@link #markTaskCompleted}, so it is not repeated on every start.
+     */
+    public static boolean isTaskCompleted(String task) throws SQLException {
+        try (Connection conn = DBConnection.getReadConnection();
+             PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM glra_background_tasks WHERE name = ?")) {
+            ps.setString(1, task);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    public static void markTaskCompleted(String task) throws SQLException {
+        // another server sharing the database may finish the same task concurrently
+        String insertIgnore = switch (Config.databaseType()) {
+            case SQLITE -> "INSERT OR IGNORE INTO glra_background_tasks (name, completed_at) VALUES (?, ?)";
+            default -> "INSERT IGNORE INTO glra_background_tasks (name, completed_at) VALUES (?, ?)";
+        };
+        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(insertIgnore)) {
+            ps.setString(1, task);
+            ps.setLong(2, System.currentTimeMillis());
+            ps.executeUpdate();
+        }
+    }
+
+    private static int readSchemaVersion(Statement st) throws SQLException {
+        String versionTable = switch (Config.databaseType()) {
+            case SQLITE -> """
+                    CREATE TABLE IF NOT EXISTS glra_schema_version (
+                      version INTEGER PRIMARY KEY,
+                      description VARCHAR(128),
+                      applied_at BIGINT NOT NULL
+                    )
+                    """;
+            default -> """
+                    CREATE TABLE IF NOT EXISTS glra_schema_version (
+                      version INT PRIMARY KEY,
+                      description VARCHAR(128),
+                      applied_at BIGINT NOT NULL
+                    )
+                    """;
+        };
+        st.execute(versionTable);
+        try (ResultSet rs = st.executeQuery("SELECT MAX(version) FROM glra_schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private static void recordSchemaVersion(Connection conn, Migration migration) throws SQLException {
+        // another server sharing the database may have applied the same migration concurrently
+        String insertIgnore = switch (Config.databaseType()) {
+            case SQLITE -> "INSERT OR IGNORE INTO glra_schema_version (version, description, applied_at) VALUES (?, ?, ?)";
+            default -> "INSERT IGNORE INTO glra_schema_version (version, description, applied_at) VALUES (?, ?, ?)";
+        };
+        try (PreparedStatement ps = conn.prepareStatement(insertIgnore)) {
+            ps.setInt(1, migration.version());
+            ps.setString(2, migration.description());
+            ps.setLong(3, System.currentTimeMillis());
+            ps.executeUpdate();
+        }
+    }
+
+    private static void createTables(Statement st) throws SQLException {
+        String tokenTable = switch (Config.databaseType()) {
+            case SQLITE -> """
+                    CREATE TABLE IF NOT EXISTS glra_web_tokens (
+                      user_id INTEGER PRIMARY KEY,
+                      token TEXT NOT NULL,
+                      created_at INTEGER NOT NULL
+                    )
+                    """;
+            default -> """
+                    CREATE TABLE IF NOT EXISTS glra_web_tokens (
+                      user_id INT PRIMARY KEY,
+                      token VARCHAR(128) NOT NULL,
+                      created_at BIGINT NOT NULL
+                    )
+                    """;
+        };
+        st.execute(tokenTable);
+
+        String historyTable = switch (Config.databaseType()) {
+            case SQLITE -> """
+                    CREATE TABLE IF NOT EXISTS glra_rollback_history (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      ts BIGINT NOT NULL,
+                      actor_id INTEGER,
+                      actor_name VARCHAR(64),
+                      source VARCHAR(16) NOT NULL,
+                      time_label VARCHAR(64),
+                      duration_ms BIGINT NOT NULL,
+                      player VARCHAR(64),
+                      radius VARCHAR(64),
+                      scope VARCHAR(32)
+                    )
+                    """;
+            default -> """
+                    CREATE TABLE IF NOT EXISTS glra_rollback_history (
+                      id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                      ts BIGINT NOT NULL,
+                      actor_id INT,
+                      actor_name VARCHAR(64),
+                      source VARCHAR(16) NOT NULL,
+                      time_label VARCHAR(64),
+                      duration_ms BIGINT NOT NULL,
+                      player VARCHAR(64),
+                      radius VARCHAR(64),
+                      scope VARCHAR(32)
+                    )
+                    """;
+        };
+        st.execute(historyTable);
+
+        String actionsTable = switch (Config.databaseType()) {
+            case SQLITE -> """
+                    CREATE TABLE IF NOT EXISTS glra_rollback_actions (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      job_id BIGINT NOT NULL,
+                      ts BIGINT NOT NULL,
+                      type VARCHAR(16) NOT NULL,
+                      level_name VARCHAR(128),
+                      x INT,
+                      y INT,
+                      z INT,
+                      material VARCHAR(128),
+                      old_material VARCHAR(128),
+                      amount INT,
+                      item_data TEXT,
+                      item_blob BLOB,
+                      action_type INT NOT NULL
+                    )
+                    """;
+            default -> """
+                    CREATE TABLE IF NOT EXISTS glra_rollback_actions (
+                      id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                      job_id BIGINT NOT NULL,
+                      ts BIGINT NOT NULL,
+                      type VARCHAR(16) NOT NULL,
+                      level_name VARCHAR(128),
+                      x INT,
+                      y INT,
+                      z INT,
+                      material VARCHAR(128),
+                      old_material VARCHAR(128),
+                      amount INT,
+                      item_data TEXT,
+                      item_blob MEDIUMBLOB,
+                      action_type INT NOT NULL
+                    )
+                    """;
+        };
+        st.execute(actionsTable);
+
+        String actionTypes = switch (Config.databaseType()) {
+            case SQLITE -> """
+                    CREATE TABLE IF NOT EXISTS glra_action_types (
+                      id INTEGER PRIMARY KEY,
+                      name VARCHAR(64) NOT NULL
+                    )
+                    """;
+            default -> """
+                    CREATE TABLE IF NOT EXISTS glra_action_types (
+                      id INT PRIMARY KEY,
+                      name VARCHAR(64) NOT NULL
+                    )
+                    """;
+        };
+        st.execute(actionTypes);
+
+        String unauthorizedTable = switch (Config.databaseType()) {
+            case SQLITE -> """
+                    CREATE TABLE IF NOT EXISTS glra_web_unauthorized (
+                      id INTEGER PRIMARY KEY AUTOINCREMENT,
+                      ts BIGINT NOT NULL,
+                      ip VARCHAR(64),
+                      method VARCHAR(16),
+                      path VARCHAR(256),
+                      query TEXT,
+                      headers TEXT,
+                      body TEXT,
+                      user_agent TEXT,
+                      referer TEXT,
+                      reason TEXT
+                    )
+                    """;
+            default -> """
+                    CREATE TABLE IF NOT EXISTS glra_web_unauthorized (
+                      id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                      ts BIGINT NOT NULL,
+                      ip VARCHAR(64),
+                      method VARCHAR(16),
+                      path VARCHAR(256),
+                      query TEXT,
+                      headers TEXT,
+                      body TEXT,
+                      user_agent TEXT,
+                      referer TEXT,
+                      reason TEXT
+                    )
+                    """;
+        };
+        st.execute(unauthorizedTable);
+    }
+
+    private static void addLegacyColumns(Statement st) {
+        addColumnIfMissing(st, "glra_web_tokens", "user_id", "INT");
+        addColumnIfMissing(st, "glra_web_tokens", "token", "VARCHAR(128)");
+        addColumnIfMissing(st, "glra_web_tokens", "created_at", "BIGINT");
+
+        addColumnIfMissing(st, "glra_rollback_history", "actor_id", "INT");
+        addColumnIfMissing(st, "glra_rollback_history", "actor_name", "VARCHAR(64)");
+
+        addColumnIfMissing(st, "glra_rollback_actions", "action_type", "INT");
+        addColumnIfMissing(st, "glra_rollback_actions", "item_blob", Config.databaseType() == Config.DatabaseType.SQLITE ? "BLOB" : "MEDIUMBLOB");
+
+        addColumnIfMissing(st, "glra_web_unauthorized", "ip", "VARCHAR(64)");
+        addColumnIfMissing(st, "glra_web_unauthorized", "ts", "BIGINT");
+        addColumnIfMissing(st, "glra_web_unauthorized", "method", "VARCHAR(16)");
+        addColumnIfMissing(st, "glra_web_unauthorized", "path", "VARCHAR(256)");
+        addColumnIfMissing(st, "glra_web_unauthorized", "query", "TEXT");
+        addColumnIfMissing(st, "glra_web_unauthorized", "headers", "TEXT");
+        addColumnIfMissing(st, "glra_web_unauthorized", "body", "TEXT");
+        addColumnIfMissing(st, "glra_web_unauthorized", "user_agent", "TEXT");
+        addColumnIfMissing(st, "glra_web_unauthorized", "referer", "TEXT");
+        addColumnIfMissing(st, "glra_web_unauthorized", "reason", "TEXT");
+    }
+
     private static void seedActionTypes(Statement st) throws SQLException {
         String insertIgnore = switch (Config.databaseType()) {
             case SQLITE -> "INSERT OR IGNORE INTO glra_action_types (id, name) VALUES (?, ?)";
@@ -211,6 +361,58 @@ public final class DatabaseSetup {
         }
     }
 
+    /**
+     * MySQL has no CREATE INDEX IF NOT EXISTS, so look the index up via JDBC metadata first.
+     */
+    private static void createIndexIfMissing(Statement st, String table, String index, String columns) {
+        try {
+            Connection conn = st.getConnection();
+            if (indexExists(conn, table, index)) {
+                return;
+            }
+            st.execute("CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+            LOGGER.info("[GLRA] Created index {} on {} ({})", index, table, columns);
+        } catch (SQLException e) {
+            LOGGER.warn("[GLRA] Could not create index {} on {}: {}", index, table, e.getMessage());
+        }
+    }
+
+    private static boolean indexExists(Connection conn, String table, String index) throws SQLException {
+        var meta = conn.getMetaData();
+        for (String tbl : new String[] { table, table.toUpperCase(), table.toLowerCase() }) {
+            try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), null, tbl, false, true)) {
+                while (rs.next()) {
+                    if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * MySQL/MariaDB need an explicit AUTO_INCREMENT on the id column; SQLite assigns INTEGER PRIMARY KEY ids itself.
+     * Existing rows keep their ids and new ids continue after the current maximum.
+     */
+    private static void ensureAutoIncrementId(Statement st, String table) {
+        if (Config.databaseType() == Config.DatabaseType.SQLITE) return;
+        try {
+            Connection conn = st.getConnection();
+            try (var ps = conn.prepareStatement(
+                    "SELECT EXTRA FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = 'id'")) {
+                ps.setString(1, table);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) return;
+                    String extra = rs.getString(1);
+                    if (extra != null && extra.toLowerCase().contains("auto_increment")) return;
+                }
+            }
+            st.execute("ALTER TABLE " + table + " MODIFY id BIGINT NOT NULL AUTO_INCREMENT");
+            LOGGER.info("[GLRA] Converted {}.id to AUTO_INCREMENT", table);
+        } catch (SQLException e) {
+            LOGGER.warn("[GLRA] Could not convert {}.id to AUTO_INCREMENT: {}", table, e.getMessage());
+        }
+    }
+
     private static boolean columnExists(Connection conn, String table, String column) {
         try {
             var meta = conn.getMetaData();
@@ -0,0 +1,254 @@
+package eu.pankraz01.glra.database;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.Config;
+import eu.pankraz01.glra.database.dao.ActionDAO;
+import eu.pankraz01.glra.database.dao.AuditDAO;
+
+/**
+ * Checks GriefLogger's source tables for the indexes our rollback and audit queries rely on, and runs
+ * `EXPLAIN` / `EXPLAIN QUERY PLAN` on the real query shapes to report full table scans.
+ * {@link #createMissingIndexes()} adds the missing ones: online (`ALGORITHM=INPLACE, LOCK=NONE`) on MySQL/MariaDB,
+ * a plain `CREATE INDEX` on SQLite, which blocks GriefLogger's writes while it runs.
+ */
+public final class IndexAdvisor {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    /** A query the addon runs, with representative parameters for `EXPLAIN`. */
+    public record QueryShape(String name, String sql, List<Object> sampleArgs) {
+    }
+
+    public record IndexRecommendation(String table, String name, List<String> columns) {
+        public String describe() {
+            return table + " (" + String.join(", ", columns) + ")";
+        }
+    }
+
+    public record FullScan(String shape, String table, String detail) {
+    }
+
+    public record Report(List<IndexRecommendation> missing, List<FullScan> fullScans, List<String> errors) {
+        public boolean healthy() {
+            return missing.isEmpty() && fullScans.isEmpty() && errors.isEmpty();
+        }
+    }
+
+    public record CreateResult(IndexRecommendation index, long millis, String error) {
+        public boolean success() {
+            return error == null;
+        }
+    }
+
+    // Leading columns our queries filter/sort on; an existing index with these columns as its prefix counts
+    private static final List<IndexRecommendation> RECOMMENDED = List.of(
+            new IndexRecommendation("blocks", "idx_glra_blocks_time", List.of("time")),
+            new IndexRecommendation("blocks", "idx_glra_blocks_user_time", List.of("user", "time")),
+            new IndexRecommendation("blocks", "idx_glra_blocks_level_xz", List.of("level", "x", "z")),
+            new IndexRecommendation("containers", "idx_glra_containers_time", List.of("time")),
+            new IndexRecommendation("containers", "idx_glra_containers_user_time", List.of("user", "time")),
+            new IndexRecommendation("containers", "idx_glra_containers_level_xz", List.of("level", "x", "z")),
+            new IndexRecommendation("chats", "idx_glra_chats_time", List.of("time")),
+            new IndexRecommendation("chats", "idx_glra_chats_user_time", List.of("user", "time"))
+    );
+
+    // Small lookup tables are fine to scan
+    private static final List<String> SOURCE_TABLES = List.of("blocks", "containers", "chats");
+
+    private IndexAdvisor() {
+    }
+
+    public static Report analyze() throws SQLException {
+        List<IndexRecommendation> missing = new ArrayList<>();
+        List<FullScan> fullScans = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        Config.DatabaseType type = Config.databaseType();
+
+        try (Connection conn = DBConnection.getReadConnection()) {
+            Map<String, List<List<String>>> existing = new LinkedHashMap<>();
+            for (IndexRecommendation rec : RECOMMENDED) {
+                List<List<String>> indexes = existing.get(rec.table());
+                if (indexes == null) {
+                    indexes = loadIndexColumns(conn, rec.table());
+                    existing.put(rec.table(), indexes);
+                }
+                if (!isCovered(indexes, rec.columns())) {
+                    missing.add(rec);
+                }
+            }
+
+            List<QueryShape> shapes = new ArrayList<>(ActionDAO.queryShapes());
+            shapes.addAll(AuditDAO.queryShapes());
+            for (QueryShape shape : shapes) {
+                try {
+                    fullScans.addAll(explain(conn, type, shape));
+                } catch (SQLException e) {
+                    errors.add(shape.name() + ": " + e.getMessage());
+                }
+            }
+        }
+        return new Report(missing, fullScans, errors);
+    }
+
+    /**
+     * Create every missing recommended index, one at a time. Failures are reported per index and do not stop the rest.
+     */
+    public static List<CreateResult> createMissingIndexes() throws SQLException {
+        List<IndexRecommendation> missing = analyze().missing();
+        List<CreateResult> results = new ArrayList<>();
+        Config.DatabaseType type = Config.databaseType();
+        for (IndexRecommendation rec : missing) {
+            long start = System.currentTimeMillis();
+            try (Connection conn = DBConnection.getConnection(); Statement st = conn.createStatement()) {
+                st.execute(createIndexSql(type, rec));
+                long millis = System.currentTimeMillis() - start;
+                LOGGER.info("[GLRA] Created index {} on {} in {} ms", rec.name(), rec.describe(), millis);
+                results.add(new CreateResult(rec, millis, null));
+            } catch (SQLException e) {
+                LOGGER.warn("[GLRA] Could not create index {} on {}: {}", rec.name(), rec.describe(), e.getMessage());
+                results.add(new CreateResult(rec, System.currentTimeMillis() - start, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Analyze on a background thread and log the result; used at startup when `analyzeIndexesOnStartup` is enabled.
+     */
+    public static void analyzeInBackground() {
+        Thread thread = new Thread(IndexAdvisor::logReport, "glra-index-advisor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private static void logReport() {
+        try {
+            Report report = analyze();
+            if (report.healthy()) {
+                LOGGER.info("[GLRA] GriefLogger tables have all recommended indexes");
+                return;
+            }
+            for (IndexRecommendation rec : report.missing()) {
+                LOGGER.warn("[GLRA] Missing recommended index on {}; rollbacks and the audit page may scan the whole table. Run /gl db optimize to create it", rec.describe());
+            }
+            for (FullScan scan : report.fullScans()) {
+                LOGGER.warn("[GLRA] Query '{}' scans table {}: {}", scan.shape(), scan.table(), scan.detail());
+            }
+            for (String error : report.errors()) {
+                LOGGER.debug("[GLRA] Could not explain query {}", error);
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.warn("[GLRA] Index analysis failed: {}", e.getMessage());
+        }
+    }
+
+    private static String createIndexSql(Config.DatabaseType type, IndexRecommendation rec) {
+        if (type == Config.DatabaseType.SQLITE) {
+            List<String> quoted = rec.columns().stream().map(c -> "\"" + c + "\"").toList();
+            return "CREATE INDEX IF NOT EXISTS " + rec.name() + " ON " + rec.table() + " (" + String.join(", ", quoted) + ")";
+        }
+        // InnoDB builds secondary indexes in place while allowing concurrent reads and writes; fails instead of locking
+        List<String> quoted = rec.columns().stream().map(c -> "`" + c + "`").toList();
+        return "ALTER TABLE " + rec.table() + " ADD INDEX " + rec.name() + " (" + String.join(", ", quoted) + "), ALGORITHM=INPLACE, LOCK=NONE";
+    }
+
+    private static boolean isCovered(List<List<String>> indexes, List<String> wanted) {
+        for (List<String> columns : indexes) {
+            if (columns.size() >= wanted.size() && columns.subList(0, wanted.size()).equals(wanted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Column lists (lower case, in index order) of every index on {@code table}, including the primary key.
+     */
+    private static List<List<String>> loadIndexColumns(Connection conn, String table) throws SQLException {
+        DatabaseMetaData meta = conn.getMetaData();
+        for (String tbl : new String[] { table, table.toUpperCase(Locale.ROOT) }) {
+            Map<String, TreeMap<Integer, String>> byIndex = new LinkedHashMap<>();
+            try (ResultSet rs = meta.getIndexInfo(conn.getCatalog(), null, tbl, false, true)) {
+                while (rs.next()) {
+                    String index = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (index == null || column == null) continue;
+                    byIndex.computeIfAbsent(index, k -> new TreeMap<>()).put((int) rs.getShort("ORDINAL_POSITION"), column.toLowerCase(Locale.ROOT));
+                }
+            }
+            if (!byIndex.isEmpty()) {
+                List<List<String>> result = new ArrayList<>();
+                byIndex.values().forEach(columns -> result.add(new ArrayList<>(columns.values())));
+                return result;
+            }
+        }
+        return List.of();
+    }
+
+    private static List<FullScan> explain(Connection conn, Config.DatabaseType type, QueryShape shape) throws SQLException {
+        String prefix = type == Config.DatabaseType.SQLITE ? "EXPLAIN QUERY PLAN " : "EXPLAIN ";
+        List<FullScan> scans = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(prefix + shape.sql())) {
+            int idx = 1;
+            for (Object arg : shape.sampleArgs()) {
+                ps.setObject(idx++, arg);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (type == Config.DatabaseType.SQLITE) {
+                        // e.g. "SCAN b" (full scan) vs. "SEARCH b USING INDEX ..." / "SCAN b USING INDEX ..."
+                        String detail = rs.getString("detail");
+                        if (detail == null) continue;
+                        String[] parts = detail.trim().split("\\s+");
+                        boolean scan = parts.length >= 2 && "SCAN".equals(parts[0]) && !detail.contains(" USING ");
+                        if (scan) {
+                            String alias = "TABLE".equals(parts[1]) && parts.length >= 3 ? parts[2] : parts[1];
+                            String table = tableForAlias(shape.sql(), alias);
+                            if (SOURCE_TABLES.contains(table)) {
+                                scans.add(new FullScan(shape.name(), table, detail));
+                            }
+                        }
+                    } else {
+                        // MySQL/MariaDB: access type ALL = full table scan
+                        String access = rs.getString("type");
+                        String alias = rs.getString("table");
+                        String table = tableForAlias(shape.sql(), alias);
+                        if ("ALL".equalsIgnoreCase(access) && SOURCE_TABLES.contains(table)) {
+                            scans.add(new FullScan(shape.name(), table, "type=ALL, rows=" + rs.getString("rows")));
+                        }
+                    }
+                }
+            }
+        }
+        return scans;
+    }
+
+    /**
+     * Resolve an alias from `FROM blocks b` / `JOIN users u` in our own SQL; unknown aliases are returned as-is.
+     */
+    private static String tableForAlias(String sql, String alias) {
+        if (alias == null) return "";
+        String[] tokens = sql.split("\\s+");
+        for (int i = 1; i + 1 < tokens.length; i++) {
+            if (tokens[i + 1].equalsIgnoreCase(alias) && ("FROM".equalsIgnoreCase(tokens[i - 1]) || "JOIN".equalsIgnoreCase(tokens[i - 1]))) {
+                return tokens[i].toLowerCase(Locale.ROOT);
+            }
+        }
+        return alias.toLowerCase(Locale.ROOT);
+    }
+}
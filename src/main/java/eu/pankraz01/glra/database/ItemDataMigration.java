@@ -0,0 +1,51 @@
+package eu.pankraz01.glra.database;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO;
+
+/**
+ * Moves legacy base64 item data in `glra_rollback_actions.item_data` into the binary `item_blob` column.
+ * Runs on a low-priority background thread in small chunks, so large tables do not block startup or hold long write
+ * locks. Reads fall back to `item_data` until a row is converted. New rows are written to `item_blob` only, so once a
+ * pass finds nothing left it records itself in `glra_background_tasks` and later starts skip the (unindexed) scan.
+ */
+public final class ItemDataMigration {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final int CHUNK_SIZE = 500;
+    private static final long PAUSE_MS = 50L;
+    private static final String TASK = "item-data-to-blob";
+
+    private ItemDataMigration() {
+    }
+
+    public static void start() {
+        Thread thread = new Thread(ItemDataMigration::run, "glra-item-data-migration");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private static void run() {
+        RollbackActionLogDAO dao = new RollbackActionLogDAO();
+        long lastId = 0L;
+        try {
+            if (DatabaseSetup.isTaskCompleted(TASK)) return;
+            while (true) {
+                long next = dao.convertLegacyItemData(lastId, CHUNK_SIZE);
+                if (next < 0) break;
+                lastId = next;
+                Thread.sleep(PAUSE_MS);
+            }
+            if (lastId > 0) {
+                LOGGER.info("[GLRA] Converted legacy item data of rollback actions up to id {} to binary", lastId);
+            }
+            DatabaseSetup.markTaskCompleted(TASK);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.warn("[GLRA] Item data conversion stopped at id {}; it resumes on the next start: {}", lastId, e.getMessage());
+        }
+    }
+}
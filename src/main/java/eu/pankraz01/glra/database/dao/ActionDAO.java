@@ -5,27 +5,44 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.sql.Statement;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
 
 import eu.pankraz01.glra.database.Action;
+import eu.pankraz01.glra.database.CancellableQuery;
 import eu.pankraz01.glra.database.ContainerAction;
 import eu.pankraz01.glra.database.DBConnection;
+import eu.pankraz01.glra.database.IndexAdvisor;
 
 /**
  * DAO for loading actions from the griefLogger DB schema (blocks/items).
  * This implementation focuses on `blocks` and joins `materials` and `users` for readable names.
  */
 public final class ActionDAO {
-    /**
-     * Load container (inventory) actions since `sinceMillis`. Player filter is optional and matches the username.
-     * Returns a list ordered by time DESC.
-     */
-    public List<ContainerAction> loadContainerActions(long sinceMillis, Optional<String> player) throws SQLException {
-        final List<ContainerAction> result = new ArrayList<>();
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String AIR = "minecraft:air";
+
+    // One fixed statement per query shape (index 1 = with player filter), so pooled connections can reuse the prepared statement
+    private static final String[] CONTAINER_SQL = { containerSql(false), containerSql(true) };
+    private static final String[] BLOCK_SQL = { blockSql(false), blockSql(true) };
+    // Window-function variants, indexed (player ? 1 : 0) | (compact ? 2 : 0)
+    private static final String[] BLOCK_WINDOW_SQL = {
+            blockWindowSql(false, false), blockWindowSql(true, false), blockWindowSql(false, true), blockWindowSql(true, true)
+    };
 
+    // null = not probed yet; detected once per JVM on the connection the rollback loads use
+    private static volatile Boolean windowFunctions;
+
+    private static String containerSql(boolean withPlayer) {
         final StringBuilder sql = new StringBuilder();
         sql.append("SELECT c.time AS ts, c.user AS user_id, u.name AS player_name, c.level AS level_id, l.name AS level_name, ");
         sql.append("c.x, c.y, c.z, c.type AS material_id, m.name AS material_name, c.data AS item_data, c.amount AS amount, c.action AS action_code ");
@@ -34,16 +51,111 @@ public final class ActionDAO {
         sql.append("LEFT JOIN users u ON u.id = c.user ");
         sql.append("LEFT JOIN levels l ON l.id = c.level ");
         sql.append("WHERE c.time >= ? ");
-        if (player.isPresent()) sql.append("AND u.name = ? ");
+        if (withPlayer) sql.append("AND u.name = ? ");
         sql.append("ORDER BY c.time DESC");
+        return sql.toString();
+    }
+
+    private static String blockSql(boolean withPlayer) {
+        final StringBuilder sql = new StringBuilder();
+        sql.append("SELECT b.time AS ts, b.user AS user_id, u.name AS player_name, b.level AS level_id, l.name AS level_name, b.x, b.y, b.z, b.type AS material_id, m.name AS material_name, b.action AS action_code, a.name AS action_name ");
+        sql.append("FROM blocks b ");
+        sql.append("LEFT JOIN actions a ON a.id = b.action ");
+        sql.append("LEFT JOIN materials m ON m.id = b.type ");
+        sql.append("LEFT JOIN users u ON u.id = b.user ");
+        sql.append("LEFT JOIN levels l ON l.id = b.level ");
+        sql.append("WHERE b.time >= ? ");
+        if (withPlayer) sql.append("AND u.name = ? ");
+        sql.append("ORDER BY b.time DESC");
+        return sql.toString();
+    }
 
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+    /**
+     * Same rows as {@link #blockSql(boolean)}, plus `old_material_name`: the state left by the previous action at the same
+     * coordinate within the window, computed with `LAG` exactly like the Java pass in {@link #loadBlockActions}.
+     * With {@code compact} only the newest row per coordinate is returned, carrying the state before the oldest one.
+     */
+    private static String blockWindowSql(boolean withPlayer, boolean compact) {
+        final String coordinate = "PARTITION BY b.level, b.x, b.y, b.z";
+        final StringBuilder sql = new StringBuilder();
+        sql.append("SELECT b.time AS ts, b.user AS user_id, u.name AS player_name, b.level AS level_id, l.name AS level_name, b.x, b.y, b.z, b.type AS material_id, m.name AS material_name, b.action AS action_code, a.name AS action_name, ");
+        // COALESCE instead of LAG's default argument, which MariaDB does not support; the state expression is never NULL
+        sql.append("COALESCE(LAG(").append(stateAfterSql()).append(") OVER (").append(coordinate).append(" ORDER BY b.time), '").append(AIR).append("') AS old_material_name ");
+        sql.append("FROM blocks b ");
+        sql.append("LEFT JOIN actions a ON a.id = b.action ");
+        sql.append("LEFT JOIN materials m ON m.id = b.type ");
+        sql.append("LEFT JOIN users u ON u.id = b.user ");
+        sql.append("LEFT JOIN levels l ON l.id = b.level ");
+        sql.append("WHERE b.time >= ? ");
+        if (withPlayer) sql.append("AND u.name = ? ");
+        if (!compact) {
+            sql.append("ORDER BY b.time DESC");
+            return sql.toString();
+        }
+        final String wCoordinate = "PARTITION BY w.level_id, w.x, w.y, w.z";
+        return "SELECT c.* FROM (SELECT w.*, "
+                + "ROW_NUMBER() OVER (" + wCoordinate + " ORDER BY w.ts DESC) AS coord_rank, "
+                + "FIRST_VALUE(w.old_material_name) OVER (" + wCoordinate + " ORDER BY w.ts) AS first_old_material "
+                + "FROM (" + sql + ") w) c WHERE c.coord_rank = 1 ORDER BY c.ts DESC";
+    }
+
+    /**
+     * SQL for the block state after an action, mirroring {@link Action#kind()}: air after a break, otherwise the logged material.
+     */
+    private static String stateAfterSql() {
+        String knownNames = Arrays.stream(Action.ActionType.values())
+                .map(type -> "'" + type.dbName + "'")
+                .collect(Collectors.joining(", "));
+        String breakNames = Arrays.stream(Action.ActionType.values())
+                .filter(type -> Action.kindOf(type) == Action.Kind.BREAK)
+                .map(type -> "'" + type.dbName + "'")
+                .collect(Collectors.joining(", "));
+        String breakCodes = Arrays.stream(Action.ActionType.values())
+                .filter(type -> Action.kindOf(type) == Action.Kind.BREAK && type.code >= 0)
+                .map(type -> String.valueOf(type.code))
+                .collect(Collectors.joining(", "));
+        // ActionType.fromDb: a known action name wins, otherwise the numeric code decides
+        String isBreak = "CASE WHEN UPPER(TRIM(a.name)) IN (" + knownNames + ") THEN UPPER(TRIM(a.name)) IN (" + breakNames + ") "
+                + "ELSE b.action IN (" + breakCodes + ") END";
+        return "CASE WHEN " + isBreak + " THEN '" + AIR + "' ELSE COALESCE(NULLIF(m.name, ''), '" + AIR + "') END";
+    }
+
+    /**
+     * Rollback load queries with sample parameters, for {@link IndexAdvisor}.
+     */
+    public static List<IndexAdvisor.QueryShape> queryShapes() {
+        long dayAgo = System.currentTimeMillis() - 86_400_000L;
+        return List.of(
+                new IndexAdvisor.QueryShape("rollback blocks", BLOCK_SQL[0], List.of(dayAgo)),
+                new IndexAdvisor.QueryShape("rollback blocks by player", BLOCK_SQL[1], List.of(dayAgo, "Steve")),
+                new IndexAdvisor.QueryShape("rollback containers", CONTAINER_SQL[0], List.of(dayAgo)),
+                new IndexAdvisor.QueryShape("rollback containers by player", CONTAINER_SQL[1], List.of(dayAgo, "Steve")));
+    }
+
+    /**
+     * Load container (inventory) actions since `sinceMillis`. Player filter is optional and matches the username.
+     * Returns a list ordered by time DESC.
+     */
+    public List<ContainerAction> loadContainerActions(long sinceMillis, Optional<String> player) throws SQLException {
+        return loadContainerActions(sinceMillis, player, new CancellableQuery());
+    }
+
+    /**
+     * Like {@link #loadContainerActions(long, Optional)}, but the query can be aborted through `query`.
+     */
+    public List<ContainerAction> loadContainerActions(long sinceMillis, Optional<String> player, CancellableQuery query) throws SQLException {
+        final List<ContainerAction> result = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getReplicaConnection(sinceMillis); PreparedStatement ps = conn.prepareStatement(CONTAINER_SQL[player.isPresent() ? 1 : 0])) {
+            DBConnection.streamResults(ps);
             int idx = 1;
             ps.setLong(idx++, sinceMillis);
             if (player.isPresent()) ps.setString(idx++, player.get());
 
+            query.begin(ps);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
+                    query.onRow();
                     long ts = rs.getLong("ts");
                     int userId = rs.getInt("user_id");
                     String playerName = rs.getString("player_name");
@@ -60,6 +172,8 @@ public final class ActionDAO {
 
                     result.add(new ContainerAction(ts, userId, playerName, levelId, levelName, x, y, z, materialId, materialName, data, amount, actionCode));
                 }
+            } finally {
+                query.end(ps);
             }
         }
 
@@ -71,26 +185,64 @@ public final class ActionDAO {
      * Returns a list ordered by time DESC.
      */
     public List<Action> loadBlockActions(long sinceMillis, Optional<String> player) throws SQLException {
-        final List<Action> result = new ArrayList<>();
+        return loadBlockActions(sinceMillis, player, new CancellableQuery());
+    }
 
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT b.time AS ts, b.user AS user_id, u.name AS player_name, b.level AS level_id, l.name AS level_name, b.x, b.y, b.z, b.type AS material_id, m.name AS material_name, b.action AS action_code, a.name AS action_name ");
-        sql.append("FROM blocks b ");
-        sql.append("LEFT JOIN actions a ON a.id = b.action ");
-        sql.append("LEFT JOIN materials m ON m.id = b.type ");
-        sql.append("LEFT JOIN users u ON u.id = b.user ");
-        sql.append("LEFT JOIN levels l ON l.id = b.level ");
-        sql.append("WHERE b.time >= ? ");
-        if (player.isPresent()) sql.append("AND u.name = ? ");
-        sql.append("ORDER BY b.time DESC");
+    /**
+     * Like {@link #loadBlockActions(long, Optional)}, but the query can be aborted through `query`.
+     */
+    public List<Action> loadBlockActions(long sinceMillis, Optional<String> player, CancellableQuery query) throws SQLException {
+        return loadBlockActions(sinceMillis, player, query, false);
+    }
+
+    /**
+     * Load block actions with `oldMaterialName` filled in. Uses window functions in the database when available
+     * (MySQL 8, MariaDB 10.2+, SQLite 3.25+) and the Java timeline pass otherwise.
+     * With {@code compact}, only the newest action per coordinate is returned; its `oldMaterialName` is the state before
+     * the oldest action there, so rolling it back gives the same result as rolling back every action.
+     */
+    public List<Action> loadBlockActions(long sinceMillis, Optional<String> player, CancellableQuery query, boolean compact) throws SQLException {
+        if (supportsWindowFunctions(sinceMillis)) {
+            String sql = BLOCK_WINDOW_SQL[(player.isPresent() ? 1 : 0) | (compact ? 2 : 0)];
+            return queryBlockActions(sql, sinceMillis, player, query, compact ? "first_old_material" : "old_material_name");
+        }
+
+        final List<Action> result = queryBlockActions(BLOCK_SQL[player.isPresent() ? 1 : 0], sinceMillis, player, query, null);
+
+        // Compute oldMaterialName for each action by simulating the timeline oldest->newest.
+        // oldMaterialName now represents the block state before the action occurred.
+        Map<String, String> currentState = new HashMap<>();
+        for (int i = result.size() - 1; i >= 0; i--) {
+            Action a = result.get(i);
+            String key = a.coordKey();
+
+            // what was in the world before this action?
+            a.oldMaterialName = currentState.getOrDefault(key, "minecraft:air");
+
+            // update the tracked state to what the world looked like after the action
+            switch (a.kind()) {
+                case PLACE -> currentState.put(key, normalizeMaterial(a.materialName));
+                case BREAK -> currentState.put(key, "minecraft:air");
+                default -> currentState.put(key, normalizeMaterial(a.materialName));
+            }
+        }
 
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+        return compact ? compactByCoordinate(result) : result;
+    }
+
+    private List<Action> queryBlockActions(String sql, long sinceMillis, Optional<String> player, CancellableQuery query, String oldMaterialColumn) throws SQLException {
+        final List<Action> result = new ArrayList<>();
+
+        try (Connection conn = DBConnection.getReplicaConnection(sinceMillis); PreparedStatement ps = conn.prepareStatement(sql)) {
+            DBConnection.streamResults(ps);
             int idx = 1;
             ps.setLong(idx++, sinceMillis);
             if (player.isPresent()) ps.setString(idx++, player.get());
 
+            query.begin(ps);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
+                    query.onRow();
                     long ts = rs.getLong("ts");
                     int userId = rs.getInt("user_id");
                     String playerName = rs.getString("player_name");
@@ -104,30 +256,57 @@ public final class ActionDAO {
                     int actionCode = rs.getInt("action_code");
                     String actionName = rs.getString("action_name");
 
-                    result.add(new Action(ts, userId, playerName, levelId, levelName, x, y, z, materialId, materialName, actionCode, actionName));
+                    Action action = new Action(ts, userId, playerName, levelId, levelName, x, y, z, materialId, materialName, actionCode, actionName);
+                    if (oldMaterialColumn != null) {
+                        action.oldMaterialName = rs.getString(oldMaterialColumn);
+                    }
+                    result.add(action);
                 }
+            } finally {
+                query.end(ps);
             }
         }
+        return result;
+    }
 
-        // Compute oldMaterialName for each action by simulating the timeline oldest->newest.
-        // oldMaterialName now represents the block state before the action occurred.
-        Map<String, String> currentState = new HashMap<>();
-        for (int i = result.size() - 1; i >= 0; i--) {
-            Action a = result.get(i);
-            String key = a.coordKey();
-
-            // what was in the world before this action?
-            a.oldMaterialName = currentState.getOrDefault(key, "minecraft:air");
+    /**
+     * Java counterpart of the compact window query: keep the newest action per coordinate (list is newest first) and give
+     * it the `oldMaterialName` of the oldest one.
+     */
+    private static List<Action> compactByCoordinate(List<Action> newestFirst) {
+        Map<String, Action> newest = new LinkedHashMap<>();
+        Map<String, String> stateBeforeOldest = new HashMap<>();
+        for (Action action : newestFirst) {
+            String key = action.coordKey();
+            newest.putIfAbsent(key, action);
+            stateBeforeOldest.put(key, action.oldMaterialName);
+        }
+        List<Action> result = new ArrayList<>(newest.size());
+        for (Map.Entry<String, Action> entry : newest.entrySet()) {
+            Action action = entry.getValue();
+            action.oldMaterialName = stateBeforeOldest.get(entry.getKey());
+            result.add(action);
+        }
+        return result;
+    }
 
-            // update the tracked state to what the world looked like after the action
-            switch (a.kind()) {
-                case PLACE -> currentState.put(key, normalizeMaterial(a.materialName));
-                case BREAK -> currentState.put(key, "minecraft:air");
-                default -> currentState.put(key, normalizeMaterial(a.materialName));
+    private static boolean supportsWindowFunctions(long sinceMillis) throws SQLException {
+        Boolean supported = windowFunctions;
+        if (supported != null) return supported;
+        try (Connection conn = DBConnection.getReplicaConnection(sinceMillis); Statement st = conn.createStatement()) {
+            st.executeQuery("SELECT LAG(t.x) OVER (ORDER BY t.x) FROM (SELECT 1 AS x) t").close();
+            supported = Boolean.TRUE;
+        } catch (SQLException e) {
+            String state = e.getSQLState();
+            if (state != null && state.startsWith("08")) {
+                // no connection: says nothing about the server version, probe again next time
+                throw e;
             }
+            LOGGER.info("[GLRA] Database has no window functions ({}); computing previous block states in Java", e.getMessage());
+            supported = Boolean.FALSE;
         }
-
-        return result;
+        windowFunctions = supported;
+        return supported;
     }
 
     private static String normalizeMaterial(String materialName) {
@@ -141,7 +320,7 @@ public final class ActionDAO {
         final List<String> result = new ArrayList<>();
         final String sql = "SELECT name FROM users WHERE name IS NOT NULL ORDER BY name ASC";
 
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = DBConnection.getReplicaConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     String name = rs.getString("name");
@@ -161,7 +340,7 @@ public final class ActionDAO {
         final List<String> result = new ArrayList<>();
         final String sql = "SELECT name FROM levels WHERE name IS NOT NULL ORDER BY name ASC";
 
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = DBConnection.getReplicaConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     String name = rs.getString("name");
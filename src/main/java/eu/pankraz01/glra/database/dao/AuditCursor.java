@@ -0,0 +1,60 @@
+package eu.pankraz01.glra.database.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keyset position for paging the audit listings: a page is the rows right before ({@code older}) or right after a
+ * (ts, keys) position rather than an OFFSET, so deep pages cost the same index seek as the first one.
+ * <p>
+ * {@code keys} break ties within one timestamp, in the order the listing sorts them. Where the table has an id it is
+ * that id; for GriefLogger's tables it is the row key chosen by {@link AuditDAO} (the rowid on SQLite, a column tuple
+ * on MySQL/MariaDB).
+ */
+public record AuditCursor(long ts, List<Long> keys, boolean older) {
+    // More than any listing uses, so a forged cursor cannot make us parse an arbitrarily long list
+    private static final int MAX_KEYS = 8;
+
+    public AuditCursor {
+        keys = List.copyOf(keys);
+        if (keys.isEmpty()) throw new IllegalArgumentException("cursor needs at least one key");
+    }
+
+    /**
+     * The first key; the row id for listings keyed by id.
+     */
+    public long key() {
+        return keys.get(0);
+    }
+
+    /**
+     * Parse the `ts,key[,key...]` form used in query strings; empty if it is missing or malformed.
+     */
+    public static Optional<AuditCursor> parse(String raw, boolean older) {
+        if (raw == null || raw.isBlank()) return Optional.empty();
+        String[] parts = raw.split(",", MAX_KEYS + 2);
+        if (parts.length < 2 || parts.length > MAX_KEYS + 1) return Optional.empty();
+        try {
+            long ts = Long.parseLong(parts[0].trim());
+            List<Long> keys = new ArrayList<>(parts.length - 1);
+            for (int i = 1; i < parts.length; i++) {
+                keys.add(Long.parseLong(parts[i].trim()));
+            }
+            return Optional.of(new AuditCursor(ts, keys, older));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The `ts,key[,key...]` form accepted by {@link #parse}.
+     */
+    public static String format(long ts, List<Long> keys) {
+        StringBuilder sb = new StringBuilder().append(ts);
+        for (long key : keys) {
+            sb.append(',').append(key);
+        }
+        return sb.toString();
+    }
+}
@@ -5,167 +5,486 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+import eu.pankraz01.glra.Config;
 import eu.pankraz01.glra.database.Action;
+import eu.pankraz01.glra.database.CancellableQuery;
 import eu.pankraz01.glra.database.DBConnection;
+import eu.pankraz01.glra.database.IndexAdvisor;
 
 /**
  * Lightweight DAO to load recent audit data for the web dashboard.
+ * <p>
+ * GriefLogger's tables have no id column, so listings order rows of the same millisecond by a row key: the rowid on
+ * SQLite, and on MySQL/MariaDB (where InnoDB's hidden row id cannot be selected) the tuple of the row's own columns.
+ * Each entry carries its key, and {@link AuditCursor}s are built from it.
+ * <p>
+ * The MySQL/MariaDB key is not unique: rows of the same millisecond that agree in every key column (for chat, the
+ * player and the message hash) tie, and when a page ends inside such a group the next page starts after all of it.
+ * Paging there can therefore leave out exact duplicates, and CRC32 collisions of different messages sent by the same
+ * player in the same millisecond. SQLite's rowid has no such gap.
  */
 public final class AuditDAO {
-    public record ChatEntry(long ts, String playerName, String message) {}
+    public record ChatEntry(long ts, String playerName, String message, List<Long> key) {}
 
     public record BlockEntry(long ts, String playerName, String levelName, int x, int y, int z, String materialName,
-                             int actionCode, String actionName, String actionLabel) {}
+                             int actionCode, String actionName, String actionLabel, List<Long> key) {}
 
     public record ContainerEntry(long ts, String playerName, String levelName, int x, int y, int z, String materialName,
-                                 int amount, int actionCode) {}
+                                 int amount, int actionCode, List<Long> key) {}
 
-    public List<ChatEntry> loadRecentChat(int limit, Optional<String> player) throws SQLException {
-        List<ChatEntry> result = new ArrayList<>();
-        SQLException lastError = null;
+    private static final int SQLITE = 0;
+    private static final int MYSQL = 1;
 
-        // Test data: table `chats` with column `message`
-        List<String> candidates = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT c.time AS ts, u.name AS player_name, c.message AS msg FROM chats c LEFT JOIN users u ON u.id = c.user ");
-        if (player.isPresent()) {
-            sb.append("WHERE u.name = ? ");
-        }
-        sb.append("ORDER BY c.time DESC LIMIT ?");
-        candidates.add(sb.toString());
-
-        for (String query : candidates) {
-            try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(query)) {
-                int idx = 1;
-                if (player.isPresent()) ps.setString(idx++, player.get());
-                ps.setInt(idx, Math.max(1, limit));
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        result.add(new ChatEntry(
-                                rs.getLong("ts"),
-                                rs.getString("player_name"),
-                                rs.getString("msg")
-                        ));
-                    }
+    // Row key per dialect (see dialect()). Nullable columns are coalesced, as a NULL would drop the row from the
+    // keyset comparison
+    private static final String[][] CHAT_KEY = {
+            { "c.rowid" },
+            { nonNull("c.user"), nonNull("CRC32(c.message)") } };
+    private static final String[][] BLOCK_KEY = {
+            { "b.rowid" },
+            { "b.x", "b.y", "b.z", nonNull("b.level"), nonNull("b.type"), nonNull("b.action"), nonNull("b.user") } };
+    private static final String[][] CONTAINER_KEY = {
+            { "c.rowid" },
+            { "c.x", "c.y", "c.z", nonNull("c.level"), nonNull("c.type"), nonNull("c.action"), nonNull("c.user"), "c.amount" } };
+
+    private static final String CHAT_FROM = " FROM chats c LEFT JOIN users u ON u.id = c.user";
+    private static final String BLOCK_FROM = " FROM blocks b "
+            + "LEFT JOIN actions a ON a.id = b.action "
+            + "LEFT JOIN materials m ON m.id = b.type "
+            + "LEFT JOIN users u ON u.id = b.user "
+            + "LEFT JOIN levels l ON l.id = b.level";
+    private static final String CONTAINER_FROM = " FROM containers c "
+            + "LEFT JOIN materials m ON m.id = c.type "
+            + "LEFT JOIN users u ON u.id = c.user "
+            + "LEFT JOIN levels l ON l.id = c.level";
+
+    // Fixed SQL per dialect, filter combination (see shape()) and page direction (see page()), so pooled connections
+    // can reuse the prepared statements
+    private static final String[][][] CHAT_SQL = new String[2][2][3];
+    private static final String[][][] BLOCK_SQL = new String[2][8][3];
+    private static final String[][][] CONTAINER_SQL = new String[2][8][3];
+    // Live tail: everything from a lower time bound, oldest first (filters are applied per subscriber)
+    private static final String[] CHAT_TAIL_SQL = new String[2];
+    private static final String[] BLOCK_TAIL_SQL = new String[2];
+    private static final String[] CONTAINER_TAIL_SQL = new String[2];
+
+    private static final int PAGE_FIRST = 0;
+    private static final int PAGE_OLDER = 1;
+    private static final int PAGE_NEWER = 2;
+
+    static {
+        for (int dialect = 0; dialect < 2; dialect++) {
+            for (int page = 0; page < 3; page++) {
+                CHAT_SQL[dialect][0][page] = chatSql(dialect, false, page);
+                CHAT_SQL[dialect][1][page] = chatSql(dialect, true, page);
+                for (int shape = 0; shape < 8; shape++) {
+                    BLOCK_SQL[dialect][shape][page] = blockSql(dialect, (shape & 1) != 0, (shape & 2) != 0, (shape & 4) != 0, page);
+                    CONTAINER_SQL[dialect][shape][page] = containerSql(dialect, (shape & 1) != 0, (shape & 2) != 0, (shape & 4) != 0, page);
                 }
-                // Succeeded with this statement; ignore later candidates.
-                return result;
-            } catch (SQLException e) {
-                lastError = e;
-                result.clear();
             }
+            CHAT_TAIL_SQL[dialect] = chatSelect(dialect) + CHAT_FROM + " WHERE c.time >= ? ORDER BY c.time ASC LIMIT ?";
+            BLOCK_TAIL_SQL[dialect] = blockSelect(dialect) + BLOCK_FROM + " WHERE b.time >= ? ORDER BY b.time ASC LIMIT ?";
+            CONTAINER_TAIL_SQL[dialect] = containerSelect(dialect) + CONTAINER_FROM + " WHERE c.time >= ? ORDER BY c.time ASC LIMIT ?";
         }
+    }
 
-        if (lastError != null) throw lastError;
-        return result;
+    private static int dialect() {
+        return Config.databaseType() == Config.DatabaseType.SQLITE ? SQLITE : MYSQL;
     }
 
-    public List<BlockEntry> loadRecentBlocks(int limit, Optional<String> player, Optional<String> level, Optional<Integer> actionCodeFilter) throws SQLException {
-        List<BlockEntry> result = new ArrayList<>();
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT b.time AS ts, u.name AS player_name, l.name AS level_name, b.x, b.y, b.z, m.name AS material_name, b.action AS action_code, a.name AS action_name ");
-        sql.append("FROM blocks b ");
-        sql.append("LEFT JOIN actions a ON a.id = b.action ");
-        sql.append("LEFT JOIN materials m ON m.id = b.type ");
-        sql.append("LEFT JOIN users u ON u.id = b.user ");
-        sql.append("LEFT JOIN levels l ON l.id = b.level ");
+    private static String nonNull(String column) {
+        return "COALESCE(" + column + ", 0)";
+    }
+
+    private static int shape(Optional<String> player, Optional<String> level, Optional<Integer> actionCodeFilter) {
+        return (player.isPresent() ? 1 : 0) | (level.isPresent() ? 2 : 0) | (actionCodeFilter.isPresent() ? 4 : 0);
+    }
+
+    private static int page(Optional<AuditCursor> cursor) {
+        if (cursor.isEmpty()) return PAGE_FIRST;
+        return cursor.get().older() ? PAGE_OLDER : PAGE_NEWER;
+    }
+
+    /**
+     * {@code cursor}, unless its keys do not fit {@code key} (e.g. it was issued before switching databases); such a
+     * cursor starts over at the newest page.
+     */
+    private static Optional<AuditCursor> usable(Optional<AuditCursor> cursor, String[] key) {
+        return cursor.filter(c -> c.keys().size() == key.length);
+    }
+
+    private static String chatSelect(int dialect) {
+        return "SELECT c.time AS ts, u.name AS player_name, c.message AS msg" + keyColumns(CHAT_KEY[dialect]);
+    }
+
+    private static String blockSelect(int dialect) {
+        return "SELECT b.time AS ts, u.name AS player_name, l.name AS level_name, b.x, b.y, b.z, m.name AS material_name, b.action AS action_code, a.name AS action_name"
+                + keyColumns(BLOCK_KEY[dialect]);
+    }
+
+    private static String containerSelect(int dialect) {
+        return "SELECT c.time AS ts, u.name AS player_name, l.name AS level_name, c.x, c.y, c.z, m.name AS material_name, c.amount AS amount, c.action AS action_code"
+                + keyColumns(CONTAINER_KEY[dialect]);
+    }
+
+    private static String keyColumns(String[] key) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < key.length; i++) {
+            sb.append(", ").append(key[i]).append(" AS k").append(i);
+        }
+        return sb.toString();
+    }
+
+    private static String chatSql(int dialect, boolean withPlayer, int page) {
+        List<String> where = new ArrayList<>();
+        if (withPlayer) where.add("u.name = ?");
+        return pageSql(dialect, chatSelect(dialect), CHAT_FROM, where, "c.time", CHAT_KEY[dialect], page);
+    }
+
+    private static String blockSql(int dialect, boolean withPlayer, boolean withLevel, boolean withAction, int page) {
+        return pageSql(dialect, blockSelect(dialect), BLOCK_FROM, filters(withPlayer, withLevel, withAction, "b.action"), "b.time", BLOCK_KEY[dialect], page);
+    }
+
+    private static String containerSql(int dialect, boolean withPlayer, boolean withLevel, boolean withAction, int page) {
+        return pageSql(dialect, containerSelect(dialect), CONTAINER_FROM, filters(withPlayer, withLevel, withAction, "c.action"), "c.time", CONTAINER_KEY[dialect], page);
+    }
 
-        boolean hasWhere = false;
+    private static List<String> filters(boolean withPlayer, boolean withLevel, boolean withAction, String actionColumn) {
+        List<String> where = new ArrayList<>();
+        if (withPlayer) where.add("u.name = ?");
+        if (withLevel) where.add("l.name = ?");
+        if (withAction) where.add(actionColumn + " = ?");
+        return where;
+    }
 
-        if (player.isPresent()) {
-            sql.append(hasWhere ? " AND" : " WHERE").append(" u.name = ?");
-            hasWhere = true;
+    /**
+     * Build the SQL of one page: the filters, the keyset condition of the cursor, and ORDER BY time, then row key.
+     * Newer pages are read oldest first and reversed by {@link #readPage}.
+     * <p>
+     * SQLite's time index already lists the rows of one timestamp by rowid, so the page is read straight off the
+     * index. MySQL/MariaDB cannot sort by the key tuple through the time index and would sort every matching row;
+     * there the sort is confined to the time range of the next {@code limit} rows, found through the index by a
+     * subquery (the edge timestamp is included whole, so the key order within it stays exact).
+     */
+    private static String pageSql(int dialect, String select, String from, List<String> filters, String timeColumn, String[] key, int page) {
+        List<String> where = new ArrayList<>(filters);
+        if (page != PAGE_FIRST) {
+            where.add(keyset(timeColumn, key, page == PAGE_OLDER ? "<" : ">"));
         }
-        if (level.isPresent()) {
-            sql.append(hasWhere ? " AND" : " WHERE").append(" l.name = ?");
-            hasWhere = true;
+        String direction = page == PAGE_NEWER ? " ASC" : " DESC";
+        StringBuilder sql = new StringBuilder(select).append(from);
+        appendWhere(sql, where);
+        if (dialect == MYSQL) {
+            sql.append(where.isEmpty() ? " WHERE " : " AND ").append(timeColumn)
+                    .append(page == PAGE_NEWER ? " <= (SELECT MAX(p.ts)" : " >= (SELECT MIN(p.ts)")
+                    .append(" FROM (SELECT ").append(timeColumn).append(" AS ts").append(from);
+            appendWhere(sql, where);
+            sql.append(" ORDER BY ").append(timeColumn).append(direction).append(" LIMIT ?) p)");
         }
-        if (actionCodeFilter.isPresent()) {
-            sql.append(hasWhere ? " AND" : " WHERE").append(" b.action = ?");
-            hasWhere = true;
+        sql.append(" ORDER BY ").append(timeColumn).append(direction);
+        for (String column : key) {
+            sql.append(", ").append(column).append(direction);
         }
+        return sql.append(" LIMIT ?").toString();
+    }
 
-        sql.append(" ORDER BY b.time DESC LIMIT ?");
+    private static void appendWhere(StringBuilder sql, List<String> where) {
+        for (int i = 0; i < where.size(); i++) {
+            sql.append(i == 0 ? " WHERE " : " AND ").append(where.get(i));
+        }
+    }
 
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            int idx = 1;
-            if (player.isPresent()) ps.setString(idx++, player.get());
-            if (level.isPresent()) ps.setString(idx++, level.get());
-            if (actionCodeFilter.isPresent()) ps.setInt(idx++, actionCodeFilter.get());
-            ps.setInt(idx, Math.max(1, limit));
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    result.add(new BlockEntry(
-                            rs.getLong("ts"),
-                            rs.getString("player_name"),
-                            rs.getString("level_name"),
-                            rs.getInt("x"),
-                            rs.getInt("y"),
-                            rs.getInt("z"),
-                            rs.getString("material_name"),
-                            rs.getInt("action_code"),
-                            rs.getString("action_name"),
-                            mapBlockActionLabel(rs.getString("action_name"), rs.getInt("action_code"))
-                    ));
-                }
-            }
+    /**
+     * Rows past the cursor: an earlier (later) timestamp, or the cursor's timestamp and a smaller (larger) row key.
+     * The leading plain range on the time column is redundant, but without it SQLite reads the OR through a full
+     * index scan instead of a seek.
+     */
+    private static String keyset(String timeColumn, String[] key, String op) {
+        StringBuilder sql = new StringBuilder(timeColumn).append(' ').append(op).append("= ? AND (")
+                .append(timeColumn).append(' ').append(op).append(" ? OR (")
+                .append(timeColumn).append(" = ? AND ");
+        if (key.length == 1) {
+            sql.append(key[0]).append(' ').append(op).append(" ?");
+        } else {
+            sql.append('(').append(String.join(", ", key)).append(") ").append(op).append(" (")
+                    .append(String.join(", ", Collections.nCopies(key.length, "?"))).append(')');
+        }
+        return sql.append("))").toString();
+    }
+
+    /**
+     * Audit queries with sample parameters, for {@link IndexAdvisor}.
+     */
+    public static List<IndexAdvisor.QueryShape> queryShapes() {
+        int dialect = dialect();
+        int blockKeys = BLOCK_KEY[dialect].length;
+        return List.of(
+                new IndexAdvisor.QueryShape("audit chat", CHAT_SQL[dialect][0][PAGE_FIRST], sampleArgs(dialect, List.of(), 0, PAGE_FIRST)),
+                new IndexAdvisor.QueryShape("audit chat by player", CHAT_SQL[dialect][1][PAGE_FIRST], sampleArgs(dialect, List.of("Steve"), 0, PAGE_FIRST)),
+                new IndexAdvisor.QueryShape("audit blocks", BLOCK_SQL[dialect][0][PAGE_FIRST], sampleArgs(dialect, List.of(), 0, PAGE_FIRST)),
+                new IndexAdvisor.QueryShape("audit blocks by player", BLOCK_SQL[dialect][1][PAGE_FIRST], sampleArgs(dialect, List.of("Steve"), 0, PAGE_FIRST)),
+                new IndexAdvisor.QueryShape("audit blocks older page", BLOCK_SQL[dialect][0][PAGE_OLDER], sampleArgs(dialect, List.of(), blockKeys, PAGE_OLDER)),
+                new IndexAdvisor.QueryShape("audit containers", CONTAINER_SQL[dialect][0][PAGE_FIRST], sampleArgs(dialect, List.of(), 0, PAGE_FIRST)),
+                new IndexAdvisor.QueryShape("audit containers by player", CONTAINER_SQL[dialect][1][PAGE_FIRST], sampleArgs(dialect, List.of("Steve"), 0, PAGE_FIRST)),
+                new IndexAdvisor.QueryShape("audit tail chat", CHAT_TAIL_SQL[dialect], List.of(0L, 500)),
+                new IndexAdvisor.QueryShape("audit tail blocks", BLOCK_TAIL_SQL[dialect], List.of(0L, 500)),
+                new IndexAdvisor.QueryShape("audit tail containers", CONTAINER_TAIL_SQL[dialect], List.of(0L, 500)));
+    }
+
+    // parameters in the order bindPage() sets them, with zeros for the cursor
+    private static List<Object> sampleArgs(int dialect, List<Object> filters, int keys, int page) {
+        List<Object> pageArgs = new ArrayList<>(filters);
+        if (page != PAGE_FIRST) {
+            pageArgs.addAll(Collections.nCopies(keys + 3, 0L));
         }
+        List<Object> args = new ArrayList<>(pageArgs);
+        if (dialect == MYSQL) {
+            args.addAll(pageArgs);
+            args.add(100);
+        }
+        args.add(100);
+        return args;
+    }
 
+    public List<ChatEntry> loadRecentChat(int limit, Optional<String> player) throws SQLException {
+        List<ChatEntry> result = new ArrayList<>();
+        streamRecentChat(limit, player, Optional.empty(), new CancellableQuery(0), result::add);
+        return result;
+    }
+
+    public List<BlockEntry> loadRecentBlocks(int limit, Optional<String> player, Optional<String> level, Optional<Integer> actionCodeFilter) throws SQLException {
+        List<BlockEntry> result = new ArrayList<>();
+        streamRecentBlocks(limit, player, level, actionCodeFilter, Optional.empty(), new CancellableQuery(0), result::add);
         return result;
     }
 
     public List<ContainerEntry> loadRecentContainers(int limit, Optional<String> player, Optional<String> level, Optional<Integer> actionCodeFilter) throws SQLException {
         List<ContainerEntry> result = new ArrayList<>();
-        final StringBuilder sql = new StringBuilder();
-        sql.append("SELECT c.time AS ts, u.name AS player_name, l.name AS level_name, c.x, c.y, c.z, m.name AS material_name, c.amount AS amount, c.action AS action_code ");
-        sql.append("FROM containers c ");
-        sql.append("LEFT JOIN materials m ON m.id = c.type ");
-        sql.append("LEFT JOIN users u ON u.id = c.user ");
-        sql.append("LEFT JOIN levels l ON l.id = c.level ");
+        streamRecentContainers(limit, player, level, actionCodeFilter, Optional.empty(), new CancellableQuery(0), result::add);
+        return result;
+    }
 
-        boolean hasWhere = false;
-        if (player.isPresent()) {
-            sql.append(hasWhere ? " AND" : " WHERE").append(" u.name = ?");
-            hasWhere = true;
+    /**
+     * Like {@link #loadRecentChat}, but hands each row to {@code handler} while the result set is still being read.
+     * With a cursor, the page next to it is returned instead of the newest one (still newest first). The statement
+     * runs under {@code query}, so another thread can cancel it.
+     */
+    public <E extends Exception> void streamRecentChat(int limit, Optional<String> player, Optional<AuditCursor> cursor,
+                                                       CancellableQuery query, RowHandler<ChatEntry, E> handler) throws SQLException, E {
+        int dialect = dialect();
+        Optional<AuditCursor> at = usable(cursor, CHAT_KEY[dialect]);
+        // Test data: table `chats` with column `message`
+        try (Connection conn = DBConnection.getReplicaConnection(replicaBound(at)); PreparedStatement ps = conn.prepareStatement(CHAT_SQL[dialect][player.isPresent() ? 1 : 0][page(at)])) {
+            bindPage(ps, dialect, limit, at, (st, idx) -> {
+                if (player.isPresent()) st.setString(idx++, player.get());
+                return idx;
+            });
+            readPage(ps, at, query, rs -> readChat(rs, dialect), handler);
         }
-        if (level.isPresent()) {
-            sql.append(hasWhere ? " AND" : " WHERE").append(" l.name = ?");
-            hasWhere = true;
+    }
+
+    /**
+     * Like {@link #loadRecentBlocks}, but hands each row to {@code handler} while the result set is still being read.
+     * With a cursor, the page next to it is returned instead of the newest one (still newest first). The statement
+     * runs under {@code query}, so another thread can cancel it.
+     */
+    public <E extends Exception> void streamRecentBlocks(int limit, Optional<String> player, Optional<String> level, Optional<Integer> actionCodeFilter,
+                                                         Optional<AuditCursor> cursor, CancellableQuery query, RowHandler<BlockEntry, E> handler) throws SQLException, E {
+        int dialect = dialect();
+        Optional<AuditCursor> at = usable(cursor, BLOCK_KEY[dialect]);
+        try (Connection conn = DBConnection.getReplicaConnection(replicaBound(at)); PreparedStatement ps = conn.prepareStatement(BLOCK_SQL[dialect][shape(player, level, actionCodeFilter)][page(at)])) {
+            bindPage(ps, dialect, limit, at, filterBinder(player, level, actionCodeFilter));
+            readPage(ps, at, query, rs -> readBlock(rs, dialect), handler);
         }
-        if (actionCodeFilter.isPresent()) {
-            sql.append(hasWhere ? " AND" : " WHERE").append(" c.action = ?");
-            hasWhere = true;
+    }
+
+    /**
+     * Like {@link #loadRecentContainers}, but hands each row to {@code handler} while the result set is still being read.
+     * With a cursor, the page next to it is returned instead of the newest one (still newest first). The statement
+     * runs under {@code query}, so another thread can cancel it.
+     */
+    public <E extends Exception> void streamRecentContainers(int limit, Optional<String> player, Optional<String> level, Optional<Integer> actionCodeFilter,
+                                                             Optional<AuditCursor> cursor, CancellableQuery query, RowHandler<ContainerEntry, E> handler) throws SQLException, E {
+        int dialect = dialect();
+        Optional<AuditCursor> at = usable(cursor, CONTAINER_KEY[dialect]);
+        try (Connection conn = DBConnection.getReplicaConnection(replicaBound(at)); PreparedStatement ps = conn.prepareStatement(CONTAINER_SQL[dialect][shape(player, level, actionCodeFilter)][page(at)])) {
+            bindPage(ps, dialect, limit, at, filterBinder(player, level, actionCodeFilter));
+            readPage(ps, at, query, rs -> readContainer(rs, dialect), handler);
         }
+    }
+
+    /**
+     * The newest timestamp a page can return, for {@link DBConnection#getReplicaConnection(long)}: first pages and pages
+     * towards newer rows reach up to now and so stay on the primary; older pages end at their cursor.
+     */
+    private static long replicaBound(Optional<AuditCursor> at) {
+        return at.filter(AuditCursor::older).map(AuditCursor::ts).orElseGet(System::currentTimeMillis);
+    }
 
-        sql.append(" ORDER BY c.time DESC LIMIT ?");
+    private interface FilterBinder {
+        /** Bind the filter values from {@code idx} on; returns the next free index. */
+        int bind(PreparedStatement ps, int idx) throws SQLException;
+    }
 
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            int idx = 1;
+    private static FilterBinder filterBinder(Optional<String> player, Optional<String> level, Optional<Integer> actionCodeFilter) {
+        return (ps, idx) -> {
             if (player.isPresent()) ps.setString(idx++, player.get());
             if (level.isPresent()) ps.setString(idx++, level.get());
             if (actionCodeFilter.isPresent()) ps.setInt(idx++, actionCodeFilter.get());
-            ps.setInt(idx, Math.max(1, limit));
+            return idx;
+        };
+    }
+
+    /**
+     * Bind the parameters of a {@link #pageSql} statement: filters and cursor, on MySQL/MariaDB once more for the
+     * range subquery with its limit, then the limit.
+     */
+    private static void bindPage(PreparedStatement ps, int dialect, int limit, Optional<AuditCursor> cursor, FilterBinder filters) throws SQLException {
+        int idx = 1;
+        for (int pass = dialect == MYSQL ? 2 : 1; pass > 0; pass--) {
+            idx = filters.bind(ps, idx);
+            if (cursor.isPresent()) {
+                ps.setLong(idx++, cursor.get().ts());
+                ps.setLong(idx++, cursor.get().ts());
+                ps.setLong(idx++, cursor.get().ts());
+                for (long key : cursor.get().keys()) {
+                    ps.setLong(idx++, key);
+                }
+            }
+            if (pass == 2) ps.setInt(idx++, Math.max(1, limit));
+        }
+        ps.setInt(idx, Math.max(1, limit));
+    }
+
+    /**
+     * Hand the rows of a page to {@code handler}, newest first: newer pages are read oldest first and reversed here.
+     */
+    private <T, E extends Exception> void readPage(PreparedStatement ps, Optional<AuditCursor> cursor, CancellableQuery query,
+                                                   RowReader<T> reader, RowHandler<T, E> handler) throws SQLException, E {
+        List<T> newer = page(cursor) == PAGE_NEWER ? new ArrayList<>() : null;
+        query.begin(ps);
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                query.onRow();
+                T row = reader.read(rs);
+                if (newer != null) {
+                    newer.add(row);
+                } else {
+                    handler.accept(row);
+                }
+            }
+        } finally {
+            query.end(ps);
+        }
+        if (newer != null) {
+            for (int i = newer.size() - 1; i >= 0; i--) {
+                handler.accept(newer.get(i));
+            }
+        }
+    }
+
+    private interface RowReader<T> {
+        T read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Chat messages logged at or after {@code fromTs}, oldest first, for the live audit stream.
+     */
+    public <E extends Exception> void streamChatSince(long fromTs, int limit, RowHandler<ChatEntry, E> handler) throws SQLException, E {
+        int dialect = dialect();
+        try (Connection conn = DBConnection.getReplicaConnection(fromTs); PreparedStatement ps = conn.prepareStatement(CHAT_TAIL_SQL[dialect])) {
+            ps.setLong(1, fromTs);
+            ps.setInt(2, Math.max(1, limit));
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    result.add(new ContainerEntry(
-                            rs.getLong("ts"),
-                            rs.getString("player_name"),
-                            rs.getString("level_name"),
-                            rs.getInt("x"),
-                            rs.getInt("y"),
-                            rs.getInt("z"),
-                            rs.getString("material_name"),
-                            rs.getInt("amount"),
-                            rs.getInt("action_code")
-                    ));
+                    handler.accept(readChat(rs, dialect));
                 }
             }
         }
+    }
 
-        return result;
+    /**
+     * Block actions logged at or after {@code fromTs}, oldest first, for the live audit stream.
+     */
+    public <E extends Exception> void streamBlocksSince(long fromTs, int limit, RowHandler<BlockEntry, E> handler) throws SQLException, E {
+        int dialect = dialect();
+        try (Connection conn = DBConnection.getReplicaConnection(fromTs); PreparedStatement ps = conn.prepareStatement(BLOCK_TAIL_SQL[dialect])) {
+            ps.setLong(1, fromTs);
+            ps.setInt(2, Math.max(1, limit));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(readBlock(rs, dialect));
+                }
+            }
+        }
+    }
+
+    /**
+     * Container actions logged at or after {@code fromTs}, oldest first, for the live audit stream.
+     */
+    public <E extends Exception> void streamContainersSince(long fromTs, int limit, RowHandler<ContainerEntry, E> handler) throws SQLException, E {
+        int dialect = dialect();
+        try (Connection conn = DBConnection.getReplicaConnection(fromTs); PreparedStatement ps = conn.prepareStatement(CONTAINER_TAIL_SQL[dialect])) {
+            ps.setLong(1, fromTs);
+            ps.setInt(2, Math.max(1, limit));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(readContainer(rs, dialect));
+                }
+            }
+        }
+    }
+
+    private ChatEntry readChat(ResultSet rs, int dialect) throws SQLException {
+        return new ChatEntry(
+                rs.getLong("ts"),
+                rs.getString("player_name"),
+                rs.getString("msg"),
+                readKey(rs, CHAT_KEY[dialect])
+        );
+    }
+
+    private BlockEntry readBlock(ResultSet rs, int dialect) throws SQLException {
+        return new BlockEntry(
+                rs.getLong("ts"),
+                rs.getString("player_name"),
+                rs.getString("level_name"),
+                rs.getInt("x"),
+                rs.getInt("y"),
+                rs.getInt("z"),
+                rs.getString("material_name"),
+                rs.getInt("action_code"),
+                rs.getString("action_name"),
+                mapBlockActionLabel(rs.getString("action_name"), rs.getInt("action_code")),
+                readKey(rs, BLOCK_KEY[dialect])
+        );
+    }
+
+    private ContainerEntry readContainer(ResultSet rs, int dialect) throws SQLException {
+        return new ContainerEntry(
+                rs.getLong("ts"),
+                rs.getString("player_name"),
+                rs.getString("level_name"),
+                rs.getInt("x"),
+                rs.getInt("y"),
+                rs.getInt("z"),
+                rs.getString("material_name"),
+                rs.getInt("amount"),
+                rs.getInt("action_code"),
+                readKey(rs, CONTAINER_KEY[dialect])
+        );
+    }
+
+    private static List<Long> readKey(ResultSet rs, String[] key) throws SQLException {
+        Long[] values = new Long[key.length];
+        for (int i = 0; i < key.length; i++) {
+            values[i] = rs.getLong("k" + i);
+        }
+        return List.of(values);
     }
 
     private String mapBlockActionLabel(String actionName, int actionCode) {
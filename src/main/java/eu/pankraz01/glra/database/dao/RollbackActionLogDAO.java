@@ -4,40 +4,51 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.util.Base64;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import eu.pankraz01.glra.Config;
 import eu.pankraz01.glra.database.Action;
+import eu.pankraz01.glra.database.CancellableQuery;
 import eu.pankraz01.glra.database.ContainerAction;
 import eu.pankraz01.glra.database.DBConnection;
 
 public final class RollbackActionLogDAO {
     public record LoggedRollbackAction(long id, long jobId, long ts, String type, String levelName, int x, int y, int z,
-                                       String material, String oldMaterial, int amount, String itemData, int actionType) {
+                                       String material, String oldMaterial, int amount, byte[] itemData, int actionType) {
     }
 
-    public void logBlock(long jobId, Action action) {
+    /**
+     * Rollback action waiting to be written to `glra_rollback_actions`.
+     */
+    public record PendingRollbackAction(long jobId, long ts, String type, String levelName, int x, int y, int z,
+                                        String material, String oldMaterial, int amount, byte[] itemData, int actionType) {
+    }
+
+    public static PendingRollbackAction blockEntry(long jobId, Action action) {
         int actionType = switch (action.kind()) {
             case BREAK -> 1;
             case PLACE -> 2;
             default -> 3;
         };
-        log(jobId, "block", action.levelName, action.x, action.y, action.z, action.materialName, action.oldMaterialName, actionType, 0, null);
+        return new PendingRollbackAction(jobId, System.currentTimeMillis(), "block", action.levelName, action.x, action.y, action.z,
+                action.materialName, action.oldMaterialName, 0, null, actionType);
     }
 
-    public void logContainer(long jobId, ContainerAction action) {
+    public static PendingRollbackAction containerEntry(long jobId, ContainerAction action) {
         int actionType = switch (action.kind()) {
             case ADD -> 4;
             case REMOVE -> 5;
             default -> 6;
         };
-        String data = null;
-        if (action.data != null && action.data.length > 0) {
-            data = Base64.getEncoder().encodeToString(action.data);
-        }
-        log(jobId, "container", action.levelName, action.x, action.y, action.z, action.materialName, null, actionType, action.amount, data);
+        byte[] data = action.data != null && action.data.length > 0 ? action.data : null;
+        return new PendingRollbackAction(jobId, System.currentTimeMillis(), "container", action.levelName, action.x, action.y, action.z,
+                action.materialName, null, action.amount, data, actionType);
     }
 
     /**
@@ -46,13 +57,15 @@ public final class RollbackActionLogDAO {
     public List<LoggedRollbackAction> loadActionsForJobs(List<Long> jobIds) throws SQLException {
         if (jobIds == null || jobIds.isEmpty()) return List.of();
 
-        StringBuilder sql = new StringBuilder("SELECT id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, action_type ");
+        StringBuilder sql = new StringBuilder("SELECT id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, item_blob, action_type ");
         sql.append("FROM glra_rollback_actions WHERE job_id IN (");
         sql.append(String.join(",", Collections.nCopies(jobIds.size(), "?")));
         sql.append(") ORDER BY id DESC");
 
         List<LoggedRollbackAction> result = new ArrayList<>();
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            DBConnection.streamResults(ps);
+            ps.setQueryTimeout(Config.ROLLBACK_LOAD_TIMEOUT_SECONDS.get());
             int idx = 1;
             for (Long id : jobIds) {
                 ps.setLong(idx++, id);
@@ -71,7 +84,7 @@ public final class RollbackActionLogDAO {
                             rs.getString("material"),
                             rs.getString("old_material"),
                             rs.getInt("amount"),
-                            rs.getString("item_data"),
+                            readItemData(rs),
                             rs.getInt("action_type")
                     ));
                 }
@@ -81,18 +94,28 @@ public final class RollbackActionLogDAO {
     }
 
     /**
-     * Load recent rollback actions across all jobs, newest first.
+     * Load recent rollback actions across all jobs, newest (highest id) first: the order of
+     * {@link #loadActionsPage}, so the first audit page and the pages after it line up.
      */
     public List<LoggedRollbackAction> loadRecentActions(int limit) throws SQLException {
+        return loadRecentActions(limit, new CancellableQuery(0));
+    }
+
+    /**
+     * Like {@link #loadRecentActions(int)}, with the statement running under {@code query}.
+     */
+    public List<LoggedRollbackAction> loadRecentActions(int limit, CancellableQuery query) throws SQLException {
         List<LoggedRollbackAction> result = new ArrayList<>();
         StringBuilder sql = new StringBuilder();
-        sql.append("SELECT id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, action_type ");
-        sql.append("FROM glra_rollback_actions ORDER BY ts DESC LIMIT ?");
+        sql.append("SELECT id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, item_blob, action_type ");
+        sql.append("FROM glra_rollback_actions ORDER BY id DESC LIMIT ?");
 
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             ps.setInt(1, Math.max(1, limit));
+            query.begin(ps);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
+                    query.onRow();
                     result.add(new LoggedRollbackAction(
                             rs.getLong("id"),
                             rs.getLong("job_id"),
@@ -105,28 +128,107 @@ public final class RollbackActionLogDAO {
                             rs.getString("material"),
                             rs.getString("old_material"),
                             rs.getInt("amount"),
-                            rs.getString("item_data"),
+                            readItemData(rs),
                             rs.getInt("action_type")
                     ));
                 }
+            } finally {
+                query.end(ps);
             }
         }
         return result;
     }
 
+    /**
+     * Load up to {@code limit} rollback actions with an id above {@code afterId}, oldest first; used to tail the log.
+     */
+    public List<LoggedRollbackAction> loadActionsAfter(long afterId, int limit) throws SQLException {
+        String sql = "SELECT id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, item_blob, action_type "
+                + "FROM glra_rollback_actions WHERE id > ? ORDER BY id ASC LIMIT ?";
+        List<LoggedRollbackAction> result = new ArrayList<>();
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, afterId);
+            ps.setInt(2, Math.max(1, limit));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    result.add(new LoggedRollbackAction(
+                            rs.getLong("id"),
+                            rs.getLong("job_id"),
+                            rs.getLong("ts"),
+                            rs.getString("type"),
+                            rs.getString("level_name"),
+                            rs.getInt("x"),
+                            rs.getInt("y"),
+                            rs.getInt("z"),
+                            rs.getString("material"),
+                            rs.getString("old_material"),
+                            rs.getInt("amount"),
+                            readItemData(rs),
+                            rs.getInt("action_type")
+                    ));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Load the page of rollback actions next to {@code cursor} (keyed by id), newest first. The statement runs under
+     * {@code query}, so another thread can cancel it.
+     */
+    public List<LoggedRollbackAction> loadActionsPage(AuditCursor cursor, int limit, CancellableQuery query) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, item_blob, action_type ");
+        sql.append(cursor.older()
+                ? "FROM glra_rollback_actions WHERE id < ? ORDER BY id DESC LIMIT ?"
+                : "FROM glra_rollback_actions WHERE id > ? ORDER BY id ASC LIMIT ?");
+
+        List<LoggedRollbackAction> result = new ArrayList<>();
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            ps.setLong(1, cursor.key());
+            ps.setInt(2, Math.max(1, limit));
+            query.begin(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    query.onRow();
+                    result.add(new LoggedRollbackAction(
+                            rs.getLong("id"),
+                            rs.getLong("job_id"),
+                            rs.getLong("ts"),
+                            rs.getString("type"),
+                            rs.getString("level_name"),
+                            rs.getInt("x"),
+                            rs.getInt("y"),
+                            rs.getInt("z"),
+                            rs.getString("material"),
+                            rs.getString("old_material"),
+                            rs.getInt("amount"),
+                            readItemData(rs),
+                            rs.getInt("action_type")
+                    ));
+                }
+            } finally {
+                query.end(ps);
+            }
+        }
+        if (!cursor.older()) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
     /**
      * Load specific rollback actions by their ids, newest first.
      */
     public List<LoggedRollbackAction> loadActionsByIds(List<Long> ids) throws SQLException {
         if (ids == null || ids.isEmpty()) return List.of();
 
-        StringBuilder sql = new StringBuilder("SELECT id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, action_type ");
+        StringBuilder sql = new StringBuilder("SELECT id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, item_blob, action_type ");
         sql.append("FROM glra_rollback_actions WHERE id IN (");
         sql.append(String.join(",", Collections.nCopies(ids.size(), "?")));
         sql.append(") ORDER BY ts DESC");
 
         List<LoggedRollbackAction> result = new ArrayList<>();
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             int idx = 1;
             for (Long id : ids) {
                 ps.setLong(idx++, id);
@@ -145,7 +247,7 @@ public final class RollbackActionLogDAO {
                             rs.getString("material"),
                             rs.getString("old_material"),
                             rs.getInt("amount"),
-                            rs.getString("item_data"),
+                            readItemData(rs),
                             rs.getInt("action_type")
                     ));
                 }
@@ -154,42 +256,150 @@ public final class RollbackActionLogDAO {
         return result;
     }
 
-    private void log(long jobId, String type, String levelName, int x, int y, int z, String material, String oldMaterial, int actionType, int amount, String itemData) {
-        long now = System.currentTimeMillis();
-        long id = now;
-        int attempts = 0;
-        while (attempts < 5) {
-            try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(
-                    "INSERT INTO glra_rollback_actions (id, job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_data, action_type) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)")) {
-                ps.setLong(1, id);
-                ps.setLong(2, jobId);
-                ps.setLong(3, now);
-                ps.setString(4, type);
-                ps.setString(5, levelName);
-                ps.setInt(6, x);
-                ps.setInt(7, y);
-                ps.setInt(8, z);
-                ps.setString(9, material);
-                ps.setString(10, oldMaterial);
-                ps.setInt(11, amount);
-                ps.setString(12, itemData);
-                ps.setInt(13, actionType);
-                ps.executeUpdate();
-                return;
+    /**
+     * Write a batch of rollback actions using a single JDBC batch inside one transaction.
+     * Ids are assigned by the database (auto-increment), so inserts never collide.
+     */
+    public void logBatch(List<PendingRollbackAction> entries) throws SQLException {
+        if (entries == null || entries.isEmpty()) return;
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "INSERT INTO glra_rollback_actions (job_id, ts, type, level_name, x, y, z, material, old_material, amount, item_blob, action_type) VALUES (?,?,?,?,?,?,?,?,?,?,?,?)")) {
+                for (PendingRollbackAction entry : entries) {
+                    ps.setLong(1, entry.jobId());
+                    ps.setLong(2, entry.ts());
+                    ps.setString(3, entry.type());
+                    ps.setString(4, entry.levelName());
+                    ps.setInt(5, entry.x());
+                    ps.setInt(6, entry.y());
+                    ps.setInt(7, entry.z());
+                    ps.setString(8, entry.material());
+                    ps.setString(9, entry.oldMaterial());
+                    ps.setInt(10, entry.amount());
+                    if (entry.itemData() == null || entry.itemData().length == 0) {
+                        ps.setNull(11, Types.BLOB);
+                    } else {
+                        ps.setBytes(11, entry.itemData());
+                    }
+                    ps.setInt(12, entry.actionType());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
             } catch (SQLException e) {
-                if (isPrimaryKeyViolation(e)) {
-                    id++;
-                    attempts++;
-                    continue;
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Number of logged actions per job id.
+     */
+    public Map<Long, Long> countActionsByJob() throws SQLException {
+        Map<Long, Long> counts = new HashMap<>();
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT job_id, COUNT(*) AS cnt FROM glra_rollback_actions GROUP BY job_id")) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    counts.put(rs.getLong("job_id"), rs.getLong("cnt"));
                 }
-                throw new RuntimeException("Failed to log rollback action", e);
             }
         }
-        throw new RuntimeException("Failed to log rollback action after retries");
+        return counts;
     }
 
-    private boolean isPrimaryKeyViolation(SQLException e) {
-        String state = e.getSQLState();
-        return "23000".equals(state) || e.getErrorCode() == 19;
+    /**
+     * Delete up to `limit` actions of a job, selected by primary key so each statement touches a bounded range.
+     * Returns the number of deleted rows (0 once the job is gone).
+     */
+    public int deleteJobBatch(long jobId, int limit) throws SQLException {
+        try (Connection conn = DBConnection.getConnection()) {
+            List<Long> ids = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id FROM glra_rollback_actions WHERE job_id = ? ORDER BY id LIMIT ?")) {
+                ps.setLong(1, jobId);
+                ps.setInt(2, Math.max(1, limit));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getLong("id"));
+                    }
+                }
+            }
+            if (ids.isEmpty()) return 0;
+
+            String sql = "DELETE FROM glra_rollback_actions WHERE id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                int idx = 1;
+                for (Long id : ids) {
+                    ps.setLong(idx++, id);
+                }
+                return ps.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Convert up to `limit` legacy rows (base64 in `item_data`) with an id above `afterId` to `item_blob`.
+     * Returns the highest id examined, or -1 when no legacy rows are left.
+     */
+    public long convertLegacyItemData(long afterId, int limit) throws SQLException {
+        long lastId = -1L;
+        try (Connection conn = DBConnection.getConnection()) {
+            List<Long> ids = new ArrayList<>();
+            List<byte[]> blobs = new ArrayList<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id, item_data FROM glra_rollback_actions WHERE id > ? AND item_data IS NOT NULL ORDER BY id LIMIT ?")) {
+                ps.setLong(1, afterId);
+                ps.setInt(2, Math.max(1, limit));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong("id");
+                        ids.add(lastId);
+                        blobs.add(decodeItemData(rs.getString("item_data")));
+                    }
+                }
+            }
+            if (ids.isEmpty()) return -1L;
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "UPDATE glra_rollback_actions SET item_blob = ?, item_data = NULL WHERE id = ?")) {
+                for (int i = 0; i < ids.size(); i++) {
+                    byte[] blob = blobs.get(i);
+                    if (blob == null) {
+                        ps.setNull(1, Types.BLOB);
+                    } else {
+                        ps.setBytes(1, blob);
+                    }
+                    ps.setLong(2, ids.get(i));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+        return lastId;
+    }
+
+    private static byte[] readItemData(ResultSet rs) throws SQLException {
+        byte[] blob = rs.getBytes("item_blob");
+        if (blob != null && blob.length > 0) return blob;
+        // rows written before item_blob existed (until converted in the background)
+        return decodeItemData(rs.getString("item_data"));
+    }
+
+    private static byte[] decodeItemData(String data) {
+        if (data == null || data.isBlank()) return null;
+        try {
+            return Base64.getDecoder().decode(data);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
     }
 }
@@ -4,51 +4,78 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+import eu.pankraz01.glra.Config;
+import eu.pankraz01.glra.database.CancellableQuery;
 import eu.pankraz01.glra.database.DBConnection;
 import eu.pankraz01.glra.rollback.RollbackManager;
 
 public final class RollbackHistoryDAO {
+    private static final int ID_CHUNK = 500;
+
     public record HistoryEntry(long id, long ts, Integer actorId, String actorName, String source, String timeLabel,
                                long durationMs, String player, String radius, String scope) {}
 
     public void record(Integer actorId, String actorName, String source, String timeLabel, long durationMs, Optional<String> player, Optional<String> radiusLabel, RollbackManager.RollbackKind kind) {
-        long now = System.currentTimeMillis();
-        long id = now;
-        int attempts = 0;
-        while (attempts < 5) {
-            if (tryInsert(id, now, actorId, actorName, source, timeLabel, durationMs, player, radiusLabel, kind)) {
-                return;
-            }
-            id++;
-            attempts++;
-        }
-        throw new RuntimeException("Failed to record rollback history after retries");
+        recordAndReturnId(actorId, actorName, source, timeLabel, durationMs, player, radiusLabel, kind);
     }
 
+    /**
+     * Insert a history row and return its database-assigned (auto-increment) id, which doubles as the rollback job id.
+     */
     public long recordAndReturnId(Integer actorId, String actorName, String source, String timeLabel, long durationMs, Optional<String> player, Optional<String> radiusLabel, RollbackManager.RollbackKind kind) {
-        long now = System.currentTimeMillis();
-        long id = now;
-        int attempts = 0;
-        while (attempts < 5) {
-            if (tryInsert(id, now, actorId, actorName, source, timeLabel, durationMs, player, radiusLabel, kind)) {
-                return id;
+        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(
+                "INSERT INTO glra_rollback_history (ts, actor_id, actor_name, source, time_label, duration_ms, player, radius, scope) VALUES (?,?,?,?,?,?,?,?,?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            ps.setLong(1, System.currentTimeMillis());
+            if (actorId == null) {
+                ps.setNull(2, java.sql.Types.INTEGER);
+            } else {
+                ps.setInt(2, actorId);
+            }
+            ps.setString(3, actorName);
+            ps.setString(4, source);
+            ps.setString(5, timeLabel);
+            ps.setLong(6, durationMs);
+            ps.setString(7, player.orElse(null));
+            ps.setString(8, radiusLabel.orElse(null));
+            ps.setString(9, kind == null ? "both" : kind.describe());
+            ps.executeUpdate();
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    return keys.getLong(1);
+                }
             }
-            id++;
-            attempts++;
+            throw new SQLException("No id generated for rollback history entry");
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to record rollback history", e);
         }
-        throw new RuntimeException("Failed to record rollback history after retries");
     }
 
+    /**
+     * Ids of the most recent rollbacks that can still be undone; jobs outside the age and job-count limits of the
+     * retention policy are skipped even if the retention task has not removed them yet. The `maxRows` limit depends
+     * on the undo log, not on this table; callers apply it with {@code RollbackLogRetention.beyondRowLimit}.
+     */
     public List<Long> loadRecentHistoryIds(int limit) throws SQLException {
         List<Long> ids = new ArrayList<>();
+        int maxJobs = Config.RETENTION_MAX_JOBS.get();
+        if (maxJobs > 0) {
+            limit = Math.min(limit, maxJobs);
+        }
         if (limit <= 0) return ids;
-        String sql = "SELECT id FROM glra_rollback_history ORDER BY ts DESC LIMIT ?";
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, limit);
+        String sql = "SELECT id FROM glra_rollback_history WHERE ts >= ? ORDER BY ts DESC LIMIT ?";
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, Config.retentionCutoffMillis());
+            ps.setInt(2, limit);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     ids.add(rs.getLong("id"));
@@ -58,79 +85,179 @@ public final class RollbackHistoryDAO {
         return ids;
     }
 
+    public void delete(long id) {
+        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(
+                "DELETE FROM glra_rollback_history WHERE id = ?")) {
+            ps.setLong(1, id);
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to delete rollback history entry", e);
+        }
+    }
+
     public List<HistoryEntry> loadRecent(int limit, Optional<String> playerFilter) throws SQLException {
         List<HistoryEntry> entries = new ArrayList<>();
-        if (limit <= 0) return entries;
+        streamRecent(limit, playerFilter, Optional.empty(), new CancellableQuery(0), entries::add);
+        return entries;
+    }
+
+    /**
+     * Like {@link #loadRecent}, but hands each row to {@code handler} while the result set is still being read.
+     * With a cursor (keyed by id), the page next to it is returned instead of the newest one (still newest first).
+     * The statement runs under {@code query}, so another thread can cancel it.
+     */
+    public <E extends Exception> void streamRecent(int limit, Optional<String> playerFilter, Optional<AuditCursor> cursor,
+                                                   CancellableQuery query, RowHandler<HistoryEntry, E> handler) throws SQLException, E {
+        if (limit <= 0) return;
+        boolean newer = cursor.isPresent() && !cursor.get().older();
 
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT id, ts, actor_id, actor_name, source, time_label, duration_ms, player, radius, scope ");
         sql.append("FROM glra_rollback_history ");
+        List<String> where = new ArrayList<>();
         if (playerFilter.isPresent()) {
-            sql.append("WHERE player = ? OR actor_name = ? ");
+            where.add("(player = ? OR actor_name = ?)");
+        }
+        if (cursor.isPresent()) {
+            // expanded row comparison (ts, id) < (?, ?), which both backends can seek through the ts index
+            where.add(newer ? "(ts > ? OR (ts = ? AND id > ?))" : "(ts < ? OR (ts = ? AND id < ?))");
         }
-        sql.append("ORDER BY ts DESC LIMIT ?");
+        if (!where.isEmpty()) {
+            sql.append("WHERE ").append(String.join(" AND ", where)).append(' ');
+        }
+        sql.append(newer ? "ORDER BY ts ASC, id ASC LIMIT ?" : "ORDER BY ts DESC, id DESC LIMIT ?");
 
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             int idx = 1;
             if (playerFilter.isPresent()) {
                 String name = playerFilter.get();
                 ps.setString(idx++, name);
                 ps.setString(idx++, name);
             }
+            if (cursor.isPresent()) {
+                ps.setLong(idx++, cursor.get().ts());
+                ps.setLong(idx++, cursor.get().ts());
+                ps.setLong(idx++, cursor.get().key());
+            }
             ps.setInt(idx, limit);
 
+            List<HistoryEntry> reversed = newer ? new ArrayList<>() : null;
+            query.begin(ps);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Integer actorId = rs.getObject("actor_id") == null ? null : rs.getInt("actor_id");
-                    entries.add(new HistoryEntry(
-                            rs.getLong("id"),
-                            rs.getLong("ts"),
-                            actorId,
-                            rs.getString("actor_name"),
-                            rs.getString("source"),
-                            rs.getString("time_label"),
-                            rs.getLong("duration_ms"),
-                            rs.getString("player"),
-                            rs.getString("radius"),
-                            rs.getString("scope")
-                    ));
+                    query.onRow();
+                    if (reversed != null) {
+                        reversed.add(readEntry(rs));
+                    } else {
+                        handler.accept(readEntry(rs));
+                    }
+                }
+            } finally {
+                query.end(ps);
+            }
+            // newer pages are read oldest first
+            if (reversed != null) {
+                for (int i = reversed.size() - 1; i >= 0; i--) {
+                    handler.accept(reversed.get(i));
                 }
             }
         }
+    }
 
-        return entries;
+    /**
+     * History rows with an id above {@code afterId}, oldest first, for the live audit stream.
+     */
+    public <E extends Exception> void streamAfter(long afterId, int limit, RowHandler<HistoryEntry, E> handler) throws SQLException, E {
+        String sql = "SELECT id, ts, actor_id, actor_name, source, time_label, duration_ms, player, radius, scope "
+                + "FROM glra_rollback_history WHERE id > ? ORDER BY id ASC LIMIT ?";
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, afterId);
+            ps.setInt(2, Math.max(1, limit));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    handler.accept(readEntry(rs));
+                }
+            }
+        }
     }
 
-    private boolean isPrimaryKeyViolation(SQLException e) {
-        // Best-effort: SQLState 23000 for MySQL/MariaDB, SQLite uses 19
-        String state = e.getSQLState();
-        return "23000".equals(state) || e.getErrorCode() == 19;
+    /**
+     * Ids of rollbacks outside the retention limits: older than {@code cutoff} (if {@code > 0}) or beyond the
+     * {@code keepJobs} newest (if {@code > 0}). Only the matching ids are read, not the whole history.
+     */
+    public Set<Long> loadExpiredIds(long cutoff, int keepJobs) throws SQLException {
+        Set<Long> ids = new LinkedHashSet<>();
+        try (Connection conn = DBConnection.getReadConnection()) {
+            if (cutoff > 0) {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT id FROM glra_rollback_history WHERE ts < ? ORDER BY id")) {
+                    ps.setLong(1, cutoff);
+                    readIds(ps, ids);
+                }
+            }
+            if (keepJobs > 0) {
+                try (PreparedStatement ps = conn.prepareStatement(
+                        "SELECT id FROM glra_rollback_history ORDER BY ts DESC, id DESC LIMIT ? OFFSET ?")) {
+                    ps.setInt(1, Integer.MAX_VALUE);
+                    ps.setInt(2, keepJobs);
+                    readIds(ps, ids);
+                }
+            }
+        }
+        return ids;
     }
 
-    private boolean tryInsert(long id, long ts, Integer actorId, String actorName, String source, String timeLabel, long durationMs, Optional<String> player, Optional<String> radiusLabel, RollbackManager.RollbackKind kind) {
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO glra_rollback_history (id, ts, actor_id, actor_name, source, time_label, duration_ms, player, radius, scope) VALUES (?,?,?,?,?,?,?,?,?,?)")) {
-            ps.setLong(1, id);
-            ps.setLong(2, ts);
-            if (actorId == null) {
-                ps.setNull(3, java.sql.Types.INTEGER);
-            } else {
-                ps.setInt(3, actorId);
+    /**
+     * Which of {@code ids} still have a history row.
+     */
+    public Set<Long> loadExistingIds(Collection<Long> ids) throws SQLException {
+        Set<Long> existing = new HashSet<>();
+        List<Long> all = new ArrayList<>(ids);
+        try (Connection conn = DBConnection.getReadConnection()) {
+            for (int from = 0; from < all.size(); from += ID_CHUNK) {
+                List<Long> chunk = all.subList(from, Math.min(all.size(), from + ID_CHUNK));
+                String sql = "SELECT id FROM glra_rollback_history WHERE id IN (" + "?,".repeat(chunk.size() - 1) + "?)";
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        ps.setLong(i + 1, chunk.get(i));
+                    }
+                    readIds(ps, existing);
+                }
             }
-            ps.setString(4, actorName);
-            ps.setString(5, source);
-            ps.setString(6, timeLabel);
-            ps.setLong(7, durationMs);
-            ps.setString(8, player.orElse(null));
-            ps.setString(9, radiusLabel.orElse(null));
-            ps.setString(10, kind == null ? "both" : kind.describe());
-            ps.executeUpdate();
-            return true;
-        } catch (SQLException e) {
-            if (isPrimaryKeyViolation(e)) {
-                return false;
+        }
+        return existing;
+    }
+
+    private static void readIds(PreparedStatement ps, Set<Long> out) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                out.add(rs.getLong(1));
             }
-            throw new RuntimeException("Failed to record rollback history", e);
         }
     }
+
+    /**
+     * Highest history id, or 0 if there is none.
+     */
+    public long latestId() throws SQLException {
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(
+                "SELECT MAX(id) FROM glra_rollback_history"); ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0L;
+        }
+    }
+
+    private HistoryEntry readEntry(ResultSet rs) throws SQLException {
+        Integer actorId = rs.getObject("actor_id") == null ? null : rs.getInt("actor_id");
+        return new HistoryEntry(
+                rs.getLong("id"),
+                rs.getLong("ts"),
+                actorId,
+                rs.getString("actor_name"),
+                rs.getString("source"),
+                rs.getString("time_label"),
+                rs.getLong("duration_ms"),
+                rs.getString("player"),
+                rs.getString("radius"),
+                rs.getString("scope")
+        );
+    }
 }
@@ -0,0 +1,11 @@
+package eu.pankraz01.glra.database.dao;
+
+/**
+ * Receives rows one at a time while a query's result set is still open, so callers can process or send them without
+ * collecting a list first. {@code E} is the checked exception the handler may throw (e.g. {@code IOException} when
+ * writing a response), or {@code RuntimeException} for none.
+ */
+@FunctionalInterface
+public interface RowHandler<T, E extends Exception> {
+    void accept(T row) throws E;
+}
@@ -16,9 +16,10 @@ public final class WebTokenDAO {
     /**
      * Create or replace a token for a username.
      */
-    public String createOrReplace(String username) throws SQLException {
+    public TokenInfo createOrReplace(String username) throws SQLException {
         Integer userId = findUserId(username).orElseThrow(() -> new SQLException("User not found: " + username));
         String token = UUID.randomUUID().toString().replace("-", "");
+        long createdAt = System.currentTimeMillis();
         try (Connection conn = DBConnection.getConnection()) {
             conn.setAutoCommit(false);
             try (PreparedStatement del = conn.prepareStatement("DELETE FROM glra_web_tokens WHERE user_id=?")) {
@@ -28,12 +29,12 @@ public final class WebTokenDAO {
             try (PreparedStatement ins = conn.prepareStatement("INSERT INTO glra_web_tokens (user_id, token, created_at) VALUES (?, ?, ?)")) {
                 ins.setInt(1, userId);
                 ins.setString(2, token);
-                ins.setLong(3, System.currentTimeMillis());
+                ins.setLong(3, createdAt);
                 ins.executeUpdate();
             }
             conn.commit();
         }
-        return token;
+        return new TokenInfo(userId, username, token, createdAt);
     }
 
     public boolean remove(String username) throws SQLException {
@@ -46,7 +47,7 @@ public final class WebTokenDAO {
     }
 
     public Optional<TokenOwner> findUserByToken(String token) throws SQLException {
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement("SELECT t.user_id, u.name FROM glra_web_tokens t LEFT JOIN users u ON u.id = t.user_id WHERE token=?")) {
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement("SELECT t.user_id, u.name FROM glra_web_tokens t LEFT JOIN users u ON u.id = t.user_id WHERE token=?")) {
             ps.setString(1, token);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
@@ -62,7 +63,7 @@ public final class WebTokenDAO {
     public java.util.List<TokenInfo> listTokens(int offset, int limitPlusOne) throws SQLException {
         final java.util.List<TokenInfo> result = new java.util.ArrayList<>();
         final String sql = "SELECT t.user_id, t.token, t.created_at, u.name FROM glra_web_tokens t LEFT JOIN users u ON u.id = t.user_id ORDER BY t.created_at DESC LIMIT ? OFFSET ?";
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setInt(1, limitPlusOne);
             ps.setInt(2, offset);
             try (ResultSet rs = ps.executeQuery()) {
@@ -78,8 +79,23 @@ public final class WebTokenDAO {
         return result;
     }
 
+    /**
+     * All tokens with their owners, for the web server's in-memory token cache.
+     */
+    public java.util.List<TokenInfo> loadAllTokens() throws SQLException {
+        final java.util.List<TokenInfo> result = new java.util.ArrayList<>();
+        final String sql = "SELECT t.user_id, t.token, t.created_at, u.name FROM glra_web_tokens t LEFT JOIN users u ON u.id = t.user_id";
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                result.add(new TokenInfo(rs.getInt("user_id"), rs.getString("name"), rs.getString("token"), rs.getLong("created_at")));
+            }
+        }
+        return result;
+    }
+
     public Optional<Integer> findUserId(String username) throws SQLException {
-        try (Connection conn = DBConnection.getConnection(); PreparedStatement ps = conn.prepareStatement("SELECT id FROM users WHERE name = ?")) {
+        try (Connection conn = DBConnection.getReadConnection(); PreparedStatement ps = conn.prepareStatement("SELECT id FROM users WHERE name = ?")) {
             ps.setString(1, username);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
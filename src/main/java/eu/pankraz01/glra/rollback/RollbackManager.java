@@ -7,7 +7,6 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Queue;
-import java.util.Base64;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -24,10 +23,14 @@ import com.mojang.logging.LogUtils;
 
 import eu.pankraz01.glra.Config;
 import eu.pankraz01.glra.database.Action;
+import eu.pankraz01.glra.database.CancellableQuery;
+import eu.pankraz01.glra.database.DatabaseHealthMonitor;
+import eu.pankraz01.glra.database.DatabaseSetup;
 import eu.pankraz01.glra.database.ContainerAction;
 import eu.pankraz01.glra.database.dao.ActionDAO;
 import eu.pankraz01.glra.database.dao.RollbackActionLogDAO;
 import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.LoggedRollbackAction;
+import eu.pankraz01.glra.rollback.log.RollbackActionStore;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.HolderLookup;
 import net.minecraft.core.RegistryAccess;
@@ -83,6 +86,8 @@ public class RollbackManager {
     private static final String ACTIONBAR_STATUS_RUNNING_KEY = LANG_ACTIONBAR_BASE + "status.running";
     private static final String ACTIONBAR_STATUS_LOADING_KEY = LANG_ACTIONBAR_BASE + "status.loading";
     private static final String ACTIONBAR_STATUS_CANCELLING_KEY = LANG_ACTIONBAR_BASE + "status.cancelling";
+    private static final String ACTIONBAR_STATUS_SAVING_KEY = LANG_ACTIONBAR_BASE + "status.saving";
+    private static final String ACTIONBAR_STATUS_PAUSED_KEY = LANG_ACTIONBAR_BASE + "status.paused";
     private static final String ACTIONBAR_STATUS_FINISHED_KEY = LANG_ACTIONBAR_BASE + "status.done";
     private static final String ACTIONBAR_STATUS_FAILED_KEY = LANG_ACTIONBAR_BASE + "status.failed";
     private static final String ACTIONBAR_STATUS_CANCELLED_KEY = LANG_ACTIONBAR_BASE + "status.cancelled";
@@ -102,20 +107,35 @@ public class RollbackManager {
     private final AtomicBoolean loading = new AtomicBoolean(false);
     private final AtomicBoolean completionMessagePending = new AtomicBoolean(false);
     private volatile CompletionReason lastCompletion = CompletionReason.NONE;
+    // Completion reached by the tick loop that still waits for the undo log to be flushed
+    private volatile CompletionReason pendingCompletion = CompletionReason.NONE;
+    private volatile long pendingFlushMarker = 0L;
     private volatile RollbackJobInfo jobInfo;
     private volatile long jobHistoryId = -1L;
+    // Load of the current rollback job; cancelling aborts its running query
+    private volatile CancellableQuery activeLoad;
+    // Held while cancelling and while a loader publishes its actions, so a cancel cannot slip in between the loader's
+    // last cancellation check and filling the queue the tick loop has already cleared
+    private final Object publishLock = new Object();
     private long jobStartMillis = 0L;
     private int ticksSinceProgressLog = 0;
+    private boolean pausedForDatabase = false;
     private final ActionBarNotifier actionBarNotifier = new ActionBarNotifier();
 
     private final ActionDAO dao = new ActionDAO();
-    private final RollbackActionLogDAO actionLogDAO = new RollbackActionLogDAO();
+    private final RollbackActionStore actionStore = RollbackActionStore.fromConfig();
 
     /**
      * Start a rollback by loading block and inventory actions since `sinceMillis` (inclusive).
      * Player is an optional username filter.
      */
     public void startRollback(long sinceMillis, String timeLabel, Optional<String> player, Optional<RollbackArea> area, Optional<String> radiusLabel, RollbackKind kind, long historyId) {
+        if (!DatabaseSetup.isReady()) {
+            LOGGER.warn(DatabaseSetup.hasFailed()
+                    ? "Database setup failed and is being retried; rollback request ignored"
+                    : "Database setup is still running; rollback request ignored");
+            return;
+        }
         if (runningJob.get()) {
             LOGGER.warn("A rollback job is already running");
             return;
@@ -131,17 +151,21 @@ public class RollbackManager {
         loading.set(true);
         completionMessagePending.set(false);
         lastCompletion = CompletionReason.NONE;
+        pendingCompletion = CompletionReason.NONE;
         jobStartMillis = System.currentTimeMillis();
         Optional<String> safeRadiusLabel = radiusLabel == null ? Optional.empty() : radiusLabel;
         jobInfo = new RollbackJobInfo(timeLabel == null ? "provided time" : timeLabel, player, safeRadiusLabel, effectiveKind);
         jobHistoryId = historyId;
         ticksSinceProgressLog = 0;
+        CancellableQuery load = new CancellableQuery();
+        activeLoad = load;
 
         loader.submit(() -> {
             try {
                 LOGGER.info("Loading actions since={} (player={}, area={}, scope={})", Instant.ofEpochMilli(sinceMillis), player.orElse("<any>"), area.map(RollbackArea::describe).orElse("<none>"), effectiveKind.describe());
-                List<Action> blockActions = effectiveKind.includeBlocks() ? dao.loadBlockActions(sinceMillis, player) : List.of();
-                List<ContainerAction> containerActions = effectiveKind.includeItems() ? dao.loadContainerActions(sinceMillis, player) : List.of();
+                List<Action> blockActions = effectiveKind.includeBlocks() ? dao.loadBlockActions(sinceMillis, player, load, Config.ROLLBACK_COMPACT_BLOCKS.get()) : List.of();
+                List<ContainerAction> containerActions = effectiveKind.includeItems() ? dao.loadContainerActions(sinceMillis, player, load) : List.of();
+                load.checkCancelled();
 
                 List<QueuedAction> combined = new ArrayList<>(blockActions.size() + containerActions.size());
                 for (Action action : blockActions) {
@@ -154,17 +178,28 @@ public class RollbackManager {
                 }
 
                 combined.sort(Comparator.comparing(QueuedAction::timestamp).reversed()); // newest first to undo latest changes first
-                combined.forEach(queue::offer);
+                synchronized (publishLock) {
+                    // cancelled while sorting: the tick loop already cleared the queue, do not refill it
+                    load.checkCancelled();
+                    combined.forEach(queue::offer);
+                }
 
                 expectedTotal.set(combined.size());
                 loading.set(false);
                 LOGGER.info("Loaded {} block actions and {} container actions, enqueued {}", blockActions.size(), containerActions.size(), combined.size());
             } catch (SQLException e) {
+                if (load.isCancelled()) {
+                    // the tick loop clears the loading state and completes the job as cancelled
+                    LOGGER.info("Rollback load cancelled");
+                    return;
+                }
                 LOGGER.error("Failed to load actions for rollback", e);
                 loading.set(false);
                 runningJob.set(false);
                 lastCompletion = CompletionReason.FAILED;
                 completionMessagePending.set(true);
+            } finally {
+                if (activeLoad == load) activeLoad = null;
             }
         });
     }
@@ -177,6 +212,12 @@ public class RollbackManager {
             LOGGER.warn("Undo requested but no logged rollback actions were found");
             return;
         }
+        if (!DatabaseSetup.isReady()) {
+            LOGGER.warn(DatabaseSetup.hasFailed()
+                    ? "Database setup failed and is being retried; rollback request ignored"
+                    : "Database setup is still running; rollback request ignored");
+            return;
+        }
         if (runningJob.get()) {
             LOGGER.warn("A rollback job is already running");
             return;
@@ -190,6 +231,7 @@ public class RollbackManager {
         loading.set(true);
         completionMessagePending.set(false);
         lastCompletion = CompletionReason.NONE;
+        pendingCompletion = CompletionReason.NONE;
         jobStartMillis = System.currentTimeMillis();
         jobInfo = new RollbackJobInfo(label == null ? "undo" : label, Optional.empty(), Optional.empty(), RollbackKind.BOTH);
         jobHistoryId = -1L;
@@ -198,8 +240,14 @@ public class RollbackManager {
         loader.submit(() -> {
             try {
                 LOGGER.info("Loading {} logged actions for undo (label={})", actions.size(), label);
-                for (LoggedRollbackAction action : actions) {
-                    queue.offer(new LoggedQueuedAction(action));
+                synchronized (publishLock) {
+                    if (cancelFlag.get()) {
+                        LOGGER.info("Undo cancelled before its actions were queued");
+                        return;
+                    }
+                    for (LoggedRollbackAction action : actions) {
+                        queue.offer(new LoggedQueuedAction(action));
+                    }
                 }
                 expectedTotal.set(actions.size());
                 loading.set(false);
@@ -213,12 +261,25 @@ public class RollbackManager {
         });
     }
 
+    /**
+     * History id of the rollback being applied (its undo log is still being written), or -1.
+     */
+    public long currentJobHistoryId() {
+        return jobHistoryId;
+    }
+
     public boolean hasRunningJob() {
         return runningJob.get() || loading.get();
     }
 
     public void cancelCurrent() {
-        cancelFlag.set(true);
+        synchronized (publishLock) {
+            cancelFlag.set(true);
+            CancellableQuery load = activeLoad;
+            if (load != null) {
+                load.cancel();
+            }
+        }
     }
 
     public void trackActionBar(ServerPlayer player) {
@@ -233,22 +294,70 @@ public class RollbackManager {
         return queue.size();
     }
 
+    /**
+     * Undo log backend selected by `rollbackLogBackend`; shared with the undo command and the web interface.
+     */
+    public RollbackActionStore actionStore() {
+        return actionStore;
+    }
+
+    /**
+     * Wait (bounded) until every logged rollback action has been written, e.g. before the server stops.
+     */
+    public boolean flushActionLog(long timeoutMs) {
+        boolean flushed = actionStore.awaitFlushed(timeoutMs);
+        if (!flushed) {
+            LOGGER.warn("Rollback log still has {} unwritten entries after {} ms", actionStore.pendingCount(), timeoutMs);
+        }
+        return flushed;
+    }
+
     /**
      * Called each server tick from the server thread to process queued actions.
      */
     public void tick(MinecraftServer server) {
         if (server == null) return;
-        boolean pendingCompletion = completionMessagePending.get();
+        if (pendingCompletion != CompletionReason.NONE) {
+            if (!actionStore.isFlushed(pendingFlushMarker)) {
+                if (++ticksSinceProgressLog >= Math.max(1, Config.PROGRESS_TICK_INTERVAL.get())) {
+                    ticksSinceProgressLog = 0;
+                    LOGGER.info("Rollback applied, waiting for {} undo log entries to be written", actionStore.pendingCount());
+                    sendActionBarUpdate(server);
+                }
+                return;
+            }
+            completeJob(pendingCompletion);
+        }
+
+        boolean completionPending = completionMessagePending.get();
         if (!runningJob.get() && queue.isEmpty()) {
-            if (pendingCompletion) {
+            if (completionPending) {
                 sendActionBarUpdate(server);
                 completionMessagePending.set(false);
                 actionBarNotifier.clear();
                 jobInfo = null;
+                jobHistoryId = -1L;
             }
             return;
         }
 
+        // Database down (circuit open): pause instead of failing every action's undo log entry; cancelling still works
+        if (!DatabaseHealthMonitor.isAvailable() && !isCancelled()) {
+            if (!pausedForDatabase) {
+                pausedForDatabase = true;
+                LOGGER.warn("Rollback paused while the database is unavailable ({} actions queued)", queue.size());
+                sendActionBarUpdate(server);
+            } else if (++ticksSinceProgressLog >= Math.max(1, Config.PROGRESS_TICK_INTERVAL.get())) {
+                ticksSinceProgressLog = 0;
+                sendActionBarUpdate(server);
+            }
+            return;
+        }
+        if (pausedForDatabase) {
+            pausedForDatabase = false;
+            LOGGER.info("Database available again, resuming rollback");
+        }
+
         int batchSize = Math.max(1, Config.ROLLBACK_BATCH_SIZE.get());
         int processed = processBatch(server, batchSize);
         processedTotal.addAndGet(processed);
@@ -279,13 +388,16 @@ public class RollbackManager {
             if (isCancelled()) {
                 LOGGER.info("Rollback cancelled, clearing remaining {} actions", queue.size());
                 queue.clear();
-                runningJob.set(false);
-                lastCompletion = CompletionReason.CANCELLED;
                 loading.set(false);
-                completionMessagePending.set(true);
+                completeAfterLogFlush(CompletionReason.CANCELLED);
                 return processed;
             }
 
+            // Backpressure: pause applying actions while the undo log writer is behind.
+            if (jobHistoryId > 0 && actionStore.remainingCapacity() == 0) {
+                break;
+            }
+
             QueuedAction queued = queue.poll();
             if (queued == null) break;
 
@@ -307,16 +419,32 @@ public class RollbackManager {
             processed++;
         }
 
-        if (queue.isEmpty() && runningJob.get() && !loading.get()) {
+        if (queue.isEmpty() && runningJob.get() && !loading.get() && pendingCompletion == CompletionReason.NONE) {
             LOGGER.info("Rollback job finished (queue empty)");
-            runningJob.set(false);
-            loading.set(false);
-            lastCompletion = CompletionReason.FINISHED;
-            completionMessagePending.set(true);
+            completeAfterLogFlush(CompletionReason.FINISHED);
         }
         return processed;
     }
 
+    /**
+     * Flush barrier: the job only completes once all of its undo log entries are persisted.
+     */
+    private void completeAfterLogFlush(CompletionReason reason) {
+        pendingFlushMarker = actionStore.flushMarker();
+        pendingCompletion = reason;
+        if (actionStore.isFlushed(pendingFlushMarker)) {
+            completeJob(reason);
+        }
+    }
+
+    private void completeJob(CompletionReason reason) {
+        pendingCompletion = CompletionReason.NONE;
+        runningJob.set(false);
+        loading.set(false);
+        lastCompletion = reason;
+        completionMessagePending.set(true);
+    }
+
     private void sendActionBarUpdate(MinecraftServer server) {
         if (server == null || jobInfo == null || !actionBarNotifier.hasWatchers()) return;
 
@@ -399,12 +527,59 @@ public class RollbackManager {
     }
 
     private MutableComponent statusLabel(boolean running, boolean cancelling, boolean isLoading, CompletionReason completion) {
-        if (completion == CompletionReason.FINISHED && !running) return tr(ACTIONBAR_STATUS_FINISHED_KEY, "done");
-        if (completion == CompletionReason.CANCELLED && !running) return tr(ACTIONBAR_STATUS_CANCELLED_KEY, "cancelled");
-        if (completion == CompletionReason.FAILED && !running) return tr(ACTIONBAR_STATUS_FAILED_KEY, "failed");
-        if (cancelling) return tr(ACTIONBAR_STATUS_CANCELLING_KEY, "cancelling");
-        if (isLoading) return tr(ACTIONBAR_STATUS_LOADING_KEY, "loading");
-        return tr(ACTIONBAR_STATUS_RUNNING_KEY, "running");
+        return switch (currentStatus(running, cancelling, isLoading, completion)) {
+            case DONE -> tr(ACTIONBAR_STATUS_FINISHED_KEY, "done");
+            case CANCELLED -> tr(ACTIONBAR_STATUS_CANCELLED_KEY, "cancelled");
+            case FAILED -> tr(ACTIONBAR_STATUS_FAILED_KEY, "failed");
+            case SAVING -> tr(ACTIONBAR_STATUS_SAVING_KEY, "saving undo log");
+            case CANCELLING -> tr(ACTIONBAR_STATUS_CANCELLING_KEY, "cancelling");
+            case PAUSED -> tr(ACTIONBAR_STATUS_PAUSED_KEY, "paused (database unavailable)");
+            case LOADING -> tr(ACTIONBAR_STATUS_LOADING_KEY, "loading");
+            case RUNNING, IDLE -> tr(ACTIONBAR_STATUS_RUNNING_KEY, "running");
+        };
+    }
+
+    private ProgressStatus currentStatus(boolean running, boolean cancelling, boolean isLoading, CompletionReason completion) {
+        if (completion == CompletionReason.FINISHED && !running) return ProgressStatus.DONE;
+        if (completion == CompletionReason.CANCELLED && !running) return ProgressStatus.CANCELLED;
+        if (completion == CompletionReason.FAILED && !running) return ProgressStatus.FAILED;
+        if (pendingCompletion != CompletionReason.NONE) return ProgressStatus.SAVING;
+        if (cancelling) return ProgressStatus.CANCELLING;
+        if (pausedForDatabase) return ProgressStatus.PAUSED;
+        if (isLoading) return ProgressStatus.LOADING;
+        return ProgressStatus.RUNNING;
+    }
+
+    /**
+     * Current job progress for status displays outside the game (web UI). Safe to call from any thread.
+     */
+    public ProgressSnapshot progressSnapshot() {
+        RollbackJobInfo info = jobInfo;
+        long expected = expectedTotal.get();
+        long processed = processedTotal.get();
+        long remaining = expected > 0 ? Math.max(0, expected - processed) : queue.size();
+        boolean running = runningJob.get();
+        boolean isLoading = loading.get();
+        CompletionReason completion = lastCompletion;
+        if (info == null && !running && !isLoading) {
+            // no job, or the last one has finished and its action bar was cleared
+            ProgressStatus status = switch (completion) {
+                case FINISHED -> ProgressStatus.DONE;
+                case CANCELLED -> ProgressStatus.CANCELLED;
+                case FAILED -> ProgressStatus.FAILED;
+                case NONE -> ProgressStatus.IDLE;
+            };
+            return new ProgressSnapshot(status, processed, expected, 0L, errorTotal.get(), 0L, -1L, null, null, null, null);
+        }
+
+        long elapsedMs = jobStartMillis == 0 ? 0L : Math.max(0L, System.currentTimeMillis() - jobStartMillis);
+        ProgressStatus status = currentStatus(running, cancelFlag.get(), isLoading, completion);
+        long etaMs = status == ProgressStatus.RUNNING ? estimateEtaMs(processed, remaining, elapsedMs) : -1L;
+        return new ProgressSnapshot(status, processed, expected, remaining, errorTotal.get(), elapsedMs, etaMs,
+                info == null ? null : info.timeLabel(),
+                info == null ? null : info.player().orElse(null),
+                info == null ? null : info.radiusLabel().orElse(null),
+                info == null ? null : info.kind());
     }
 
     private MutableComponent describeKindComponent(RollbackKind kind) {
@@ -546,7 +721,7 @@ public class RollbackManager {
             return;
         }
 
-        byte[] data = decodeBase64(action.itemData());
+        byte[] data = action.itemData() == null ? new byte[0] : action.itemData();
         ItemStack template = itemFromNameAndData(action.material(), data);
         if (template.isEmpty()) {
             LOGGER.warn("Undo: unknown item '{}' at {},{},{}", action.material(), action.x(), action.y(), action.z());
@@ -660,7 +835,7 @@ public class RollbackManager {
     private void logBlockAction(Action action) {
         if (jobHistoryId > 0) {
             try {
-                actionLogDAO.logBlock(jobHistoryId, action);
+                actionStore.append(RollbackActionLogDAO.blockEntry(jobHistoryId, action));
             } catch (Exception e) {
                 LOGGER.warn("Rollback: failed to log block action", e);
             }
@@ -670,7 +845,7 @@ public class RollbackManager {
     private void logContainerAction(ContainerAction action) {
         if (jobHistoryId > 0) {
             try {
-                actionLogDAO.logContainer(jobHistoryId, action);
+                actionStore.append(RollbackActionLogDAO.containerEntry(jobHistoryId, action));
             } catch (Exception e) {
                 LOGGER.warn("Rollback: failed to log container action", e);
             }
@@ -697,16 +872,6 @@ public class RollbackManager {
         return null;
     }
 
-    private byte[] decodeBase64(String data) {
-        if (data == null || data.isBlank()) return new byte[0];
-        try {
-            return Base64.getDecoder().decode(data);
-        } catch (IllegalArgumentException e) {
-            LOGGER.warn("Undo: could not decode item data (base64) length={}", data.length());
-            return new byte[0];
-        }
-    }
-
     @SuppressWarnings("null")
     private int removeItems(Container container, ItemStack template, int amount) {
         int remaining = amount;
@@ -839,6 +1004,8 @@ public class RollbackManager {
             case ACTIONBAR_STATUS_RUNNING_KEY -> "running";
             case ACTIONBAR_STATUS_LOADING_KEY -> "loading";
             case ACTIONBAR_STATUS_CANCELLING_KEY -> "cancelling";
+            case ACTIONBAR_STATUS_SAVING_KEY -> "saving undo log";
+            case ACTIONBAR_STATUS_PAUSED_KEY -> "paused (database unavailable)";
             case ACTIONBAR_STATUS_FINISHED_KEY -> "done";
             case ACTIONBAR_STATUS_FAILED_KEY -> "failed";
             case ACTIONBAR_STATUS_CANCELLED_KEY -> "cancelled";
@@ -914,6 +1081,26 @@ public class RollbackManager {
 
     private record RollbackJobInfo(String timeLabel, Optional<String> player, Optional<String> radiusLabel, RollbackKind kind) {}
 
+    public enum ProgressStatus {
+        IDLE,
+        LOADING,
+        RUNNING,
+        /** Waiting for the database to become reachable again. */
+        PAUSED,
+        CANCELLING,
+        /** All actions applied, waiting for the undo log to be written. */
+        SAVING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+
+    /**
+     * Progress of the current (or last) job. {@code etaMs} is -1 when unknown; the job fields are null when idle.
+     */
+    public record ProgressSnapshot(ProgressStatus status, long processed, long expected, long remaining, long errors, long elapsedMs,
+                                   long etaMs, String timeLabel, String player, String radius, RollbackKind kind) {}
+
     public enum RollbackKind {
         BOTH,
         BLOCKS_ONLY,
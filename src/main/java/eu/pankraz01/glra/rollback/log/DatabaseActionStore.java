@@ -0,0 +1,89 @@
+package eu.pankraz01.glra.rollback.log;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import eu.pankraz01.glra.database.CancellableQuery;
+import eu.pankraz01.glra.database.dao.AuditCursor;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.LoggedRollbackAction;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.PendingRollbackAction;
+
+/**
+ * Undo log stored in `glra_rollback_actions`, written through the batched {@link RollbackActionLogWriter}.
+ */
+public final class DatabaseActionStore implements RollbackActionStore {
+    private final RollbackActionLogDAO dao;
+    private final RollbackActionLogWriter writer;
+
+    public DatabaseActionStore(RollbackActionLogDAO dao, int queueCapacity, int flushSize) {
+        this.dao = dao;
+        this.writer = new RollbackActionLogWriter(dao, queueCapacity, flushSize);
+    }
+
+    @Override
+    public void append(PendingRollbackAction entry) {
+        writer.submit(entry);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return writer.remainingCapacity();
+    }
+
+    @Override
+    public int pendingCount() {
+        return writer.pendingCount();
+    }
+
+    @Override
+    public long flushMarker() {
+        return writer.flushMarker();
+    }
+
+    @Override
+    public boolean isFlushed(long marker) {
+        return writer.isFlushed(marker);
+    }
+
+    @Override
+    public boolean awaitFlushed(long timeoutMs) {
+        return writer.awaitFlushed(timeoutMs);
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadActionsForJobs(List<Long> jobIds) throws SQLException {
+        return dao.loadActionsForJobs(jobIds);
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadRecentActions(int limit, CancellableQuery query) throws SQLException {
+        return dao.loadRecentActions(limit, query);
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadActionsPage(AuditCursor cursor, int limit, CancellableQuery query) throws SQLException {
+        return dao.loadActionsPage(cursor, limit, query);
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadActionsAfter(long afterId, int limit) throws SQLException {
+        return dao.loadActionsAfter(afterId, limit);
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadActionsByIds(List<Long> ids) throws SQLException {
+        return dao.loadActionsByIds(ids);
+    }
+
+    @Override
+    public Map<Long, Long> countActionsByJob() throws SQLException {
+        return dao.countActionsByJob();
+    }
+
+    @Override
+    public int purgeJobBatch(long jobId, int limit) throws SQLException {
+        return dao.deleteJobBatch(jobId, limit);
+    }
+}
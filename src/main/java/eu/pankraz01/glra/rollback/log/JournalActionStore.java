@@ -0,0 +1,551 @@
+package eu.pankraz01.glra.rollback.log;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.database.CancellableQuery;
+import eu.pankraz01.glra.database.dao.AuditCursor;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.LoggedRollbackAction;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.PendingRollbackAction;
+
+/**
+ * Undo log kept in append-only, memory-mapped segment files (`job-<jobId>-<seq>.glj`), one or more per rollback job.
+ * Appending is a plain write into the mapped buffer on the server thread, so there is no queue, no JDBC round trip
+ * and no base64 encoding. Segments are forced to disk on a background thread when a job completes (see
+ * {@link #isFlushed(long)}), so the server thread never waits for an msync. A segment starts small and its mapping grows
+ * by doubling up to `rollbackJournalSegmentMb`, so small jobs do not cost a full-size file.
+ * <p>
+ * Segment layout: a fixed header (magic, version, job id, first record id, record count, data end) followed by
+ * length-prefixed records. Record ids are assigned by the journal and are unique across all segments.
+ */
+public final class JournalActionStore implements RollbackActionStore {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    private static final int MAGIC = 0x474C524A; // "GLRJ"
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int OFF_MAGIC = 0;
+    private static final int OFF_VERSION = 4;
+    private static final int OFF_JOB_ID = 8;
+    private static final int OFF_FIRST_ID = 16;
+    private static final int OFF_COUNT = 24;
+    private static final int OFF_DATA_END = 28;
+    private static final int OFF_CREATED = 32;
+
+    private static final byte TYPE_BLOCK = 0;
+    private static final byte TYPE_CONTAINER = 1;
+    private static final int MAX_CACHED_NAMES = 4096;
+    private static final int INITIAL_SEGMENT_SIZE = 64 * 1024;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("job-(\\d+)-(\\d+)\\.glj");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Map<String, byte[]> nameCache = new HashMap<>();
+    private long nextId;
+    // next segment sequence per job, from the directory listing at open; guarded by this
+    private final Map<Long, Integer> nextSeq = new HashMap<>();
+    private long appended;
+    private volatile long forced;
+    private Segment active;
+    // segments written since their last force, and whether a force is already queued; guarded by this
+    private final List<Segment> dirty = new ArrayList<>();
+    private boolean forceQueued;
+    private final ExecutorService forcer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "glra-journal-force");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public JournalActionStore(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.max(HEADER_SIZE * 2, segmentSize);
+        Files.createDirectories(directory);
+        long maxId = 0L;
+        for (SegmentInfo info : listSegments()) {
+            maxId = Math.max(maxId, info.firstId() + info.count() - 1);
+            nextSeq.merge(info.jobId(), info.seq() + 1, Math::max);
+        }
+        this.nextId = maxId + 1;
+        LOGGER.info("Rollback journal opened at {} (next id {})", directory, nextId);
+    }
+
+    @Override
+    public synchronized void append(PendingRollbackAction entry) {
+        if (entry == null) return;
+        byte[] level = nameBytes(entry.levelName());
+        byte[] material = nameBytes(entry.material());
+        byte[] oldMaterial = nameBytes(entry.oldMaterial());
+        byte[] itemData = entry.itemData();
+        int size = 4 + 8 + 8 + 1 + 1 + 12 + 4
+                + stringSize(level) + stringSize(material) + stringSize(oldMaterial)
+                + 4 + (itemData == null ? 0 : itemData.length);
+        try {
+            Segment segment = segmentFor(entry.jobId(), size);
+            if (!segment.dirty) {
+                segment.dirty = true;
+                dirty.add(segment);
+            }
+            MappedByteBuffer buf = segment.buffer;
+            buf.position(segment.dataEnd);
+            buf.putInt(size - 4);
+            buf.putLong(nextId);
+            buf.putLong(entry.ts());
+            buf.put("container".equals(entry.type()) ? TYPE_CONTAINER : TYPE_BLOCK);
+            buf.put((byte) entry.actionType());
+            buf.putInt(entry.x());
+            buf.putInt(entry.y());
+            buf.putInt(entry.z());
+            buf.putInt(entry.amount());
+            putString(buf, level);
+            putString(buf, material);
+            putString(buf, oldMaterial);
+            if (itemData == null) {
+                buf.putInt(-1);
+            } else {
+                buf.putInt(itemData.length);
+                buf.put(itemData);
+            }
+            // header last, so readers never see a partially written record
+            segment.dataEnd += size;
+            segment.count++;
+            buf.putInt(OFF_COUNT, segment.count);
+            buf.putInt(OFF_DATA_END, segment.dataEnd);
+            nextId++;
+            appended++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to rollback journal", e);
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int pendingCount() {
+        return 0;
+    }
+
+    @Override
+    public synchronized long flushMarker() {
+        return appended;
+    }
+
+    /**
+     * Cheap enough for the server thread: compares against the last completed force and otherwise queues one.
+     */
+    @Override
+    public boolean isFlushed(long marker) {
+        if (forced >= marker) return true;
+        requestForce();
+        return false;
+    }
+
+    @Override
+    public boolean awaitFlushed(long timeoutMs) {
+        long marker = flushMarker();
+        long deadline = System.currentTimeMillis() + Math.max(0L, timeoutMs);
+        while (!isFlushed(marker)) {
+            if (System.currentTimeMillis() >= deadline) return false;
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return forced >= marker;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void requestForce() {
+        if (forceQueued) return;
+        forceQueued = true;
+        forcer.execute(this::forceDirty);
+    }
+
+    /**
+     * Runs on the force thread. Appends may continue meanwhile; they are covered by the next force.
+     */
+    private void forceDirty() {
+        List<Segment> segments;
+        List<MappedByteBuffer> buffers = new ArrayList<>();
+        long target;
+        synchronized (this) {
+            forceQueued = false;
+            segments = new ArrayList<>(dirty);
+            dirty.clear();
+            for (Segment segment : segments) {
+                segment.dirty = false;
+                buffers.add(segment.buffer);
+            }
+            target = appended;
+        }
+        for (int i = 0; i < segments.size(); i++) {
+            try {
+                buffers.get(i).force();
+            } catch (UncheckedIOException e) {
+                LOGGER.warn("Could not force rollback journal segment {} to disk", segments.get(i).path, e);
+                synchronized (this) {
+                    // retried on the next request
+                    for (Segment segment : segments.subList(i, segments.size())) {
+                        if (!segment.dirty) {
+                            segment.dirty = true;
+                            dirty.add(segment);
+                        }
+                    }
+                }
+                return;
+            }
+        }
+        forced = Math.max(forced, target);
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadActionsForJobs(List<Long> jobIds) throws IOException {
+        if (jobIds == null || jobIds.isEmpty()) return List.of();
+        Set<Long> wanted = new HashSet<>(jobIds);
+        List<LoggedRollbackAction> result = new ArrayList<>();
+        for (SegmentInfo info : listSegments()) {
+            if (wanted.contains(info.jobId())) {
+                readSegment(info.path(), result);
+            }
+        }
+        result.sort(Comparator.comparingLong(LoggedRollbackAction::id).reversed());
+        return result;
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadRecentActions(int limit, CancellableQuery query) throws IOException, SQLException {
+        int max = Math.max(1, limit);
+        List<SegmentInfo> segments = new ArrayList<>(listSegments());
+        segments.sort(Comparator.comparingLong(SegmentInfo::firstId).reversed());
+
+        List<LoggedRollbackAction> result = new ArrayList<>();
+        for (SegmentInfo info : segments) {
+            if (result.size() >= max) break;
+            query.checkCancelled();
+            readSegment(info.path(), result);
+        }
+        // by id like loadActionsPage, so the first audit page and the pages after it line up
+        result.sort(Comparator.comparingLong(LoggedRollbackAction::id).reversed());
+        return result.size() > max ? new ArrayList<>(result.subList(0, max)) : result;
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadActionsPage(AuditCursor cursor, int limit, CancellableQuery query) throws IOException, SQLException {
+        int max = Math.max(1, limit);
+        long key = cursor.key();
+        List<SegmentInfo> segments = new ArrayList<>();
+        for (SegmentInfo info : listSegments()) {
+            long lastId = info.firstId() + info.count() - 1;
+            if (info.count() == 0) continue;
+            if (cursor.older() ? info.firstId() < key : lastId > key) segments.add(info);
+        }
+        // walk away from the cursor, nearest segment first
+        Comparator<SegmentInfo> byFirstId = Comparator.comparingLong(SegmentInfo::firstId);
+        segments.sort(cursor.older() ? byFirstId.reversed() : byFirstId);
+
+        List<LoggedRollbackAction> result = new ArrayList<>();
+        List<LoggedRollbackAction> scratch = new ArrayList<>();
+        for (SegmentInfo info : segments) {
+            if (result.size() >= max) break;
+            query.checkCancelled();
+            scratch.clear();
+            readSegment(info.path(), scratch);
+            for (LoggedRollbackAction action : scratch) {
+                if (cursor.older() ? action.id() < key : action.id() > key) result.add(action);
+            }
+        }
+        Comparator<LoggedRollbackAction> byId = Comparator.comparingLong(LoggedRollbackAction::id);
+        // keep the `max` ids nearest to the cursor, then order newest first
+        result.sort(cursor.older() ? byId.reversed() : byId);
+        if (result.size() > max) {
+            result = new ArrayList<>(result.subList(0, max));
+        }
+        result.sort(byId.reversed());
+        return result;
+    }
+
+    /**
+     * Only segments holding ids above {@code afterId} are read, so tailing costs the newest segment or two.
+     */
+    @Override
+    public List<LoggedRollbackAction> loadActionsAfter(long afterId, int limit) throws IOException, SQLException {
+        List<LoggedRollbackAction> result = loadActionsPage(new AuditCursor(0L, List.of(afterId), false), limit, new CancellableQuery(0));
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public List<LoggedRollbackAction> loadActionsByIds(List<Long> ids) throws IOException {
+        if (ids == null || ids.isEmpty()) return List.of();
+        Set<Long> wanted = new HashSet<>(ids);
+        long minId = ids.stream().mapToLong(Long::longValue).min().orElse(0L);
+        long maxId = ids.stream().mapToLong(Long::longValue).max().orElse(0L);
+
+        List<LoggedRollbackAction> result = new ArrayList<>();
+        List<LoggedRollbackAction> scratch = new ArrayList<>();
+        for (SegmentInfo info : listSegments()) {
+            long lastId = info.firstId() + info.count() - 1;
+            if (info.count() == 0 || lastId < minId || info.firstId() > maxId) continue;
+            scratch.clear();
+            readSegment(info.path(), scratch);
+            for (LoggedRollbackAction action : scratch) {
+                if (wanted.contains(action.id())) result.add(action);
+            }
+        }
+        result.sort(Comparator.comparingLong(LoggedRollbackAction::ts).reversed());
+        return result;
+    }
+
+    @Override
+    public Map<Long, Long> countActionsByJob() throws IOException {
+        Map<Long, Long> counts = new HashMap<>();
+        for (SegmentInfo info : listSegments()) {
+            counts.merge(info.jobId(), (long) info.count(), Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Segments are only ever removed as a whole, so a job is purged in one call regardless of `limit`. The job whose
+     * segment is still open for appending is refused: dropping it would make its next record start a new segment 0.
+     */
+    @Override
+    public synchronized int purgeJobBatch(long jobId, int limit) throws IOException {
+        if (active != null && active.jobId == jobId) {
+            throw new IOException("Rollback journal of job " + jobId + " is still being written");
+        }
+        int removed = 0;
+        boolean complete = true;
+        for (SegmentInfo info : listSegments()) {
+            if (info.jobId() != jobId) continue;
+            try {
+                Files.deleteIfExists(info.path());
+                removed += Math.max(1, info.count());
+            } catch (IOException e) {
+                // e.g. on Windows while a mapping of the file is still alive; retried on the next run
+                LOGGER.warn("Could not delete rollback journal segment {}: {}", info.path(), e.getMessage());
+                complete = false;
+            }
+        }
+        if (complete) nextSeq.remove(jobId);
+        return removed;
+    }
+
+    private Segment segmentFor(long jobId, int recordSize) throws IOException {
+        if (active != null && active.jobId == jobId) {
+            int needed = active.dataEnd + recordSize;
+            if (needed <= active.capacity) {
+                return active;
+            }
+            if (needed <= segmentSize) {
+                active.grow(Math.min(segmentSize, Math.max(needed, active.capacity * 2)));
+                return active;
+            }
+        }
+        // no directory listing here: this runs on the server thread
+        int seq = nextSeq.getOrDefault(jobId, 0);
+        nextSeq.put(jobId, seq + 1);
+        // the previous segment stays in `dirty` until the next force
+        int capacity = Math.max(Math.min(segmentSize, INITIAL_SEGMENT_SIZE), HEADER_SIZE + recordSize);
+        active = Segment.create(directory.resolve("job-" + jobId + "-" + seq + ".glj"), jobId, seq, nextId, capacity);
+        return active;
+    }
+
+    private List<SegmentInfo> listSegments() throws IOException {
+        List<SegmentInfo> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                Matcher m = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (!m.matches()) continue;
+                SegmentInfo info = readInfo(path, Long.parseLong(m.group(1)), Integer.parseInt(m.group(2)));
+                if (info != null) segments.add(info);
+            }
+        }
+        return segments;
+    }
+
+    private static SegmentInfo readInfo(Path path, long jobId, int seq) {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && ch.read(header, header.position()) > 0) {
+                // keep reading until the header is complete
+            }
+            if (header.position() < HEADER_SIZE || header.getInt(OFF_MAGIC) != MAGIC) {
+                LOGGER.warn("Ignoring invalid rollback journal segment {}", path);
+                return null;
+            }
+            return new SegmentInfo(path, jobId, seq, header.getLong(OFF_FIRST_ID), header.getInt(OFF_COUNT));
+        } catch (IOException e) {
+            LOGGER.warn("Could not read rollback journal segment header {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads with positional channel reads rather than a mapping: read mappings are only released by the GC, so they
+     * would pile up across audit polls and keep {@link #purgeJobBatch} from deleting the files on Windows.
+     */
+    private static void readSegment(Path path, List<LoggedRollbackAction> out) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = ch.size();
+            if (fileSize < HEADER_SIZE) return;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(ch, header, 0L);
+            if (header.getInt(OFF_MAGIC) != MAGIC) return;
+            long jobId = header.getLong(OFF_JOB_ID);
+            int count = header.getInt(OFF_COUNT);
+            int end = (int) Math.min(header.getInt(OFF_DATA_END), fileSize);
+            if (end <= HEADER_SIZE) return;
+
+            // positions below are file offsets, so the record parsing matches the writer's layout
+            ByteBuffer buf = ByteBuffer.allocate(end);
+            buf.position(HEADER_SIZE);
+            readFully(ch, buf, HEADER_SIZE);
+            buf.position(HEADER_SIZE);
+            for (int i = 0; i < count && buf.position() + 4 <= end; i++) {
+                int length = buf.getInt();
+                int recordEnd = buf.position() + length;
+                if (length <= 0 || recordEnd > end) {
+                    LOGGER.warn("Truncated record in rollback journal segment {}", path);
+                    break;
+                }
+                long id = buf.getLong();
+                long ts = buf.getLong();
+                byte type = buf.get();
+                int actionType = buf.get();
+                int x = buf.getInt();
+                int y = buf.getInt();
+                int z = buf.getInt();
+                int amount = buf.getInt();
+                String level = getString(buf);
+                String material = getString(buf);
+                String oldMaterial = getString(buf);
+                int dataLength = buf.getInt();
+                byte[] itemData = null;
+                if (dataLength >= 0) {
+                    itemData = new byte[dataLength];
+                    buf.get(itemData);
+                }
+                out.add(new LoggedRollbackAction(id, jobId, ts, type == TYPE_CONTAINER ? "container" : "block", level,
+                        x, y, z, material, oldMaterial, amount, itemData, actionType));
+                buf.position(recordEnd);
+            }
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long position) throws IOException {
+        long pos = position;
+        while (buf.hasRemaining()) {
+            int read = ch.read(buf, pos);
+            if (read < 0) throw new IOException("Unexpected end of rollback journal segment");
+            pos += read;
+        }
+    }
+
+    private byte[] nameBytes(String value) {
+        if (value == null) return null;
+        byte[] cached = nameCache.get(value);
+        if (cached != null) return cached;
+        if (nameCache.size() >= MAX_CACHED_NAMES) nameCache.clear();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        nameCache.put(value, bytes);
+        return bytes;
+    }
+
+    private static int stringSize(byte[] value) {
+        return 4 + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer buf, byte[] value) {
+        if (value == null) {
+            buf.putInt(-1);
+            return;
+        }
+        buf.putInt(value.length);
+        buf.put(value);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record SegmentInfo(Path path, long jobId, int seq, long firstId, int count) {
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long jobId;
+        private final int seq;
+        private int capacity;
+        private MappedByteBuffer buffer;
+        private int dataEnd = HEADER_SIZE;
+        private int count = 0;
+        private boolean dirty;
+
+        private Segment(Path path, long jobId, int seq, int capacity, MappedByteBuffer buffer) {
+            this.path = path;
+            this.jobId = jobId;
+            this.seq = seq;
+            this.capacity = capacity;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, long jobId, int seq, long firstId, int capacity) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // the mapping stays valid after the channel is closed
+                buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            }
+            buffer.putInt(OFF_MAGIC, MAGIC);
+            buffer.putShort(OFF_VERSION, FORMAT_VERSION);
+            buffer.putLong(OFF_JOB_ID, jobId);
+            buffer.putLong(OFF_FIRST_ID, firstId);
+            buffer.putInt(OFF_COUNT, 0);
+            buffer.putInt(OFF_DATA_END, HEADER_SIZE);
+            buffer.putLong(OFF_CREATED, System.currentTimeMillis());
+            return new Segment(path, jobId, seq, capacity, buffer);
+        }
+
+        /**
+         * Extend the file and map it again with the larger capacity; the old mapping shares the same pages.
+         */
+        void grow(int newCapacity) throws IOException {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, newCapacity);
+            }
+            capacity = newCapacity;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package eu.pankraz01.glra.rollback.log;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.database.DatabaseHealthMonitor;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.PendingRollbackAction;
+
+/**
+ * Write-behind buffer for the rollback action log. The server thread only enqueues entries; a background
+ * thread drains the bounded queue and writes them in JDBC batches (one transaction per flush).
+ * Batches that fail with a transient error (lost connection, deadlock) are retried with backoff until they are written;
+ * while that goes on the queue fills and {@link #submit} blocks, so entries are delayed rather than lost. A batch that
+ * fails for good is split to find the entries that cannot be written, and only those are logged and dropped.
+ */
+public final class RollbackActionLogWriter {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000L;
+
+    private final RollbackActionLogDAO dao;
+    private final BlockingQueue<PendingRollbackAction> queue;
+    private final int flushSize;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final Object flushLock = new Object();
+    private final Thread thread;
+
+    public RollbackActionLogWriter(RollbackActionLogDAO dao, int capacity, int flushSize) {
+        this.dao = dao;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.flushSize = Math.max(1, flushSize);
+        this.thread = new Thread(this::run, "glra-action-log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Enqueue an entry. Callers should check {@link #remainingCapacity()} first; if the queue is full anyway,
+     * this blocks until the writer has made room instead of dropping the entry.
+     */
+    public void submit(PendingRollbackAction entry) {
+        if (entry == null) return;
+        if (!queue.offer(entry)) {
+            LOGGER.warn("Rollback log queue full ({} entries), waiting for database writer", queue.size());
+            try {
+                queue.put(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Interrupted while waiting for rollback log queue; entry for job {} was not logged", entry.jobId());
+                return;
+            }
+        }
+        submitted.incrementAndGet();
+    }
+
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Marker covering every entry submitted so far; pass it to {@link #isFlushed(long)} to wait for persistence.
+     */
+    public long flushMarker() {
+        return submitted.get();
+    }
+
+    public boolean isFlushed(long marker) {
+        return written.get() >= marker;
+    }
+
+    /**
+     * Block until all entries submitted before this call are written, or the timeout expires.
+     */
+    public boolean awaitFlushed(long timeoutMs) {
+        long marker = flushMarker();
+        long deadline = System.currentTimeMillis() + Math.max(0L, timeoutMs);
+        synchronized (flushLock) {
+            while (!isFlushed(marker)) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) return false;
+                try {
+                    flushLock.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return isFlushed(marker);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void run() {
+        List<PendingRollbackAction> batch = new ArrayList<>(flushSize);
+        while (true) {
+            try {
+                PendingRollbackAction first = queue.poll(250, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, flushSize - 1);
+                writeWithRetry(batch);
+                written.addAndGet(batch.size());
+                batch.clear();
+                synchronized (flushLock) {
+                    flushLock.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                LOGGER.warn("Rollback log writer interrupted with {} entries pending", queue.size() + batch.size());
+                return;
+            } catch (Exception e) {
+                LOGGER.error("Rollback log writer failed unexpectedly", e);
+            }
+        }
+    }
+
+    private void writeWithRetry(List<PendingRollbackAction> batch) throws InterruptedException {
+        long backoffMs = 500L;
+        int attempts = 0;
+        while (true) {
+            if (!DatabaseHealthMonitor.isAvailable()) {
+                // circuit open: wait for recovery instead of failing each retry
+                DatabaseHealthMonitor.awaitAvailable(MAX_RETRY_BACKOFF_MS);
+                continue;
+            }
+            try {
+                dao.logBatch(batch);
+                return;
+            } catch (Exception e) {
+                if (!isTransient(e)) {
+                    writeSplit(batch, e);
+                    return;
+                }
+                // dropping the batch would lose undo data; keep retrying and let the full queue hold back submit()
+                attempts++;
+                LOGGER.warn("Failed to write {} rollback log entries (attempt {}), retrying in {} ms ({} queued)", batch.size(), attempts, backoffMs, queue.size(), e);
+                Thread.sleep(backoffMs);
+                backoffMs = Math.min(MAX_RETRY_BACKOFF_MS, backoffMs * 2);
+            }
+        }
+    }
+
+    /**
+     * The batch failed with a permanent error (truncation, constraint, missing table...). Retrying it as a whole would
+     * fail forever, so write it in halves until the failing entries are isolated, and drop only those.
+     */
+    private void writeSplit(List<PendingRollbackAction> batch, Exception cause) throws InterruptedException {
+        if (batch.size() == 1) {
+            PendingRollbackAction entry = batch.get(0);
+            LOGGER.error("Dropping rollback log entry of job {} ({} at {} {} {} {}); it cannot be written",
+                    entry.jobId(), entry.type(), entry.levelName(), entry.x(), entry.y(), entry.z(), cause);
+            return;
+        }
+        int mid = batch.size() / 2;
+        writeWithRetry(new ArrayList<>(batch.subList(0, mid)));
+        writeWithRetry(new ArrayList<>(batch.subList(mid, batch.size())));
+    }
+
+    /**
+     * Connection-class (SQLState 08xxx) and transient errors such as deadlocks or timeouts may succeed on a retry.
+     */
+    private static boolean isTransient(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransientException || t instanceof SQLRecoverableException) return true;
+            if (t instanceof SQLException sql && sql.getSQLState() != null && sql.getSQLState().startsWith("08")) return true;
+        }
+        return false;
+    }
+}
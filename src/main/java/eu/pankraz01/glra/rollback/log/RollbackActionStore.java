@@ -0,0 +1,106 @@
+package eu.pankraz01.glra.rollback.log;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.Config;
+import eu.pankraz01.glra.database.CancellableQuery;
+import eu.pankraz01.glra.database.dao.AuditCursor;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.LoggedRollbackAction;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.PendingRollbackAction;
+
+/**
+ * Storage for applied rollback actions (the undo log). Writes come from the server thread and must stay cheap;
+ * reads serve `/gl rollback undo` and the audit "rollback actions" view.
+ */
+public interface RollbackActionStore {
+    /**
+     * Record an applied rollback action. Implementations may buffer; see {@link #flushMarker()}.
+     */
+    void append(PendingRollbackAction entry);
+
+    /**
+     * How many more entries can be appended before the store applies backpressure.
+     */
+    int remainingCapacity();
+
+    int pendingCount();
+
+    /**
+     * Marker covering every entry appended so far; pass it to {@link #isFlushed(long)} to check persistence.
+     */
+    long flushMarker();
+
+    boolean isFlushed(long marker);
+
+    /**
+     * Block until everything appended before this call is persisted, or the timeout expires.
+     */
+    boolean awaitFlushed(long timeoutMs);
+
+    /**
+     * All logged actions of the given jobs, newest first (reverse order of the original rollback).
+     */
+    List<LoggedRollbackAction> loadActionsForJobs(List<Long> jobIds) throws SQLException, IOException;
+
+    /**
+     * Recent logged actions across all jobs, newest (highest id) first, the same order as {@link #loadActionsPage}.
+     */
+    default List<LoggedRollbackAction> loadRecentActions(int limit) throws SQLException, IOException {
+        return loadRecentActions(limit, new CancellableQuery(0));
+    }
+
+    /**
+     * Like {@link #loadRecentActions(int)}; cancelling {@code query} aborts the read.
+     */
+    List<LoggedRollbackAction> loadRecentActions(int limit, CancellableQuery query) throws SQLException, IOException;
+
+    /**
+     * The page of logged actions next to {@code cursor} (keyed by id) across all jobs, newest first. Cancelling
+     * {@code query} aborts the read.
+     */
+    List<LoggedRollbackAction> loadActionsPage(AuditCursor cursor, int limit, CancellableQuery query) throws SQLException, IOException;
+
+    /**
+     * Up to {@code limit} logged actions with an id above {@code afterId}, oldest first; used to tail the log.
+     */
+    List<LoggedRollbackAction> loadActionsAfter(long afterId, int limit) throws SQLException, IOException;
+
+    /**
+     * Specific logged actions by id, newest first.
+     */
+    List<LoggedRollbackAction> loadActionsByIds(List<Long> ids) throws SQLException, IOException;
+
+    /**
+     * Number of logged actions per job id, used by the retention task.
+     */
+    Map<Long, Long> countActionsByJob() throws SQLException, IOException;
+
+    /**
+     * Delete up to `limit` logged actions of a job. Returns how many were removed; 0 means the job is gone.
+     */
+    int purgeJobBatch(long jobId, int limit) throws SQLException, IOException;
+
+    /**
+     * Create the store selected by `rollbackLogBackend`. Falls back to the database if the journal cannot be opened.
+     */
+    static RollbackActionStore fromConfig() {
+        if (Config.rollbackLogBackend() == Config.RollbackLogBackend.JOURNAL) {
+            try {
+                var directory = Paths.get(Config.ROLLBACK_JOURNAL_DIR.get()).toAbsolutePath();
+                return new JournalActionStore(directory, Config.ROLLBACK_JOURNAL_SEGMENT_MB.get() * 1024 * 1024);
+            } catch (IOException e) {
+                Logger logger = LogUtils.getLogger();
+                logger.error("Could not open rollback journal, falling back to database undo log", e);
+            }
+        }
+        return new DatabaseActionStore(new RollbackActionLogDAO(), Config.ROLLBACK_LOG_QUEUE_CAPACITY.get(), Config.ROLLBACK_LOG_FLUSH_SIZE.get());
+    }
+}
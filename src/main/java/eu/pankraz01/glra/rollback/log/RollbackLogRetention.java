@@ -0,0 +1,135 @@
+package eu.pankraz01.glra.rollback.log;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.Config;
+import eu.pankraz01.glra.database.dao.RollbackHistoryDAO;
+
+/**
+ * Enforces the `rollbackLogRetention` policy (max age, max jobs, max rows). Whole jobs are removed, oldest first,
+ * so an undo never sees half a rollback; the newest rollback and the one being applied are always kept. Deletes run in small keyed batches with short pauses on a low-priority
+ * thread, which keeps write locks short on SQLite and leaves room for GriefLogger's own inserts.
+ */
+public final class RollbackLogRetention {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long BATCH_PAUSE_MS = 20L;
+
+    private final RollbackActionStore store;
+    private final LongSupplier runningJob;
+    private final RollbackHistoryDAO historyDAO = new RollbackHistoryDAO();
+    private final ScheduledExecutorService scheduler;
+
+    private RollbackLogRetention(RollbackActionStore store, LongSupplier runningJob) {
+        this.store = store;
+        this.runningJob = runningJob;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "glra-log-retention");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    /**
+     * Schedule the retention task; the first run happens one minute after startup.
+     *
+     * @param runningJob history id of the rollback currently being applied, or a value {@code <= 0} if none
+     */
+    public static void start(RollbackActionStore store, LongSupplier runningJob) {
+        RollbackLogRetention retention = new RollbackLogRetention(store, runningJob);
+        long interval = Config.RETENTION_INTERVAL_MINUTES.get();
+        retention.scheduler.scheduleWithFixedDelay(retention::runSafely, 1, interval, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Jobs outside the `maxRows` limit, given the number of logged actions per job. Also used by undo, so jobs waiting
+     * for the next retention run are not offered.
+     */
+    public static Set<Long> beyondRowLimit(Map<Long, Long> counts, long maxRows) {
+        Set<Long> expired = new HashSet<>();
+        // walk jobs newest first (ids grow with time); the job that crosses the limit is kept, older ones go
+        List<Long> jobIds = new ArrayList<>(counts.keySet());
+        jobIds.sort(Comparator.reverseOrder());
+        long rows = 0L;
+        boolean full = false;
+        for (Long jobId : jobIds) {
+            if (full) {
+                expired.add(jobId);
+                continue;
+            }
+            rows += counts.get(jobId);
+            full = rows >= maxRows;
+        }
+        return expired;
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOGGER.warn("Rollback log retention run failed", e);
+        }
+    }
+
+    private void run() throws Exception {
+        long cutoff = Config.retentionCutoffMillis();
+        int maxJobs = Config.RETENTION_MAX_JOBS.get();
+        long maxRows = Config.RETENTION_MAX_ROWS.get();
+        if (cutoff <= 0 && maxJobs <= 0 && maxRows <= 0) return;
+
+        // the newest rollback and the one being applied are never expired, whatever the limits say
+        long newest = historyDAO.latestId();
+        long running = runningJob.getAsLong();
+
+        Set<Long> expired = historyDAO.loadExpiredIds(cutoff, maxJobs);
+        Map<Long, Long> counts = store.countActionsByJob();
+        if (maxRows > 0) {
+            expired.addAll(beyondRowLimit(counts, maxRows));
+        }
+        // actions without a history row can never be undone; newer ids may belong to a job started after `newest` was read
+        Set<Long> existing = historyDAO.loadExistingIds(counts.keySet());
+        for (Long jobId : counts.keySet()) {
+            if (!existing.contains(jobId) && jobId < newest) expired.add(jobId);
+        }
+        expired.remove(newest);
+        expired.remove(running);
+        if (expired.isEmpty()) return;
+
+        int batchSize = Config.RETENTION_BATCH_SIZE.get();
+        int removedJobs = 0;
+        long deletedRows = 0L;
+        for (Long jobId : new TreeSet<>(expired)) {
+            int deleted;
+            try {
+                while ((deleted = store.purgeJobBatch(jobId, batchSize)) > 0) {
+                    deletedRows += deleted;
+                    Thread.sleep(BATCH_PAUSE_MS);
+                }
+            } catch (IOException | SQLException e) {
+                // keep the history row so the job is retried on the next run
+                LOGGER.warn("Could not remove undo log of rollback {}: {}", jobId, e.getMessage());
+                continue;
+            }
+            historyDAO.delete(jobId);
+            removedJobs++;
+        }
+        LOGGER.info("Rollback log retention removed {} jobs ({} undo log entries)", removedJobs, deletedRows);
+    }
+}
@@ -0,0 +1,370 @@
+package eu.pankraz01.glra.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.Config;
+import eu.pankraz01.glra.database.DatabaseHealthMonitor;
+import eu.pankraz01.glra.database.dao.AuditDAO;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.LoggedRollbackAction;
+import eu.pankraz01.glra.database.dao.RollbackHistoryDAO;
+import eu.pankraz01.glra.rollback.log.RollbackActionStore;
+
+/**
+ * Shared poller behind the `/api/audit/stream` Server-Sent Events.
+ * <p>
+ * While anyone is subscribed, one scheduler thread asks each audit source once per interval for the rows past its
+ * high-water mark and publishes them as a numbered batch; each client's own request thread filters and writes the
+ * batches it has not seen yet. The database load therefore does not grow with the number of open dashboards.
+ * <p>
+ * GriefLogger's tables have no id column and its writes are buffered, so chat, block and container rows are tailed
+ * by time: every poll re-reads a short overlap window and drops the rows it already published, told apart by value
+ * including their row key (see {@link AuditDAO}). Rollback history and
+ * logged rollback actions are tailed by id. Clients that fall too far behind, or polls that had to skip rows, get a
+ * `reset` event telling them to reload.
+ */
+final class AuditTail {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long KEEPALIVE_MS = 15_000L;
+    // how far behind the newest row GriefLogger's buffered writes may still show up
+    static final long WRITE_LAG_MS = 10_000L;
+    static final int POLL_LIMIT = 500;
+    private static final int MAX_BATCHES = 32;
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESET = "event: reset\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Rows that appeared since the previous batch, oldest first. {@code reset} means rows were skipped.
+     */
+    record Batch(long seq, boolean reset, List<AuditDAO.ChatEntry> chat, List<AuditDAO.BlockEntry> blocks,
+                 List<AuditDAO.ContainerEntry> containers, List<RollbackHistoryDAO.HistoryEntry> history,
+                 List<LoggedRollbackAction> rollbackActions) {
+        boolean isEmpty() {
+            return chat.isEmpty() && blocks.isEmpty() && containers.isEmpty() && history.isEmpty() && rollbackActions.isEmpty();
+        }
+    }
+
+    /**
+     * Turns a batch into one client's event frame, or null if none of its rows pass that client's filters.
+     */
+    interface Renderer {
+        byte[] render(Batch batch) throws IOException;
+    }
+
+    private final AuditDAO auditDAO;
+    private final RollbackHistoryDAO historyDAO;
+    private final Supplier<RollbackActionStore> actionStore;
+    private final ScheduledExecutorService scheduler;
+    // ReentrantLock rather than synchronized: waiting virtual threads must not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+    private int subscribers;
+    private long seq;
+    private boolean restart;
+    private boolean stopped;
+
+    // poller state, only touched by the scheduler thread
+    private final TimeCursor<AuditDAO.ChatEntry> chatCursor = new TimeCursor<>(AuditDAO.ChatEntry::ts);
+    private final TimeCursor<AuditDAO.BlockEntry> blockCursor = new TimeCursor<>(AuditDAO.BlockEntry::ts);
+    private final TimeCursor<AuditDAO.ContainerEntry> containerCursor = new TimeCursor<>(AuditDAO.ContainerEntry::ts);
+    private long historyMark;
+    private long actionMark;
+    private boolean failing;
+
+    AuditTail(AuditDAO auditDAO, RollbackHistoryDAO historyDAO, Supplier<RollbackActionStore> actionStore, long intervalMs) {
+        this.auditDAO = auditDAO;
+        this.historyDAO = historyDAO;
+        this.actionStore = actionStore;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "glra-web-audit-tail");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write events to {@code out} until the client disconnects (IOException) or the tail is stopped.
+     */
+    void stream(OutputStream out, Renderer renderer) throws IOException {
+        long seen;
+        lock.lock();
+        try {
+            if (stopped) return;
+            seen = seq;
+            if (subscribers++ == 0) {
+                // the high-water marks went stale while nobody watched
+                restart = true;
+                batches.clear();
+                scheduler.execute(this::poll);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long lastWrite = System.nanoTime();
+        List<Batch> pending = new ArrayList<>();
+        try {
+            while (true) {
+                boolean behind = false;
+                pending.clear();
+                lock.lock();
+                try {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(KEEPALIVE_MS);
+                    while (!stopped && seq == seen) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0L) break;
+                        published.awaitNanos(wait);
+                    }
+                    if (stopped) return;
+                    Batch oldest = batches.peekFirst();
+                    if (oldest != null && oldest.seq() > seen + 1) {
+                        behind = true;
+                    } else {
+                        for (Batch batch : batches) {
+                            if (batch.seq() > seen) pending.add(batch);
+                        }
+                    }
+                    seen = seq;
+                } finally {
+                    lock.unlock();
+                }
+
+                boolean wrote = false;
+                if (behind) {
+                    out.write(RESET);
+                    wrote = true;
+                } else {
+                    for (Batch batch : pending) {
+                        byte[] frame = batch.reset() ? RESET : renderer.render(batch);
+                        if (frame != null) {
+                            out.write(frame);
+                            wrote = true;
+                        }
+                    }
+                }
+                if (!wrote && System.nanoTime() - lastWrite >= TimeUnit.MILLISECONDS.toNanos(KEEPALIVE_MS)) {
+                    out.write(KEEPALIVE);
+                    wrote = true;
+                }
+                if (wrote) {
+                    out.flush();
+                    lastWrite = System.nanoTime();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.lock();
+            try {
+                subscribers--;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void poll() {
+        boolean fresh;
+        lock.lock();
+        try {
+            if (subscribers == 0 || stopped) return;
+            fresh = restart;
+            restart = false;
+        } finally {
+            lock.unlock();
+        }
+        if (!DatabaseHealthMonitor.isAvailable()) {
+            if (fresh) retryRestart();
+            return;
+        }
+
+        try {
+            if (fresh) {
+                // start at "now": read the overlap window once so rows the page already loaded are not pushed again
+                long now = System.currentTimeMillis();
+                chatCursor.restart(now);
+                blockCursor.restart(now);
+                containerCursor.restart(now);
+                historyMark = historyDAO.latestId();
+                actionMark = latestActionId();
+                collect();
+            } else {
+                Batch batch = collect();
+                if (batch.reset() || !batch.isEmpty()) {
+                    publish(batch);
+                }
+            }
+            failing = false;
+        } catch (SQLException | IOException | RuntimeException e) {
+            if (fresh) retryRestart();
+            if (!failing) {
+                LOGGER.warn("Live audit poll failed: {}", e.getMessage());
+                failing = true;
+            } else {
+                LOGGER.debug("Live audit poll failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Batch collect() throws SQLException, IOException {
+        List<AuditDAO.ChatEntry> chat = new ArrayList<>();
+        List<AuditDAO.BlockEntry> blocks = new ArrayList<>();
+        List<AuditDAO.ContainerEntry> containers = new ArrayList<>();
+        List<RollbackHistoryDAO.HistoryEntry> history = new ArrayList<>();
+        List<LoggedRollbackAction> rollbackActions = new ArrayList<>();
+
+        if (Config.WEB_AUDIT_CHAT_ENABLED.get()) {
+            auditDAO.streamChatSince(chatCursor.from(), POLL_LIMIT, chat::add);
+            chat = chatCursor.advance(chat);
+        }
+        if (Config.WEB_AUDIT_BLOCKS_ENABLED.get()) {
+            auditDAO.streamBlocksSince(blockCursor.from(), POLL_LIMIT, blocks::add);
+            blocks = blockCursor.advance(blocks);
+        }
+        if (Config.WEB_AUDIT_CONTAINERS_ENABLED.get()) {
+            auditDAO.streamContainersSince(containerCursor.from(), POLL_LIMIT, containers::add);
+            containers = containerCursor.advance(containers);
+        }
+
+        historyDAO.streamAfter(historyMark, POLL_LIMIT, history::add);
+        if (!history.isEmpty()) {
+            historyMark = history.get(history.size() - 1).id();
+        }
+
+        rollbackActions.addAll(actionStore.get().loadActionsAfter(actionMark, POLL_LIMIT));
+        if (!rollbackActions.isEmpty()) {
+            actionMark = rollbackActions.get(rollbackActions.size() - 1).id();
+        }
+
+        boolean reset = chatCursor.skipped || blockCursor.skipped || containerCursor.skipped;
+        return new Batch(0L, reset, chat, blocks, containers, history, rollbackActions);
+    }
+
+    private long latestActionId() throws SQLException, IOException {
+        List<LoggedRollbackAction> latest = actionStore.get().loadRecentActions(1);
+        return latest.isEmpty() ? 0L : latest.get(0).id();
+    }
+
+    private void publish(Batch batch) {
+        lock.lock();
+        try {
+            seq++;
+            batches.addLast(new Batch(seq, batch.reset(), batch.chat(), batch.blocks(), batch.containers(),
+                    batch.history(), batch.rollbackActions()));
+            while (batches.size() > MAX_BATCHES) {
+                batches.removeFirst();
+            }
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void retryRestart() {
+        lock.lock();
+        try {
+            restart = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Time-based high-water mark over one GriefLogger table.
+     * <p>
+     * Each poll reads from {@link #from()}, which trails the newest timestamp by {@link #WRITE_LAG_MS}. Rows read at or
+     * above that bound are remembered so re-reading them is harmless. When a poll comes back full, the next one
+     * continues from the newest timestamp it got, so a burst is drained over a few intervals.
+     * <p>
+     * Rows are remembered with the number of times they occurred in one poll: where the row key cannot tell rows
+     * apart (MySQL/MariaDB, see {@link AuditDAO}) two real rows can be equal, and the second must not be taken for a
+     * re-read of the first.
+     */
+    static final class TimeCursor<T> {
+        private final ToLongFunction<T> timestamp;
+        // rows already published with a timestamp >= from, with how many equal ones; records compare by value
+        private final Map<T, Integer> recent = new HashMap<>();
+        private long newest;
+        private long from;
+        boolean skipped;
+
+        TimeCursor(ToLongFunction<T> timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        void restart(long now) {
+            recent.clear();
+            newest = now;
+            from = now - WRITE_LAG_MS;
+            skipped = false;
+        }
+
+        long from() {
+            return from;
+        }
+
+        /**
+         * Take the rows of one poll (oldest first) and return the ones not published before.
+         */
+        List<T> advance(List<T> rows) {
+            List<T> fresh = new ArrayList<>();
+            Map<T, Integer> occurrences = new HashMap<>();
+            for (T row : rows) {
+                int occurrence = occurrences.merge(row, 1, Integer::sum);
+                if (occurrence > recent.getOrDefault(row, 0)) {
+                    recent.put(row, occurrence);
+                    fresh.add(row);
+                }
+                newest = Math.max(newest, timestamp.applyAsLong(row));
+            }
+
+            skipped = false;
+            if (rows.size() < POLL_LIMIT) {
+                from = Math.max(from, newest - WRITE_LAG_MS);
+            } else {
+                long first = timestamp.applyAsLong(rows.get(0));
+                long last = timestamp.applyAsLong(rows.get(rows.size() - 1));
+                if (first == last) {
+                    // a full poll within one millisecond: step past it, the rest of that millisecond is lost
+                    from = last + 1;
+                    skipped = true;
+                } else {
+                    from = last;
+                }
+            }
+            long bound = from;
+            recent.keySet().removeIf(row -> timestamp.applyAsLong(row) < bound);
+            return fresh;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package eu.pankraz01.glra.web;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Minimal JSON writer that encodes UTF-8 straight into a response stream through a small buffer, escaping strings
+ * character by character without building intermediate Strings. Commas between members and elements are inserted
+ * automatically.
+ */
+final class JsonStreamWriter implements Closeable {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final int MAX_DEPTH = 32;
+
+    private final OutputStream out;
+    private final byte[] buf = new byte[8192];
+    private int pos;
+    // per nesting level: true once the first member/element has been written
+    private final boolean[] hasElements = new boolean[MAX_DEPTH];
+    // per nesting level: true for objects, false for arrays
+    private final boolean[] isObject = new boolean[MAX_DEPTH];
+    private int depth;
+    private boolean afterName;
+
+    JsonStreamWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        push(true);
+        writeByte('{');
+        return this;
+    }
+
+    JsonStreamWriter endObject() throws IOException {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        push(false);
+        writeByte('[');
+        return this;
+    }
+
+    JsonStreamWriter endArray() throws IOException {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    /** Current nesting depth; 1 inside the top-level object. */
+    int depth() {
+        return depth;
+    }
+
+    /**
+     * Close open arrays/objects until {@link #depth()} is {@code target}, e.g. to append an error after a failed section.
+     */
+    JsonStreamWriter closeTo(int target) throws IOException {
+        if (afterName) {
+            nullValue();
+        }
+        while (depth > target) {
+            if (isObject[depth - 1]) endObject();
+            else endArray();
+        }
+        return this;
+    }
+
+    JsonStreamWriter name(String name) throws IOException {
+        if (hasElements[depth - 1]) writeByte(',');
+        hasElements[depth - 1] = true;
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    JsonStreamWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    JsonStreamWriter value(long value) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    JsonStreamWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    JsonStreamWriter nullValue() throws IOException {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    JsonStreamWriter field(String name, String value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonStreamWriter field(String name, long value) throws IOException {
+        return name(name).value(value);
+    }
+
+    JsonStreamWriter field(String name, boolean value) throws IOException {
+        return name(name).value(value);
+    }
+
+    void flush() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pos > 0) {
+                out.write(buf, 0, pos);
+                pos = 0;
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == MAX_DEPTH) throw new IllegalStateException("JSON nesting too deep");
+        isObject[depth] = object;
+        hasElements[depth] = false;
+        depth++;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth > 0) {
+            if (hasElements[depth - 1]) writeByte(',');
+            hasElements[depth - 1] = true;
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        writeByte('"');
+        int len = s.length();
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                switch (c) {
+                    case '"' -> writeEscape('"');
+                    case '\\' -> writeEscape('\\');
+                    case '\n' -> writeEscape('n');
+                    case '\r' -> writeEscape('r');
+                    case '\t' -> writeEscape('t');
+                    case '\b' -> writeEscape('b');
+                    case '\f' -> writeEscape('f');
+                    default -> {
+                        if (c < 0x20) {
+                            writeUnicodeEscape(c);
+                        } else {
+                            writeByte(c);
+                        }
+                    }
+                }
+            } else if (c < 0x800) {
+                ensure(2);
+                buf[pos++] = (byte) (0xc0 | (c >> 6));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                ensure(4);
+                buf[pos++] = (byte) (0xf0 | (cp >> 18));
+                buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate: same replacement String.getBytes(UTF_8) uses
+                writeByte('?');
+            } else {
+                ensure(3);
+                buf[pos++] = (byte) (0xe0 | (c >> 12));
+                buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeEscape(char c) throws IOException {
+        ensure(2);
+        buf[pos++] = '\\';
+        buf[pos++] = (byte) c;
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        ensure(6);
+        buf[pos++] = '\\';
+        buf[pos++] = 'u';
+        buf[pos++] = '0';
+        buf[pos++] = '0';
+        buf[pos++] = HEX[(c >> 4) & 0xf];
+        buf[pos++] = HEX[c & 0xf];
+    }
+
+    private void writeAscii(String s) throws IOException {
+        int len = s.length();
+        ensure(len);
+        for (int i = 0; i < len; i++) {
+            buf[pos++] = (byte) s.charAt(i);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        ensure(1);
+        buf[pos++] = (byte) b;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (pos + bytes > buf.length) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
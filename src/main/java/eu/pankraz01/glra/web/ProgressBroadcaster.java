@@ -0,0 +1,151 @@
+package eu.pankraz01.glra.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+/**
+ * Shared source of the `/api/rollback/progress` Server-Sent Events.
+ * <p>
+ * One scheduler thread builds the snapshot once per interval while anyone is subscribed and publishes it as a
+ * ready-to-send frame; each client's own request thread waits for the next frame and writes it. Many watchers therefore
+ * cost one snapshot per interval, and a slow client only stalls its own thread. Unchanged snapshots are not re-sent;
+ * idle streams get a comment line now and then so dead connections are noticed.
+ */
+final class ProgressBroadcaster {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final long KEEPALIVE_MS = 15_000L;
+    private static final byte[] KEEPALIVE = ": keepalive\n\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_PREFIX = "event: progress\ndata: ".getBytes(StandardCharsets.UTF_8);
+
+    private final Supplier<byte[]> snapshot;
+    private final ScheduledExecutorService scheduler;
+    // ReentrantLock rather than synchronized: waiting virtual threads must not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private int subscribers;
+    private long version;
+    private byte[] frame;
+    private byte[] lastPayload;
+    private boolean stopped;
+
+    /**
+     * @param snapshot builds the JSON payload of one event (single line)
+     */
+    ProgressBroadcaster(Supplier<byte[]> snapshot, long intervalMs) {
+        this.snapshot = snapshot;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "glra-web-progress");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write events to {@code out} until the client disconnects (IOException) or the broadcaster is stopped.
+     */
+    void stream(OutputStream out) throws IOException {
+        long seen = 0L;
+        lock.lock();
+        try {
+            if (stopped) return;
+            if (subscribers++ == 0) {
+                // nobody watched, so the last frame may be stale: wait for a fresh one
+                frame = null;
+                lastPayload = null;
+                scheduler.execute(this::refresh);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            while (true) {
+                byte[] next;
+                lock.lock();
+                try {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(KEEPALIVE_MS);
+                    while (!stopped && (frame == null || version == seen)) {
+                        long wait = deadline - System.nanoTime();
+                        if (wait <= 0L) break;
+                        published.awaitNanos(wait);
+                    }
+                    if (stopped) return;
+                    if (frame == null || version == seen) {
+                        next = KEEPALIVE;
+                    } else {
+                        next = frame;
+                        seen = version;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                out.write(next);
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.lock();
+            try {
+                subscribers--;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    void stop() {
+        lock.lock();
+        try {
+            stopped = true;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void refresh() {
+        lock.lock();
+        try {
+            if (subscribers == 0 || stopped) return;
+        } finally {
+            lock.unlock();
+        }
+
+        byte[] payload;
+        try {
+            payload = snapshot.get();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not build rollback progress snapshot", e);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (Arrays.equals(payload, lastPayload)) return;
+            lastPayload = payload;
+            byte[] next = Arrays.copyOf(EVENT_PREFIX, EVENT_PREFIX.length + payload.length + 2);
+            System.arraycopy(payload, 0, next, EVENT_PREFIX.length, payload.length);
+            next[next.length - 2] = '\n';
+            next[next.length - 1] = '\n';
+            frame = next;
+            version++;
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package eu.pankraz01.glra.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import eu.pankraz01.glra.Config;
+
+/**
+ * `Content-Encoding` negotiation and compressing response streams for the web API.
+ * <p>
+ * Requests run on short-lived virtual threads, so instead of a deflater per thread a small pool is shared: streams
+ * borrow a {@link Deflater} and reset and return it on close, which avoids allocating its native buffers per response.
+ */
+final class ResponseCompression {
+    enum Coding {
+        GZIP("gzip", true),
+        // HTTP "deflate" is the zlib format, not raw deflate
+        DEFLATE("deflate", false);
+
+        private final String token;
+        private final boolean nowrap;
+        private final BlockingQueue<Deflater> pool = new ArrayBlockingQueue<>(MAX_POOLED);
+
+        Coding(String token, boolean nowrap) {
+            this.token = token;
+            this.nowrap = nowrap;
+        }
+
+        String token() {
+            return token;
+        }
+    }
+
+    private static final int MAX_POOLED = 16;
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private ResponseCompression() {
+    }
+
+    /**
+     * The coding to use for a response of {@code length} bytes, or null to send it uncompressed.
+     */
+    static Coding negotiate(String acceptEncoding, long length) {
+        if (!Config.WEB_COMPRESSION_ENABLED.get() || length < Config.WEB_COMPRESSION_MIN_BYTES.get()) return null;
+        if (acceptsEncoding(acceptEncoding, Coding.GZIP.token())) return Coding.GZIP;
+        if (acceptsEncoding(acceptEncoding, Coding.DEFLATE.token())) return Coding.DEFLATE;
+        return null;
+    }
+
+    /**
+     * The coding to use for a streamed response whose length is not known up front, or null to send it uncompressed.
+     */
+    static Coding negotiate(String acceptEncoding) {
+        return negotiate(acceptEncoding, Long.MAX_VALUE);
+    }
+
+    /**
+     * True if an `Accept-Encoding` header allows {@code coding} (listed or `*`, and not with `q=0`).
+     */
+    static boolean acceptsEncoding(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) return false;
+        boolean wildcard = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String name = params[0].trim();
+            boolean allowed = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        allowed = Double.parseDouble(param.substring(2).trim()) > 0d;
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(coding)) return allowed;
+            if (name.equals("*")) wildcard = allowed;
+        }
+        return wildcard;
+    }
+
+    /**
+     * Wrap {@code out} in a stream that compresses with {@code coding}. Closing it finishes the encoding, closes
+     * {@code out} and returns the deflater to the pool.
+     */
+    static OutputStream wrap(OutputStream out, Coding coding) throws IOException {
+        return wrap(out, coding, Config.WEB_COMPRESSION_LEVEL.get());
+    }
+
+    static OutputStream wrap(OutputStream out, Coding coding, int level) throws IOException {
+        Deflater deflater = coding.pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, coding.nowrap);
+        }
+        deflater.setLevel(level);
+        return new CompressedStream(out, deflater, coding);
+    }
+
+    private static void release(Coding coding, Deflater deflater) {
+        deflater.reset();
+        if (!coding.pool.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    private static final class CompressedStream extends DeflaterOutputStream {
+        private final Coding coding;
+        private final CRC32 crc = new CRC32();
+        private boolean closed;
+
+        CompressedStream(OutputStream out, Deflater deflater, Coding coding) throws IOException {
+            super(out, deflater, 8192);
+            this.coding = coding;
+            if (coding == Coding.GZIP) {
+                out.write(GZIP_HEADER);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            if (coding == Coding.GZIP) {
+                crc.update(b, off, len);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            if (def.finished()) return;
+            super.finish();
+            if (coding == Coding.GZIP) {
+                writeIntLE((int) crc.getValue());
+                writeIntLE((int) def.getBytesRead());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                finish();
+                out.close();
+            } finally {
+                release(coding, def);
+            }
+        }
+
+        private void writeIntLE(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >>> 8) & 0xff);
+            out.write((value >>> 16) & 0xff);
+            out.write((value >>> 24) & 0xff);
+        }
+    }
+}
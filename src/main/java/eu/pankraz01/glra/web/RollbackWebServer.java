@@ -1,22 +1,38 @@
 package eu.pankraz01.glra.web;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 import java.sql.SQLException;
 
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
 import org.slf4j.Logger;
@@ -39,6 +55,10 @@ import eu.pankraz01.glra.database.dao.WebTokenDAO;
 import eu.pankraz01.glra.database.dao.RollbackHistoryDAO;
 import eu.pankraz01.glra.database.dao.RollbackActionLogDAO;
 import eu.pankraz01.glra.database.dao.UnauthorizedAccessLogDAO;
+import eu.pankraz01.glra.database.CancellableQuery;
+import eu.pankraz01.glra.database.DBConnection;
+import eu.pankraz01.glra.database.DatabaseSetup;
+import eu.pankraz01.glra.database.dao.AuditCursor;
 import eu.pankraz01.glra.database.dao.AuditDAO;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.MutableComponent;
@@ -61,6 +81,12 @@ public final class RollbackWebServer {
     private static final String WEB_PATH_LABEL_KEY = "message.griefloggerrollbackaddon.web.broadcast.path";
     private static final String WEB_METHOD_LABEL_KEY = "message.griefloggerrollbackaddon.web.broadcast.method";
     private static final String WEB_REASON_LABEL_KEY = "message.griefloggerrollbackaddon.web.broadcast.reason";
+    private static final String STYLESHEET_PATH = "/web/rollback.css";
+    private static final String STYLESHEET_RESOURCE = "web/rollback.css";
+    // Pages are revalidated on every load (cheap 304); the stylesheet is requested by content hash and never changes
+    private static final String PAGE_CACHE_CONTROL = "no-cache";
+    private static final String VERSIONED_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final byte[] AUDIT_EVENT_PREFIX = "event: audit\ndata: ".getBytes(StandardCharsets.UTF_8);
 
     private final RollbackManager rollbackManager;
     private final MinecraftServer server;
@@ -68,14 +94,20 @@ public final class RollbackWebServer {
     private final String authToken;
     private final boolean requireToken;
     private final ActionDAO actionDAO = new ActionDAO();
-    private final WebTokenDAO tokenDAO = new WebTokenDAO();
     private final RollbackHistoryDAO historyDAO = new RollbackHistoryDAO();
-    private final RollbackActionLogDAO actionLogDAO = new RollbackActionLogDAO();
     private final UnauthorizedAccessLogDAO unauthorizedLogDAO = new UnauthorizedAccessLogDAO();
     private final AuditDAO auditDAO = new AuditDAO();
 
     private HttpServer httpServer;
     private ExecutorService executor;
+    // Loaded once per start; null if the resource is missing
+    private StaticAsset rollbackPage;
+    private StaticAsset auditPage;
+    private StaticAsset stylesheet;
+    private ProgressBroadcaster progressBroadcaster;
+    private AuditTail auditTail;
+    // shared by the section queries of all /api/audit requests
+    private Semaphore sectionPermits;
 
     public RollbackWebServer(RollbackManager rollbackManager, MinecraftServer server, ResourceKey<Level> defaultLevel, String authToken, boolean requireToken) {
         this.rollbackManager = rollbackManager;
@@ -90,24 +122,35 @@ public final class RollbackWebServer {
         InetAddress address = InetAddress.getByName(bindAddress);
         InetSocketAddress socket = new InetSocketAddress(address, port);
 
+        loadStaticAssets();
+        WebTokenCache.start();
         httpServer = HttpServer.create(socket, 0);
-        httpServer.createContext("/", this::handleRoot);
-        httpServer.createContext("/audit", this::handleAuditPage);
-        httpServer.createContext("/api/rollback", this::handleRollback);
-        httpServer.createContext("/api/audit", this::handleAuditData);
-        httpServer.createContext("/api/audit/meta", this::handleAuditMeta);
-        httpServer.createContext("/api/audit/undo", this::handleAuditUndo);
-        httpServer.createContext("/api/audit/rollback", this::handleAuditRollback);
-        httpServer.createContext("/api/players", this::handlePlayers);
-        httpServer.createContext("/api/dimensions", this::handleDimensions);
-        httpServer.createContext("/api/lang", this::handleLang);
-        httpServer.createContext("/web/rollback.css", this::handleCss);
-
-        executor = Executors.newCachedThreadPool(r -> {
-            Thread t = new Thread(r, "glra-web");
-            t.setDaemon(true);
-            return t;
-        });
+        // Admission limits: over the limit a request gets 503 instead of queueing up threads and DB connections
+        Semaphore staticPermits = new Semaphore(Config.WEB_MAX_STATIC_REQUESTS.get());
+        Semaphore databasePermits = new Semaphore(Config.WEB_MAX_DATABASE_REQUESTS.get());
+        // Event streams stay open for as long as a page is, so they get their own limit
+        Semaphore streamPermits = new Semaphore(Config.WEB_MAX_EVENT_STREAMS.get());
+        // Each /api/audit request fans out into several section queries; together they may hold at most half the read
+        // pool, so a burst of dashboards cannot starve rollbacks and the undo log of connections
+        sectionPermits = new Semaphore(Math.max(1, DBConnection.readPoolSize() / 2));
+        progressBroadcaster = new ProgressBroadcaster(this::progressJson, Config.WEB_PROGRESS_INTERVAL_MS.get());
+        auditTail = new AuditTail(auditDAO, historyDAO, rollbackManager::actionStore, Config.WEB_AUDIT_STREAM_INTERVAL_MS.get());
+        httpServer.createContext("/", limited(staticPermits, this::handleRoot));
+        httpServer.createContext("/audit", limited(staticPermits, this::handleAuditPage));
+        httpServer.createContext("/api/rollback", limited(databasePermits, schemaReady(this::handleRollback)));
+        httpServer.createContext("/api/rollback/progress", limited(streamPermits, this::handleRollbackProgress));
+        httpServer.createContext("/api/audit", limited(databasePermits, schemaReady(this::handleAuditData)));
+        httpServer.createContext("/api/audit/meta", limited(staticPermits, this::handleAuditMeta));
+        httpServer.createContext("/api/audit/stream", limited(streamPermits, schemaReady(this::handleAuditStream)));
+        httpServer.createContext("/api/audit/undo", limited(databasePermits, schemaReady(this::handleAuditUndo)));
+        httpServer.createContext("/api/audit/rollback", limited(databasePermits, schemaReady(this::handleAuditRollback)));
+        httpServer.createContext("/api/players", limited(databasePermits, schemaReady(this::handlePlayers)));
+        httpServer.createContext("/api/dimensions", limited(databasePermits, schemaReady(this::handleDimensions)));
+        httpServer.createContext("/api/lang", limited(staticPermits, this::handleLang));
+        httpServer.createContext(STYLESHEET_PATH, limited(staticPermits, this::handleCss));
+
+        // One cheap virtual thread per request; the semaphores above bound how many run at once
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("glra-web-", 0).factory());
         httpServer.setExecutor(executor);
         httpServer.start();
 
@@ -115,6 +158,14 @@ public final class RollbackWebServer {
     }
 
     public synchronized void stop() {
+        if (progressBroadcaster != null) {
+            progressBroadcaster.stop();
+            progressBroadcaster = null;
+        }
+        if (auditTail != null) {
+            auditTail.stop();
+            auditTail = null;
+        }
         if (httpServer != null) {
             httpServer.stop(0);
             httpServer = null;
@@ -123,6 +174,63 @@ public final class RollbackWebServer {
             executor.shutdownNow();
             executor = null;
         }
+        WebTokenCache.stop();
+    }
+
+    private void loadStaticAssets() {
+        ClassLoader loader = getClass().getClassLoader();
+        stylesheet = loadAsset(loader, STYLESHEET_RESOURCE, "text/css; charset=utf-8", null);
+        // Pages link the stylesheet by content hash so browsers can cache it for good
+        String cssHref = stylesheet == null ? STYLESHEET_PATH : STYLESHEET_PATH + "?v=" + stylesheet.hash();
+        UnaryOperator<String> linkCss = html -> html.replace("href=\"" + STYLESHEET_PATH + "\"", "href=\"" + cssHref + "\"");
+        rollbackPage = loadAsset(loader, "web/rollback.html", "text/html; charset=utf-8", linkCss);
+        auditPage = loadAsset(loader, "web/audit.html", "text/html; charset=utf-8", linkCss);
+    }
+
+    private StaticAsset loadAsset(ClassLoader loader, String path, String contentType, UnaryOperator<String> rewrite) {
+        try {
+            StaticAsset asset = StaticAsset.load(loader, path, contentType, rewrite);
+            if (asset == null) {
+                LOGGER.warn("Web UI resource {} is missing", path);
+            }
+            return asset;
+        } catch (IOException e) {
+            LOGGER.warn("Failed to load web UI resource {}", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Database-backed endpoints answer 503 until the background schema setup has finished.
+     */
+    private HttpHandler schemaReady(HttpHandler handler) {
+        return exchange -> {
+            if (!DatabaseSetup.isReady()) {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(Config.WEB_RETRY_AFTER_SECONDS.get()));
+                String message = DatabaseSetup.hasFailed()
+                        ? "Database setup failed and is being retried, see the server log"
+                        : "Database setup is still running, try again later";
+                sendJson(exchange, 503, "{\"status\":\"error\",\"message\":\"" + message + "\"}");
+                return;
+            }
+            handler.handle(exchange);
+        };
+    }
+
+    private HttpHandler limited(Semaphore permits, HttpHandler handler) {
+        return exchange -> {
+            if (!permits.tryAcquire()) {
+                LOGGER.debug("Web request limit reached, rejecting {} {}", exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(Config.WEB_RETRY_AFTER_SECONDS.get()));
+                sendJson(exchange, 503, "{\"status\":\"error\",\"message\":\"Server busy, try again later\"}");
+                return;
+            }
+            try {
+                handler.handle(exchange);
+            } finally {
+                permits.release();
+            }
+        };
     }
 
     private void handleLang(HttpExchange exchange) throws IOException {
@@ -170,12 +278,11 @@ public final class RollbackWebServer {
             return;
         }
 
-        String html = loadHtml("web/rollback.html");
-        if (html == null) {
+        if (rollbackPage == null) {
             sendPlain(exchange, 500, "Web UI not available (missing resource)");
             return;
         }
-        sendHtml(exchange, html);
+        sendAsset(exchange, rollbackPage, PAGE_CACHE_CONTROL);
     }
 
     private void handleAuditMeta(HttpExchange exchange) throws IOException {
@@ -217,6 +324,13 @@ public final class RollbackWebServer {
         String rawQuery = exchange.getRequestURI().getRawQuery();
         int limit = parseLimit(rawQuery, 100);
         AuditFilters filters = parseAuditFilters(rawQuery);
+        // Paging: `tab` picks the one section to load, `before`/`after` the cursor of the page next to it
+        Map<String, String> params = parseQueryParams(rawQuery);
+        String tab = trimToNull(params.get("tab"));
+        Optional<AuditCursor> cursor = tab == null ? Optional.empty()
+                : AuditCursor.parse(params.get("before"), true).or(() -> AuditCursor.parse(params.get("after"), false));
+        // `sections` (comma separated) loads only the tabs the client shows; without it (and without `tab`) all are loaded
+        Set<String> wanted = tab != null ? Set.of(tab) : parseSections(params.get("sections"));
 
         boolean chatEnabled = Config.WEB_AUDIT_CHAT_ENABLED.get();
         boolean blocksEnabled = Config.WEB_AUDIT_BLOCKS_ENABLED.get();
@@ -224,45 +338,311 @@ public final class RollbackWebServer {
         boolean historyEnabled = true;
         boolean rollbackActionsEnabled = true;
 
-        StringBuilder json = new StringBuilder();
-        json.append('{');
-        json.append("\"status\":\"ok\"");
-        json.append(",\"enabled\":true");
-        json.append(",\"chatEnabled\":").append(chatEnabled);
-        json.append(",\"blockEnabled\":").append(blocksEnabled);
-        json.append(",\"containerEnabled\":").append(containersEnabled);
-        json.append(",\"rollbackActionsEnabled\":").append(rollbackActionsEnabled);
-        json.append(",\"historyEnabled\":").append(historyEnabled);
+        Map<String, PageTracker> pages = new LinkedHashMap<>();
+        Map<String, SectionLoader> sections = new LinkedHashMap<>();
+        if (chatEnabled && includesSection(wanted, "chat")) {
+            PageTracker page = new PageTracker(cursor, limit);
+            pages.put("chat", page);
+            sections.put("chat", query -> {
+                List<AuditDAO.ChatEntry> rows = new ArrayList<>();
+                auditDAO.streamRecentChat(limit, filters.player(), cursor, query, rows::add);
+                return sectionArray("chat", rows, this::writeChat, page, AuditDAO.ChatEntry::ts, AuditDAO.ChatEntry::key);
+            });
+        }
+        if (blocksEnabled && includesSection(wanted, "blocks")) {
+            PageTracker page = new PageTracker(cursor, limit);
+            pages.put("blocks", page);
+            sections.put("blocks", query -> {
+                List<AuditDAO.BlockEntry> rows = new ArrayList<>();
+                auditDAO.streamRecentBlocks(limit, filters.player(), filters.dimension(), filters.blockAction(), cursor, query, rows::add);
+                return sectionArray("blocks", rows, this::writeBlock, page, AuditDAO.BlockEntry::ts, AuditDAO.BlockEntry::key);
+            });
+        }
+        if (containersEnabled && includesSection(wanted, "containers")) {
+            PageTracker page = new PageTracker(cursor, limit);
+            pages.put("containers", page);
+            sections.put("containers", query -> {
+                List<AuditDAO.ContainerEntry> rows = new ArrayList<>();
+                auditDAO.streamRecentContainers(limit, filters.player(), filters.dimension(), filters.containerAction(), cursor, query, rows::add);
+                return sectionArray("containers", rows, this::writeContainer, page, AuditDAO.ContainerEntry::ts, AuditDAO.ContainerEntry::key);
+            });
+        }
+        if (historyEnabled && includesSection(wanted, "history")) {
+            PageTracker page = new PageTracker(cursor, limit);
+            pages.put("history", page);
+            sections.put("history", query -> {
+                List<RollbackHistoryDAO.HistoryEntry> rows = new ArrayList<>();
+                historyDAO.streamRecent(limit, filters.player(), cursor, query, rows::add);
+                return sectionArray("history", rows, this::writeHistory, page, RollbackHistoryDAO.HistoryEntry::ts, row -> List.of(row.id()));
+            });
+        }
+        if (rollbackActionsEnabled && includesSection(wanted, "rollbackActions")) {
+            PageTracker page = new PageTracker(cursor, limit);
+            pages.put("rollbackActions", page);
+            sections.put("rollbackActions", query -> {
+                List<RollbackActionLogDAO.LoggedRollbackAction> rows = cursor.isPresent()
+                        ? rollbackManager.actionStore().loadActionsPage(cursor.get(), limit, query)
+                        : rollbackManager.actionStore().loadRecentActions(limit, query);
+                return sectionArray("rollbackActions", rows, this::writeRollbackAction, page,
+                        RollbackActionLogDAO.LoggedRollbackAction::ts, row -> List.of(row.id()));
+            });
+        }
+
+        // The sections are queried concurrently, each on its own virtual thread and pooled connection, under one
+        // deadline; each is written as soon as it is ready, and one that fails or runs late only costs its own part.
+        // The deadline also bounds each statement, and statements still running when it passes are cancelled
+        int deadlineMs = Config.WEB_AUDIT_DEADLINE_MS.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        int queryTimeoutSeconds = Math.max(1, (deadlineMs + 999) / 1000);
+        CompletionService<AuditSection> completion = new ExecutorCompletionService<>(executor);
+        Map<String, Future<AuditSection>> pending = new LinkedHashMap<>();
+        Map<String, CancellableQuery> queries = new LinkedHashMap<>();
+        sections.forEach((name, task) -> {
+            CancellableQuery query = new CancellableQuery(queryTimeoutSeconds);
+            queries.put(name, query);
+            pending.put(name, completion.submit(() -> loadSection(name, task, query, deadline)));
+        });
 
-        try {
-            if (chatEnabled) {
-                var chat = auditDAO.loadRecentChat(limit, filters.player());
-                json.append(",\"chat\":").append(toChatJson(chat));
+        streamJson(exchange, 200, json -> {
+            json.beginObject();
+            json.field("status", "ok");
+            json.field("enabled", true);
+            json.field("chatEnabled", chatEnabled);
+            json.field("blockEnabled", blocksEnabled);
+            json.field("containerEnabled", containersEnabled);
+            json.field("rollbackActionsEnabled", rollbackActionsEnabled);
+            json.field("historyEnabled", historyEnabled);
+
+            Map<String, String> errors = new LinkedHashMap<>();
+            List<String> loaded = new ArrayList<>();
+            try {
+                while (!pending.isEmpty()) {
+                    Future<AuditSection> done = completion.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (done == null) break;
+                    AuditSection section = done.get();
+                    pending.remove(section.name());
+                    if (section.body() == null) {
+                        errors.put(section.name(), "Could not load " + section.name());
+                    } else {
+                        section.body().write(json);
+                        loaded.add(section.name());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                // loadSection catches everything, so this is not expected
+                LOGGER.error("Failed to load audit data", e);
+            } finally {
+                // late sections (or all of them, if the client went away) are abandoned: their running statements
+                // are cancelled on the database, and sections still waiting for a connection are interrupted
+                for (var entry : pending.entrySet()) {
+                    queries.get(entry.getKey()).cancel();
+                    entry.getValue().cancel(true);
+                    errors.putIfAbsent(entry.getKey(), "Timed out");
+                }
             }
-            if (blocksEnabled) {
-                var blocks = auditDAO.loadRecentBlocks(limit, filters.player(), filters.dimension(), filters.blockAction());
-                json.append(",\"blocks\":").append(toBlockJson(blocks));
+            if (!pending.isEmpty()) {
+                LOGGER.warn("Audit request ran past its deadline; sections not loaded: {}", pending.keySet());
             }
-            if (containersEnabled) {
-                var containers = auditDAO.loadRecentContainers(limit, filters.player(), filters.dimension(), filters.containerAction());
-                json.append(",\"containers\":").append(toContainerJson(containers));
+
+            // `ts,key` cursors for the pages before/after each returned section; null where there is none
+            json.name("cursors").beginObject();
+            for (String name : loaded) {
+                writeCursors(json, name, pages.get(name));
             }
-            if (historyEnabled) {
-                var history = historyDAO.loadRecent(limit, filters.player());
-                json.append(",\"history\":").append(toHistoryJson(history));
+            json.endObject();
+            if (!errors.isEmpty()) {
+                json.name("errors").beginObject();
+                for (var entry : errors.entrySet()) {
+                    json.field(entry.getKey(), entry.getValue());
+                }
+                json.endObject();
             }
-            if (rollbackActionsEnabled) {
-                var rollbackActions = actionLogDAO.loadRecentActions(limit);
-                json.append(",\"rollbackActions\":").append(toRollbackActionsJson(rollbackActions));
+            json.endObject();
+        });
+    }
+
+    private record AuditSection(String name, JsonBody body) {
+    }
+
+    @FunctionalInterface
+    private interface SectionLoader {
+        JsonBody load(CancellableQuery query) throws Exception;
+    }
+
+    /**
+     * Run one audit section query once one of the shared section permits is free; a failure, or no permit before
+     * {@code deadline}, yields a section without body instead of an exception.
+     */
+    private AuditSection loadSection(String name, SectionLoader task, CancellableQuery query, long deadline) {
+        try {
+            if (!sectionPermits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                return new AuditSection(name, null);
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new AuditSection(name, null);
+        }
+        try {
+            return new AuditSection(name, task.load(query));
+        } catch (InterruptedException e) {
+            // abandoned after the deadline
+            Thread.currentThread().interrupt();
+            return new AuditSection(name, null);
         } catch (Exception e) {
-            LOGGER.error("Failed to load audit data", e);
-            sendJson(exchange, 500, "{\"status\":\"error\",\"message\":\"Could not load audit data\"}");
+            if (query.isCancelled()) {
+                LOGGER.debug("Audit section {} cancelled after the deadline", name);
+            } else {
+                LOGGER.error("Failed to load audit section {}", name, e);
+            }
+            return new AuditSection(name, null);
+        } finally {
+            sectionPermits.release();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter<T> {
+        void write(JsonStreamWriter json, T row) throws IOException;
+    }
+
+    /**
+     * The JSON array of a loaded audit section. Feeds the rows to the section's cursor tracker right away, on the
+     * thread that loaded them.
+     */
+    private static <T> JsonBody sectionArray(String name, List<T> rows, RowWriter<T> writer, PageTracker page,
+                                             ToLongFunction<T> ts, Function<T, List<Long>> key) {
+        for (T row : rows) {
+            page.add(ts.applyAsLong(row), key.apply(row));
+        }
+        return json -> {
+            json.name(name).beginArray();
+            for (T row : rows) {
+                writer.write(json, row);
+            }
+            json.endArray();
+        };
+    }
+
+    /**
+     * Server-Sent Events stream of audit rows that appeared after the client connected (`event: audit`, same row
+     * format as `/api/audit`), filtered like `/api/audit`. An `event: reset` asks the client to reload instead.
+     */
+    private void handleAuditStream(HttpExchange exchange) throws IOException {
+        if (!Config.WEB_AUDIT_ENABLED.get()) {
+            sendJson(exchange, 404, "{\"status\":\"error\",\"message\":\"Audit disabled\"}");
+            return;
+        }
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendJson(exchange, 405, "{\"status\":\"error\",\"message\":\"Use GET\"}");
             return;
         }
 
-        json.append('}');
-        sendJson(exchange, 200, json.toString());
+        // EventSource cannot set headers, so the token may also be passed as ?token=
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        AuthResult auth = authorize(exchange, new FormData(parseQueryParams(rawQuery), ""));
+        if (!auth.allowed()) {
+            sendJson(exchange, 401, "{\"status\":\"error\",\"message\":\"Unauthorized\"}");
+            return;
+        }
+        AuditFilters filters = parseAuditFilters(rawQuery);
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "text/event-stream; charset=utf-8");
+        headers.set("Cache-Control", "no-cache");
+        headers.set("X-Accel-Buffering", "no");
+        exchange.sendResponseHeaders(200, 0);
+        AuditTail tail = auditTail;
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write("retry: 5000\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            if (tail != null) {
+                tail.stream(out, batch -> auditEventFrame(batch, filters));
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Audit stream closed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * One client's `audit` event for a batch of new rows, or null if none of them pass its filters.
+     */
+    private byte[] auditEventFrame(AuditTail.Batch batch, AuditFilters filters) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+        buffer.write(AUDIT_EVENT_PREFIX);
+        int rows = 0;
+        try (JsonStreamWriter json = new JsonStreamWriter(buffer)) {
+            json.beginObject();
+            json.name("chat").beginArray();
+            for (var entry : batch.chat()) {
+                if (!matches(filters.player(), entry.playerName())) continue;
+                writeChat(json, entry);
+                rows++;
+            }
+            json.endArray();
+            json.name("blocks").beginArray();
+            for (var entry : batch.blocks()) {
+                if (!matches(filters.player(), entry.playerName()) || !matches(filters.dimension(), entry.levelName())
+                        || !matches(filters.blockAction(), entry.actionCode())) continue;
+                writeBlock(json, entry);
+                rows++;
+            }
+            json.endArray();
+            json.name("containers").beginArray();
+            for (var entry : batch.containers()) {
+                if (!matches(filters.player(), entry.playerName()) || !matches(filters.dimension(), entry.levelName())
+                        || !matches(filters.containerAction(), entry.actionCode())) continue;
+                writeContainer(json, entry);
+                rows++;
+            }
+            json.endArray();
+            json.name("history").beginArray();
+            for (var entry : batch.history()) {
+                if (filters.player().isPresent() && !matches(filters.player(), entry.player())
+                        && !matches(filters.player(), entry.actorName())) continue;
+                writeHistory(json, entry);
+                rows++;
+            }
+            json.endArray();
+            json.name("rollbackActions").beginArray();
+            for (var entry : batch.rollbackActions()) {
+                writeRollbackAction(json, entry);
+                rows++;
+            }
+            json.endArray();
+            json.endObject();
+        }
+        if (rows == 0) return null;
+        buffer.write('\n');
+        buffer.write('\n');
+        return buffer.toByteArray();
+    }
+
+    // Same semantics as the SQL filters of /api/audit: absent filter matches everything, otherwise exact match
+    private static <T> boolean matches(Optional<T> filter, T value) {
+        return filter.isEmpty() || filter.get().equals(value);
+    }
+
+    private static Set<String> parseSections(String raw) {
+        if (raw == null || raw.isBlank()) return null;
+        Set<String> sections = new HashSet<>();
+        for (String part : raw.split(",")) {
+            String section = part.trim();
+            if (!section.isEmpty()) sections.add(section);
+        }
+        return sections;
+    }
+
+    private static boolean includesSection(Set<String> wanted, String section) {
+        return wanted == null || wanted.contains(section);
+    }
+
+    private void writeCursors(JsonStreamWriter json, String section, PageTracker page) throws IOException {
+        json.name(section).beginObject()
+                .field("older", page.older())
+                .field("newer", page.newer())
+                .endObject();
     }
 
     private void handleAuditUndo(HttpExchange exchange) throws IOException {
@@ -289,7 +669,7 @@ public final class RollbackWebServer {
         }
 
         try {
-            var actions = actionLogDAO.loadActionsByIds(ids);
+            var actions = rollbackManager.actionStore().loadActionsByIds(ids);
             if (actions.isEmpty()) {
                 sendJson(exchange, 404, "{\"status\":\"error\",\"message\":\"No rollback actions found for ids\"}");
                 return;
@@ -350,12 +730,11 @@ public final class RollbackWebServer {
             return;
         }
 
-        String html = loadHtml("web/audit.html");
-        if (html == null) {
+        if (auditPage == null) {
             sendPlain(exchange, 500, "Audit UI not available (missing resource)");
             return;
         }
-        sendHtml(exchange, html);
+        sendAsset(exchange, auditPage, PAGE_CACHE_CONTROL);
     }
 
     private void handleRollback(HttpExchange exchange) throws IOException {
@@ -425,17 +804,76 @@ public final class RollbackWebServer {
         sendJson(exchange, 200, ok.toString());
     }
 
+    /**
+     * Server-Sent Events stream of rollback progress snapshots (`event: progress`, JSON data).
+     */
+    private void handleRollbackProgress(HttpExchange exchange) throws IOException {
+        if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendJson(exchange, 405, "{\"status\":\"error\",\"message\":\"Use GET\"}");
+            return;
+        }
+
+        // EventSource cannot set headers, so the token may also be passed as ?token=
+        FormData query = new FormData(parseQueryParams(exchange.getRequestURI().getRawQuery()), "");
+        AuthResult auth = authorize(exchange, query, false);
+        if (!auth.allowed()) {
+            sendJson(exchange, 401, "{\"status\":\"error\",\"message\":\"Unauthorized\"}");
+            return;
+        }
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "text/event-stream; charset=utf-8");
+        headers.set("Cache-Control", "no-cache");
+        // stop reverse proxies from buffering the stream
+        headers.set("X-Accel-Buffering", "no");
+        exchange.sendResponseHeaders(200, 0);
+        ProgressBroadcaster broadcaster = progressBroadcaster;
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write("retry: 5000\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            if (broadcaster != null) {
+                broadcaster.stream(out);
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Progress stream closed: {}", e.getMessage());
+        }
+    }
+
+    private byte[] progressJson() {
+        RollbackManager.ProgressSnapshot progress = rollbackManager.progressSnapshot();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        try (JsonStreamWriter json = new JsonStreamWriter(buffer)) {
+            json.beginObject()
+                    .field("status", progress.status().name().toLowerCase(Locale.ROOT))
+                    .field("processed", progress.processed())
+                    .field("expected", progress.expected())
+                    .field("remaining", progress.remaining())
+                    .field("errors", progress.errors())
+                    .field("elapsedMs", progress.elapsedMs())
+                    .field("etaMs", progress.etaMs())
+                    .field("time", progress.timeLabel())
+                    .field("player", progress.player())
+                    .field("radius", progress.radius())
+                    .field("scope", progress.kind() == null ? null : progress.kind().describe())
+                    .endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
     private void handleCss(HttpExchange exchange) throws IOException {
         if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
             sendPlain(exchange, 405, "Method Not Allowed");
             return;
         }
-        String css = loadResourceAsString("web/rollback.css");
-        if (css == null) {
+        if (stylesheet == null) {
             sendPlain(exchange, 404, "Not Found");
             return;
         }
-        send(exchange, "text/css; charset=utf-8", css, 200);
+        // Only the hashed URL the pages link to is safe to cache without revalidation
+        String version = parseQueryParams(exchange.getRequestURI().getRawQuery()).get("v");
+        sendAsset(exchange, stylesheet, stylesheet.hash().equals(version) ? VERSIONED_CACHE_CONTROL : PAGE_CACHE_CONTROL);
     }
 
     private void handlePlayers(HttpExchange exchange) throws IOException {
@@ -503,7 +941,7 @@ public final class RollbackWebServer {
             return new AuthResult(true, Optional.empty(), Optional.empty());
         }
         try {
-            Optional<WebTokenDAO.TokenOwner> user = tokenDAO.findUserByToken(provided);
+            Optional<WebTokenDAO.TokenOwner> user = WebTokenCache.lookup(provided);
             if (user.isPresent()) {
                 var owner = user.get();
                 return new AuthResult(true, Optional.of(owner.userId()), Optional.ofNullable(owner.username()));
@@ -512,7 +950,7 @@ public final class RollbackWebServer {
             LOGGER.warn("Token lookup failed", e);
         }
 
-        if (!authToken.isEmpty() && authToken.equals(provided)) {
+        if (!authToken.isEmpty() && WebTokenCache.secretsEqual(authToken, provided)) {
             return new AuthResult(true, Optional.empty(), Optional.empty());
         }
         logUnauthorized(exchange, form, "invalid token");
@@ -685,8 +1123,33 @@ public final class RollbackWebServer {
         }
     }
 
-    private void sendHtml(HttpExchange exchange, String html) throws IOException {
-        send(exchange, "text/html; charset=utf-8", html);
+    /**
+     * Send a preloaded asset, gzip-encoded if the client accepts it, or `304 Not Modified` if its ETag matches.
+     */
+    private void sendAsset(HttpExchange exchange, StaticAsset asset, String cacheControl) throws IOException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        Headers responseHeaders = exchange.getResponseHeaders();
+        boolean gzipped = asset.hasGzip() && ResponseCompression.acceptsEncoding(requestHeaders.getFirst("Accept-Encoding"), "gzip");
+        responseHeaders.set("Cache-Control", cacheControl);
+        responseHeaders.set("ETag", asset.etag(gzipped));
+        if (asset.hasGzip()) {
+            responseHeaders.set("Vary", "Accept-Encoding");
+        }
+        if (asset.matches(requestHeaders.getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] data = asset.body(gzipped);
+        responseHeaders.set("Content-Type", asset.contentType());
+        if (gzipped) {
+            responseHeaders.set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, data.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(data);
+        }
     }
 
     private void sendPlain(HttpExchange exchange, int status, String text) throws IOException {
@@ -697,129 +1160,121 @@ public final class RollbackWebServer {
         send(exchange, "application/json; charset=utf-8", json, status);
     }
 
-    private void send(HttpExchange exchange, String contentType, String body) throws IOException {
-        send(exchange, contentType, body, 200);
-    }
-
     private void send(HttpExchange exchange, String contentType, String body, int status) throws IOException {
         byte[] data = body.getBytes(StandardCharsets.UTF_8);
-        exchange.getResponseHeaders().set("Content-Type", contentType);
-        exchange.sendResponseHeaders(status, data.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(data);
-        }
-    }
-
-    private String toChatJson(Iterable<eu.pankraz01.glra.database.dao.AuditDAO.ChatEntry> chat) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        boolean first = true;
-        for (var entry : chat) {
-            if (!first) sb.append(',');
-            sb.append('{')
-                    .append("\"ts\":").append(entry.ts())
-                    .append(",\"player\":\"").append(escapeJson(entry.playerName())).append("\"")
-                    .append(",\"message\":\"").append(escapeJson(entry.message())).append("\"")
-                    .append('}');
-            first = false;
-        }
-        sb.append(']');
-        return sb.toString();
-    }
-
-    private String toBlockJson(Iterable<eu.pankraz01.glra.database.dao.AuditDAO.BlockEntry> blocks) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        boolean first = true;
-        for (var entry : blocks) {
-            if (!first) sb.append(',');
-            sb.append('{')
-                    .append("\"ts\":").append(entry.ts())
-                    .append(",\"player\":\"").append(escapeJson(entry.playerName())).append("\"")
-                    .append(",\"level\":\"").append(escapeJson(entry.levelName())).append("\"")
-                    .append(",\"x\":").append(entry.x())
-                    .append(",\"y\":").append(entry.y())
-                    .append(",\"z\":").append(entry.z())
-                    .append(",\"material\":\"").append(escapeJson(entry.materialName())).append("\"")
-                    .append(",\"action\":").append(entry.actionCode())
-                    .append(",\"actionLabel\":\"").append(escapeJson(entry.actionLabel())).append("\"")
-                    .append('}');
-            first = false;
-        }
-        sb.append(']');
-        return sb.toString();
-    }
-
-    private String toContainerJson(Iterable<eu.pankraz01.glra.database.dao.AuditDAO.ContainerEntry> containers) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        boolean first = true;
-        for (var entry : containers) {
-            if (!first) sb.append(',');
-            sb.append('{')
-                    .append("\"ts\":").append(entry.ts())
-                    .append(",\"player\":\"").append(escapeJson(entry.playerName())).append("\"")
-                    .append(",\"level\":\"").append(escapeJson(entry.levelName())).append("\"")
-                    .append(",\"x\":").append(entry.x())
-                    .append(",\"y\":").append(entry.y())
-                    .append(",\"z\":").append(entry.z())
-                    .append(",\"material\":\"").append(escapeJson(entry.materialName())).append("\"")
-                    .append(",\"amount\":").append(entry.amount())
-                    .append(",\"action\":").append(entry.actionCode())
-                    .append('}');
-            first = false;
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", contentType);
+        ResponseCompression.Coding coding = ResponseCompression.negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"), data.length);
+        if (coding == null) {
+            exchange.sendResponseHeaders(status, data.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(data);
+            }
+            return;
         }
-        sb.append(']');
-        return sb.toString();
-    }
-
-    private String toHistoryJson(Iterable<RollbackHistoryDAO.HistoryEntry> history) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        boolean first = true;
-        for (var entry : history) {
-            if (!first) sb.append(',');
-            sb.append('{')
-                    .append("\"id\":").append(entry.id())
-                    .append(",\"ts\":").append(entry.ts())
-                    .append(",\"actor\":\"").append(escapeJson(entry.actorName())).append("\"")
-                    .append(",\"source\":\"").append(escapeJson(entry.source())).append("\"")
-                    .append(",\"time\":\"").append(escapeJson(entry.timeLabel())).append("\"")
-                    .append(",\"durationMs\":").append(entry.durationMs())
-                    .append(",\"player\":\"").append(escapeJson(entry.player())).append("\"")
-                    .append(",\"radius\":\"").append(escapeJson(entry.radius())).append("\"")
-                    .append(",\"scope\":\"").append(escapeJson(entry.scope())).append("\"")
-                    .append('}');
-            first = false;
+        headers.set("Content-Encoding", coding.token());
+        headers.set("Vary", "Accept-Encoding");
+        // compressed length is unknown up front: chunked
+        exchange.sendResponseHeaders(status, 0);
+        try (OutputStream os = ResponseCompression.wrap(exchange.getResponseBody(), coding)) {
+            os.write(data);
         }
-        sb.append(']');
-        return sb.toString();
     }
 
-    private String toRollbackActionsJson(Iterable<RollbackActionLogDAO.LoggedRollbackAction> actions) {
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
-        boolean first = true;
-        for (var entry : actions) {
-            if (!first) sb.append(',');
-            sb.append('{')
-                    .append("\"id\":").append(entry.id())
-                    .append(",\"jobId\":").append(entry.jobId())
-                    .append(",\"ts\":").append(entry.ts())
-                    .append(",\"type\":\"").append(escapeJson(entry.type())).append("\"")
-                    .append(",\"level\":\"").append(escapeJson(entry.levelName())).append("\"")
-                    .append(",\"x\":").append(entry.x())
-                    .append(",\"y\":").append(entry.y())
-                    .append(",\"z\":").append(entry.z())
-                    .append(",\"material\":\"").append(escapeJson(entry.material())).append("\"")
-                    .append(",\"oldMaterial\":\"").append(escapeJson(entry.oldMaterial())).append("\"")
-                    .append(",\"amount\":").append(entry.amount())
-                    .append(",\"actionType\":").append(entry.actionType())
-                    .append('}');
-            first = false;
-        }
-        sb.append(']');
-        return sb.toString();
+    @FunctionalInterface
+    private interface JsonBody {
+        void write(JsonStreamWriter json) throws IOException;
+    }
+
+    /**
+     * Send a JSON body produced by {@code body} with chunked transfer encoding (compressed if the client accepts it),
+     * so the response starts going out before it is complete.
+     */
+    private void streamJson(HttpExchange exchange, int status, JsonBody body) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", "application/json; charset=utf-8");
+        ResponseCompression.Coding coding = ResponseCompression.negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        if (coding != null) {
+            headers.set("Content-Encoding", coding.token());
+            headers.set("Vary", "Accept-Encoding");
+        }
+        exchange.sendResponseHeaders(status, 0);
+        OutputStream out = coding == null ? exchange.getResponseBody() : ResponseCompression.wrap(exchange.getResponseBody(), coding);
+        try (JsonStreamWriter json = new JsonStreamWriter(out)) {
+            body.write(json);
+        }
+    }
+
+    private void writeChat(JsonStreamWriter json, AuditDAO.ChatEntry entry) throws IOException {
+        json.beginObject()
+                .field("ts", entry.ts())
+                .field("player", orEmpty(entry.playerName()))
+                .field("message", orEmpty(entry.message()))
+                .endObject();
+    }
+
+    private void writeBlock(JsonStreamWriter json, AuditDAO.BlockEntry entry) throws IOException {
+        json.beginObject()
+                .field("ts", entry.ts())
+                .field("player", orEmpty(entry.playerName()))
+                .field("level", orEmpty(entry.levelName()))
+                .field("x", entry.x())
+                .field("y", entry.y())
+                .field("z", entry.z())
+                .field("material", orEmpty(entry.materialName()))
+                .field("action", entry.actionCode())
+                .field("actionLabel", orEmpty(entry.actionLabel()))
+                .endObject();
+    }
+
+    private void writeContainer(JsonStreamWriter json, AuditDAO.ContainerEntry entry) throws IOException {
+        json.beginObject()
+                .field("ts", entry.ts())
+                .field("player", orEmpty(entry.playerName()))
+                .field("level", orEmpty(entry.levelName()))
+                .field("x", entry.x())
+                .field("y", entry.y())
+                .field("z", entry.z())
+                .field("material", orEmpty(entry.materialName()))
+                .field("amount", entry.amount())
+                .field("action", entry.actionCode())
+                .endObject();
+    }
+
+    private void writeHistory(JsonStreamWriter json, RollbackHistoryDAO.HistoryEntry entry) throws IOException {
+        json.beginObject()
+                .field("id", entry.id())
+                .field("ts", entry.ts())
+                .field("actor", orEmpty(entry.actorName()))
+                .field("source", orEmpty(entry.source()))
+                .field("time", orEmpty(entry.timeLabel()))
+                .field("durationMs", entry.durationMs())
+                .field("player", orEmpty(entry.player()))
+                .field("radius", orEmpty(entry.radius()))
+                .field("scope", orEmpty(entry.scope()))
+                .endObject();
+    }
+
+    private void writeRollbackAction(JsonStreamWriter json, RollbackActionLogDAO.LoggedRollbackAction entry) throws IOException {
+        json.beginObject()
+                .field("id", entry.id())
+                .field("jobId", entry.jobId())
+                .field("ts", entry.ts())
+                .field("type", orEmpty(entry.type()))
+                .field("level", orEmpty(entry.levelName()))
+                .field("x", entry.x())
+                .field("y", entry.y())
+                .field("z", entry.z())
+                .field("material", orEmpty(entry.material()))
+                .field("oldMaterial", orEmpty(entry.oldMaterial()))
+                .field("amount", entry.amount())
+                .field("actionType", entry.actionType())
+                .endObject();
+    }
+
+    // The dashboard expects "" rather than null for missing names
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
     }
 
     private int parseLimit(String rawQuery, int def) {
@@ -935,10 +1390,10 @@ public final class RollbackWebServer {
         rollbackManager.startRollback(entry.ts, "single action", player, Optional.of(area), Optional.of("1b"), RollbackManager.RollbackKind.ITEMS_ONLY, historyId);
     }
 
-    private void triggerHistoryUndo(RollbackRequestEntry entry) throws SQLException {
+    private void triggerHistoryUndo(RollbackRequestEntry entry) throws SQLException, IOException {
         if (entry.jobId <= 0) return;
         List<Long> ids = List.of(entry.jobId);
-        var actions = actionLogDAO.loadActionsForJobs(ids);
+        var actions = rollbackManager.actionStore().loadActionsForJobs(ids);
         if (actions.isEmpty()) return;
         rollbackManager.startUndo(actions, "undo history " + entry.jobId);
     }
@@ -962,26 +1417,6 @@ public final class RollbackWebServer {
         return URLDecoder.decode(value, StandardCharsets.UTF_8);
     }
 
-    private String loadHtml(String resourcePath) {
-        try (var in = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
-            if (in == null) return null;
-            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            LOGGER.warn("Failed to load web UI HTML {}", resourcePath, e);
-            return null;
-        }
-    }
-
-    private String loadResourceAsString(String path) {
-        try (var in = getClass().getClassLoader().getResourceAsStream(path)) {
-            if (in == null) return null;
-            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            LOGGER.warn("Failed to load resource {}", path, e);
-            return null;
-        }
-    }
-
     private String trimToNull(String s) {
         if (s == null) return null;
         String t = s.trim();
@@ -1093,6 +1528,47 @@ public final class RollbackWebServer {
     private record AuditFilters(Optional<String> player, Optional<String> dimension, Optional<Integer> blockAction, Optional<Integer> containerAction) {
     }
 
+    /**
+     * Follows the rows of one streamed audit page (newest first) to build the cursors of the pages around it from the
+     * (ts, key) of its first and last row.
+     */
+    private static final class PageTracker {
+        private final Optional<AuditCursor> request;
+        private final int limit;
+        private int rows;
+        private long firstTs;
+        private List<Long> firstKey;
+        private long lastTs;
+        private List<Long> lastKey;
+
+        PageTracker(Optional<AuditCursor> request, int limit) {
+            this.request = request;
+            this.limit = limit;
+        }
+
+        void add(long ts, List<Long> key) {
+            if (rows == 0) {
+                firstTs = ts;
+                firstKey = key;
+            }
+            lastTs = ts;
+            lastKey = key;
+            rows++;
+        }
+
+        String older() {
+            if (rows == 0) return null;
+            boolean more = rows >= limit || (request.isPresent() && !request.get().older());
+            return more ? AuditCursor.format(lastTs, lastKey) : null;
+        }
+
+        String newer() {
+            if (rows == 0 || request.isEmpty()) return null;
+            boolean more = request.get().older() || rows >= limit;
+            return more ? AuditCursor.format(firstTs, firstKey) : null;
+        }
+    }
+
     private record AuthResult(boolean allowed, Optional<Integer> userId, Optional<String> username) {
     }
 
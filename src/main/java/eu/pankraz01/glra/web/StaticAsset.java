@@ -0,0 +1,97 @@
+package eu.pankraz01.glra.web;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A web UI resource loaded once at server start: the raw bytes, a gzip copy (only kept when it is actually smaller)
+ * and a strong ETag derived from the content hash.
+ */
+final class StaticAsset {
+    private final String contentType;
+    private final byte[] raw;
+    private final byte[] gzip;
+    private final String hash;
+
+    private StaticAsset(String contentType, byte[] raw) throws IOException {
+        this.contentType = contentType;
+        this.raw = raw;
+        byte[] compressed = gzip(raw);
+        this.gzip = compressed.length < raw.length ? compressed : null;
+        this.hash = sha256(raw).substring(0, 20);
+    }
+
+    /**
+     * Load {@code path} from the classloader, optionally rewriting its text first; returns null if the resource is missing.
+     */
+    static StaticAsset load(ClassLoader loader, String path, String contentType, UnaryOperator<String> rewrite) throws IOException {
+        try (InputStream in = loader.getResourceAsStream(path)) {
+            if (in == null) return null;
+            byte[] data = in.readAllBytes();
+            if (rewrite != null) {
+                data = rewrite.apply(new String(data, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            }
+            return new StaticAsset(contentType, data);
+        }
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    /** Short content hash, usable as a cache-busting version in URLs. */
+    String hash() {
+        return hash;
+    }
+
+    boolean hasGzip() {
+        return gzip != null;
+    }
+
+    byte[] body(boolean gzipped) {
+        return gzipped ? gzip : raw;
+    }
+
+    /** Strong ETag; the gzip representation gets its own tag since its bytes differ. */
+    String etag(boolean gzipped) {
+        return gzipped ? "\"" + hash + "-gz\"" : "\"" + hash + "\"";
+    }
+
+    /**
+     * True if an `If-None-Match` header matches either representation of this asset.
+     */
+    boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) return true;
+            // weak comparison is fine for conditional GETs (RFC 9110 13.1.2)
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag(false)) || tag.equals(etag(true))) return true;
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package eu.pankraz01.glra.web;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import com.mojang.logging.LogUtils;
+
+import eu.pankraz01.glra.Config;
+import eu.pankraz01.glra.database.DatabaseSetup;
+import eu.pankraz01.glra.database.dao.WebTokenDAO;
+import eu.pankraz01.glra.database.dao.WebTokenDAO.TokenInfo;
+import eu.pankraz01.glra.database.dao.WebTokenDAO.TokenOwner;
+
+/**
+ * In-memory copy of the per-user web tokens, so authorizing a web request does not cost a database lookup.
+ * <p>
+ * Tokens are held as SHA-256 digests only and confirmed with a constant-time comparison. The cache is loaded when the
+ * web server starts (or, if database setup is still running then, as soon as it finishes), reloaded every
+ * `webTokenReconcileSeconds` to pick up changes made elsewhere (e.g. another server on the same database), and updated
+ * right away by `/gl web token add/remove` through {@link #tokenCreated} and {@link #invalidate}. All database reads run
+ * on the `glra-web-tokens` thread. Until the first load succeeds, lookups fall back to the database.
+ */
+public final class WebTokenCache {
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final WebTokenDAO TOKENS = new WebTokenDAO();
+
+    private record Entry(byte[] digest, TokenOwner owner) {
+    }
+
+    // keyed by the hex digest; replaced as a whole by each reload
+    private static volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private static volatile boolean loaded;
+    private static ScheduledExecutorService scheduler;
+
+    private WebTokenCache() {
+    }
+
+    /**
+     * Load the tokens and schedule the periodic reconcile. Called when the web server starts.
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+        long interval = Config.WEB_TOKEN_RECONCILE_SECONDS.get();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "glra-web-tokens");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.execute(WebTokenCache::reloadSafely);
+        scheduler.scheduleWithFixedDelay(WebTokenCache::reloadSafely, interval, interval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Reload in the background; called once database setup has finished, so a cache started before that does not wait
+     * for the next reconcile.
+     */
+    public static synchronized void requestReload() {
+        if (scheduler != null) {
+            scheduler.execute(WebTokenCache::reloadSafely);
+        }
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        entries = new ConcurrentHashMap<>();
+        loaded = false;
+    }
+
+    /**
+     * The owner of {@code token}, or empty if it is unknown.
+     */
+    public static Optional<TokenOwner> lookup(String token) throws SQLException {
+        if (!loaded) {
+            return TOKENS.findUserByToken(token);
+        }
+        byte[] digest = digest(token);
+        Entry entry = entries.get(HexFormat.of().formatHex(digest));
+        if (entry == null || !MessageDigest.isEqual(entry.digest(), digest)) return Optional.empty();
+        return Optional.of(entry.owner());
+    }
+
+    /**
+     * Constant-time comparison of two secrets; compares digests so the time does not depend on the lengths either.
+     */
+    public static boolean secretsEqual(String expected, String provided) {
+        return MessageDigest.isEqual(digest(expected), digest(provided));
+    }
+
+    /**
+     * Drop the cached tokens of {@code username}, e.g. after they were removed. Only the in-memory copy is touched here;
+     * the reload that confirms it runs in the background.
+     */
+    public static void invalidate(String username) {
+        entries.values().removeIf(entry -> username.equalsIgnoreCase(entry.owner().username()));
+        requestReload();
+    }
+
+    /**
+     * Replace the cached token of the token's user with {@code created}, right after it was stored.
+     */
+    public static void tokenCreated(TokenInfo created) {
+        Map<String, Entry> current = entries;
+        current.values().removeIf(entry -> entry.owner().userId() == created.userId());
+        byte[] digest = digest(created.token());
+        current.put(HexFormat.of().formatHex(digest), new Entry(digest, new TokenOwner(created.userId(), created.username())));
+        requestReload();
+    }
+
+    // Runs on the scheduler thread only. A reload that read the table before an in-memory change may replace the map
+    // after it; the reload requested with that change follows it and restores the change.
+    private static void reloadSafely() {
+        // the table may not exist yet; lookups use the database until a later reload succeeds
+        if (!DatabaseSetup.isReady()) return;
+        try {
+            Map<String, Entry> next = new ConcurrentHashMap<>();
+            for (TokenInfo info : TOKENS.loadAllTokens()) {
+                if (info.token() == null) continue;
+                byte[] digest = digest(info.token());
+                next.put(HexFormat.of().formatHex(digest), new Entry(digest, new TokenOwner(info.userId(), info.username())));
+            }
+            entries = next;
+            loaded = true;
+        } catch (SQLException e) {
+            LOGGER.warn("Could not load web tokens; keeping the previous copy", e);
+        }
+    }
+
+    private static byte[] digest(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
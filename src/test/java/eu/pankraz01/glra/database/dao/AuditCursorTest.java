@@ -0,0 +1,53 @@
+package eu.pankraz01.glra.database.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class AuditCursorTest {
+    @Test
+    void parsesTimestampAndKeys() {
+        AuditCursor cursor = AuditCursor.parse("1700000000000,42", true).orElseThrow();
+        assertEquals(1_700_000_000_000L, cursor.ts());
+        assertEquals(List.of(42L), cursor.keys());
+        assertEquals(42L, cursor.key());
+        assertTrue(cursor.older());
+
+        AuditCursor tuple = AuditCursor.parse(" 5, 1 ,-2,3 ", false).orElseThrow();
+        assertEquals(5L, tuple.ts());
+        assertEquals(List.of(1L, -2L, 3L), tuple.keys());
+        assertFalse(tuple.older());
+    }
+
+    @Test
+    void formatRoundTrips() {
+        List<Long> keys = List.of(7L, 3_000_000_000L, -1L);
+        String raw = AuditCursor.format(123L, keys);
+        assertEquals("123,7,3000000000,-1", raw);
+        assertEquals(new AuditCursor(123L, keys, true), AuditCursor.parse(raw, true).orElseThrow());
+    }
+
+    @Test
+    void acceptsUpToEightKeys() {
+        assertTrue(AuditCursor.parse("0,1,2,3,4,5,6,7,8", true).isPresent());
+        assertFalse(AuditCursor.parse("0,1,2,3,4,5,6,7,8,9", true).isPresent());
+    }
+
+    @Test
+    void rejectsMissingOrMalformedInput() {
+        for (String raw : new String[] { null, "", "  ", "5", "5,", ",5", "a,1", "1,b", "1,2,,3", "1;2", "1,2.5",
+                "99999999999999999999,1" }) {
+            assertFalse(AuditCursor.parse(raw, true).isPresent(), String.valueOf(raw));
+        }
+    }
+
+    @Test
+    void requiresAKey() {
+        assertThrows(IllegalArgumentException.class, () -> new AuditCursor(1L, List.of(), false));
+    }
+}
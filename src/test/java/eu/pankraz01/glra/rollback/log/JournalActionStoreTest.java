@@ -0,0 +1,121 @@
+package eu.pankraz01.glra.rollback.log;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.LoggedRollbackAction;
+import eu.pankraz01.glra.database.dao.RollbackActionLogDAO.PendingRollbackAction;
+
+class JournalActionStoreTest {
+    // small enough that a few hundred records span several segments
+    private static final int SEGMENT_SIZE = 8 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsReadBackAsWritten() throws Exception {
+        JournalActionStore store = new JournalActionStore(directory, SEGMENT_SIZE);
+        List<PendingRollbackAction> written = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            PendingRollbackAction entry = entry(7L, i);
+            written.add(entry);
+            store.append(entry);
+        }
+
+        // newest first
+        List<LoggedRollbackAction> read = store.loadActionsForJobs(List.of(7L));
+        assertEquals(written.size(), read.size());
+        for (int i = 0; i < written.size(); i++) {
+            assertRoundTrip(written.get(i), read.get(read.size() - 1 - i));
+            assertEquals(i + 1, read.get(read.size() - 1 - i).id());
+        }
+        assertTrue(segmentCount() > 1, "records should have spilled into more than one segment");
+    }
+
+    @Test
+    void jobsAreKeptApart() throws Exception {
+        JournalActionStore store = new JournalActionStore(directory, SEGMENT_SIZE);
+        store.append(entry(1L, 0));
+        store.append(entry(2L, 1));
+        store.append(entry(1L, 2));
+
+        List<LoggedRollbackAction> job1 = store.loadActionsForJobs(List.of(1L));
+        assertEquals(2, job1.size());
+        assertTrue(job1.stream().allMatch(action -> action.jobId() == 1L));
+        assertEquals(Map.of(1L, 2L, 2L, 1L), store.countActionsByJob());
+    }
+
+    @Test
+    void reopenedStoreContinuesIdsAndSegments() throws Exception {
+        JournalActionStore first = new JournalActionStore(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 50; i++) {
+            first.append(entry(3L, i));
+        }
+        assertTrue(first.awaitFlushed(5_000L));
+        int segments = segmentCount();
+
+        JournalActionStore second = new JournalActionStore(directory, SEGMENT_SIZE);
+        second.append(entry(3L, 50));
+
+        List<LoggedRollbackAction> read = second.loadActionsForJobs(List.of(3L));
+        assertEquals(51, read.size());
+        assertEquals(51L, read.get(0).id());
+        assertEquals(segments + 1, segmentCount(), "the reopened store must start a new segment, not overwrite one");
+    }
+
+    @Test
+    void loadActionsAfterReturnsOldestFirst() throws Exception {
+        JournalActionStore store = new JournalActionStore(directory, SEGMENT_SIZE);
+        for (int i = 0; i < 200; i++) {
+            store.append(entry(4L, i));
+        }
+
+        List<LoggedRollbackAction> page = store.loadActionsAfter(150L, 10);
+        assertEquals(10, page.size());
+        assertEquals(151L, page.get(0).id());
+        assertEquals(160L, page.get(9).id());
+        assertTrue(store.loadActionsAfter(200L, 10).isEmpty());
+    }
+
+    private static PendingRollbackAction entry(long jobId, int i) {
+        boolean container = i % 2 == 1;
+        byte[] itemData = i % 3 == 0 ? new byte[] { 1, 2, (byte) i } : null;
+        // null names and non-ASCII text must survive the length-prefixed encoding
+        String oldMaterial = i % 5 == 0 ? null : "minecraft:stone_äß_" + i;
+        return new PendingRollbackAction(jobId, 1_700_000_000_000L + i, container ? "container" : "block",
+                "minecraft:overworld", i, -64 + i, -i, "minecraft:dirt", oldMaterial, i * 2, itemData, i % 4);
+    }
+
+    private static void assertRoundTrip(PendingRollbackAction expected, LoggedRollbackAction actual) {
+        assertEquals(expected.jobId(), actual.jobId());
+        assertEquals(expected.ts(), actual.ts());
+        assertEquals(expected.type(), actual.type());
+        assertEquals(expected.levelName(), actual.levelName());
+        assertEquals(expected.x(), actual.x());
+        assertEquals(expected.y(), actual.y());
+        assertEquals(expected.z(), actual.z());
+        assertEquals(expected.material(), actual.material());
+        assertEquals(expected.oldMaterial(), actual.oldMaterial());
+        assertEquals(expected.amount(), actual.amount());
+        assertArrayEquals(expected.itemData(), actual.itemData());
+        assertEquals(expected.actionType(), actual.actionType());
+    }
+
+    private int segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return (int) files.filter(path -> path.getFileName().toString().endsWith(".glj")).count();
+        }
+    }
+}
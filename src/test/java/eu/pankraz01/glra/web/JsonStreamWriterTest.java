@@ -0,0 +1,107 @@
+package eu.pankraz01.glra.web;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class JsonStreamWriterTest {
+    @Test
+    void escapesQuotesBackslashesAndControlCharacters() throws IOException {
+        assertEquals("\"a\\\"b\\\\c\"", string("a\"b\\c"));
+        assertEquals("\"\\n\\r\\t\\b\\f\"", string("\n\r\t\b\f"));
+        assertEquals("\"\\u0000\\u001f\\u000b\"", string("\u0000\u001f\u000b"));
+        // '/' and DEL need no escaping
+        assertEquals("\"a/b\u007f\"", string("a/b\u007f"));
+    }
+
+    @Test
+    void encodesMultiByteCharactersAsUtf8() throws IOException {
+        String text = "äöü ß € 漢字";
+        assertArrayEquals(("\"" + text + "\"").getBytes(StandardCharsets.UTF_8), stringBytes(text));
+    }
+
+    @Test
+    void encodesSurrogatePairsAsFourBytes() throws IOException {
+        String text = "x😀y";
+        byte[] encoded = stringBytes(text);
+        assertEquals(1 + 1 + 4 + 1 + 1, encoded.length);
+        assertArrayEquals(("\"" + text + "\"").getBytes(StandardCharsets.UTF_8), encoded);
+    }
+
+    @Test
+    void replacesUnpairedSurrogatesLikeStringGetBytes() throws IOException {
+        // lone high, lone low, high at the very end, and two highs in a row
+        for (String text : new String[] { "a\uD83Db", "a\uDE00b", "a\uD83D", "\uD83D😀" }) {
+            assertArrayEquals(("\"" + text + "\"").getBytes(StandardCharsets.UTF_8), stringBytes(text), text);
+        }
+    }
+
+    @Test
+    void separatesMembersAndElements() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (JsonStreamWriter json = new JsonStreamWriter(target)) {
+            json.beginObject()
+                    .field("a", 1L)
+                    .field("b", true)
+                    .field("c", (String) null)
+                    .name("d").beginArray().value("x").value(2L).nullValue().beginObject().endObject().endArray()
+                    .name("e").beginArray().endArray()
+                    .endObject();
+        }
+        assertEquals("{\"a\":1,\"b\":true,\"c\":null,\"d\":[\"x\",2,null,{}],\"e\":[]}", utf8(target));
+    }
+
+    @Test
+    void closeToUnwindsOpenContainers() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (JsonStreamWriter json = new JsonStreamWriter(target)) {
+            json.beginObject();
+            int depth = json.depth();
+            json.name("rows").beginArray().beginObject().field("id", 1L).name("pending");
+            json.closeTo(depth).field("error", "failed").endObject();
+        }
+        assertEquals("{\"rows\":[{\"id\":1,\"pending\":null}],\"error\":\"failed\"}", utf8(target));
+    }
+
+    @Test
+    void stringsLongerThanTheBufferSurviveFlushes() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4_000; i++) {
+            sb.append("é\"😀\u0001");
+        }
+        String text = sb.toString();
+        String expected = "\"" + text.replace("\"", "\\\"").replace("\u0001", "\\u0001") + "\"";
+        assertArrayEquals(expected.getBytes(StandardCharsets.UTF_8), stringBytes(text));
+    }
+
+    @Test
+    void flushPushesBufferedBytes() throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        JsonStreamWriter json = new JsonStreamWriter(target);
+        json.beginArray().value(1L);
+        assertEquals(0, target.size());
+        json.flush();
+        assertEquals("[1", utf8(target));
+    }
+
+    private static String string(String value) throws IOException {
+        return new String(stringBytes(value), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] stringBytes(String value) throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (JsonStreamWriter json = new JsonStreamWriter(target)) {
+            json.value(value);
+        }
+        return target.toByteArray();
+    }
+
+    private static String utf8(ByteArrayOutputStream target) {
+        return target.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package eu.pankraz01.glra.web;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+import eu.pankraz01.glra.web.ResponseCompression.Coding;
+
+class ResponseCompressionTest {
+    @Test
+    void acceptsListedCodings() {
+        assertTrue(ResponseCompression.acceptsEncoding("gzip", "gzip"));
+        assertTrue(ResponseCompression.acceptsEncoding("br, GZIP, deflate", "gzip"));
+        assertTrue(ResponseCompression.acceptsEncoding("deflate , gzip ;q=1", "gzip"));
+        assertFalse(ResponseCompression.acceptsEncoding("deflate, br", "gzip"));
+        assertFalse(ResponseCompression.acceptsEncoding(null, "gzip"));
+        assertFalse(ResponseCompression.acceptsEncoding("", "gzip"));
+    }
+
+    @Test
+    void honoursQValues() {
+        assertTrue(ResponseCompression.acceptsEncoding("gzip;q=0.5", "gzip"));
+        assertTrue(ResponseCompression.acceptsEncoding("gzip;q=0.001", "gzip"));
+        assertFalse(ResponseCompression.acceptsEncoding("gzip;q=0", "gzip"));
+        assertFalse(ResponseCompression.acceptsEncoding("gzip; q=0.000", "gzip"));
+        // an unparsable weight does not forbid the coding
+        assertTrue(ResponseCompression.acceptsEncoding("gzip;q=abc", "gzip"));
+    }
+
+    @Test
+    void wildcardAppliesUnlessTheCodingIsListed() {
+        assertTrue(ResponseCompression.acceptsEncoding("*", "deflate"));
+        assertFalse(ResponseCompression.acceptsEncoding("*;q=0", "deflate"));
+        assertFalse(ResponseCompression.acceptsEncoding("*, gzip;q=0", "gzip"));
+        assertTrue(ResponseCompression.acceptsEncoding("*;q=0, gzip", "gzip"));
+    }
+
+    @Test
+    void gzipStreamIsValidGzip() throws IOException {
+        byte[] body = sampleBody();
+        byte[] encoded = encode(Coding.GZIP, body);
+
+        // fixed 10-byte header: magic, deflate, no flags, no mtime, unknown OS
+        assertArrayEquals(new byte[] { 0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff }, Arrays.copyOf(encoded, 10));
+        // GZIPInputStream verifies the CRC32 and length trailer
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void emptyGzipBodyIsValid() throws IOException {
+        byte[] encoded = encode(Coding.GZIP, new byte[0]);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            assertEquals(0, in.readAllBytes().length);
+        }
+    }
+
+    @Test
+    void deflateStreamIsZlib() throws IOException {
+        byte[] body = sampleBody();
+        byte[] encoded = encode(Coding.DEFLATE, body);
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(encoded))) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void pooledDeflatersStartClean() throws IOException {
+        byte[] first = sampleBody();
+        byte[] second = "second response".repeat(50).getBytes(StandardCharsets.UTF_8);
+        encode(Coding.GZIP, first);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(encode(Coding.GZIP, second)))) {
+            assertArrayEquals(second, in.readAllBytes());
+        }
+    }
+
+    @Test
+    void closeFinishesAndClosesTheTarget() throws IOException {
+        boolean[] closed = new boolean[1];
+        ByteArrayOutputStream target = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        OutputStream out = ResponseCompression.wrap(target, Coding.GZIP, Deflater.BEST_SPEED);
+        out.write(sampleBody());
+        out.close();
+        int length = target.size();
+        out.close();
+        assertTrue(closed[0]);
+        assertEquals(length, target.size(), "a second close must not write another trailer");
+    }
+
+    // written in uneven pieces, including single bytes, so every write path feeds the CRC
+    private static byte[] encode(Coding coding, byte[] body) throws IOException {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        try (OutputStream out = ResponseCompression.wrap(target, coding, Deflater.DEFAULT_COMPRESSION)) {
+            int pos = 0;
+            int chunk = 1;
+            while (pos < body.length) {
+                int len = Math.min(chunk, body.length - pos);
+                if (len == 1) {
+                    out.write(body[pos]);
+                } else {
+                    out.write(body, pos, len);
+                }
+                pos += len;
+                chunk = chunk * 3 + 1;
+            }
+        }
+        return target.toByteArray();
+    }
+
+    private static byte[] sampleBody() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            sb.append("{\"ts\":").append(1_700_000_000_000L + i).append(",\"player\":\"Steve\",\"msg\":\"hällo ").append(i).append("\"}");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
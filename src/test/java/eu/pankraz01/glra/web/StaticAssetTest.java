@@ -0,0 +1,87 @@
+package eu.pankraz01.glra.web;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+class StaticAssetTest {
+    private static final String PAGE = "<html><body>" + "<p>audit</p>".repeat(200) + "</body></html>";
+
+    @Test
+    void matchesEitherRepresentation() throws IOException {
+        StaticAsset asset = load(PAGE);
+        assertTrue(asset.hasGzip());
+        assertTrue(asset.matches(asset.etag(false)));
+        assertTrue(asset.matches(asset.etag(true)));
+    }
+
+    @Test
+    void matchesWeakTagsListsAndWildcard() throws IOException {
+        StaticAsset asset = load(PAGE);
+        assertTrue(asset.matches("W/" + asset.etag(false)));
+        assertTrue(asset.matches("\"other\", " + asset.etag(true)));
+        assertTrue(asset.matches("*"));
+    }
+
+    @Test
+    void rejectsOtherTags() throws IOException {
+        StaticAsset asset = load(PAGE);
+        assertFalse(asset.matches(null));
+        assertFalse(asset.matches(" "));
+        assertFalse(asset.matches("\"other\""));
+        // the tag without its quotes is a different entity tag
+        assertFalse(asset.matches(asset.hash()));
+        assertFalse(asset.matches(load(PAGE + " ").etag(false)));
+    }
+
+    @Test
+    void gzipCopyDecodesToTheRawBytes() throws IOException {
+        StaticAsset asset = load(PAGE);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(asset.body(true)))) {
+            assertArrayEquals(asset.body(false), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void incompressibleContentHasNoGzipCopy() throws IOException {
+        StaticAsset asset = load("x");
+        assertFalse(asset.hasGzip());
+        assertNull(asset.body(true));
+    }
+
+    @Test
+    void rewriteIsAppliedBeforeHashing() throws IOException {
+        StaticAsset plain = load(PAGE);
+        StaticAsset rewritten = StaticAsset.load(loaderFor(PAGE), "page.html", "text/html", text -> text.replace("audit", "undo"));
+        assertEquals(PAGE.replace("audit", "undo"), new String(rewritten.body(false), StandardCharsets.UTF_8));
+        assertFalse(plain.hash().equals(rewritten.hash()));
+    }
+
+    @Test
+    void missingResourceLoadsAsNull() throws IOException {
+        assertNull(StaticAsset.load(loaderFor(PAGE), "missing.html", "text/html", null));
+    }
+
+    private static StaticAsset load(String content) throws IOException {
+        return StaticAsset.load(loaderFor(content), "page.html", "text/html", null);
+    }
+
+    private static ClassLoader loaderFor(String content) {
+        return new ClassLoader(null) {
+            @Override
+            public InputStream getResourceAsStream(String name) {
+                return "page.html".equals(name) ? new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) : null;
+            }
+        };
+    }
+}
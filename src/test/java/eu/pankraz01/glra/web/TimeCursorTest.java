@@ -0,0 +1,99 @@
+package eu.pankraz01.glra.web;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import eu.pankraz01.glra.web.AuditTail.TimeCursor;
+
+class TimeCursorTest {
+    private static final long NOW = 1_700_000_000_000L;
+
+    private record Row(long ts, String text) {
+    }
+
+    @Test
+    void restartTrailsNowByTheWriteLag() {
+        TimeCursor<Row> cursor = cursor();
+        assertEquals(NOW - AuditTail.WRITE_LAG_MS, cursor.from());
+    }
+
+    @Test
+    void reReadRowsAreNotPublishedAgain() {
+        TimeCursor<Row> cursor = cursor();
+        Row a = new Row(NOW + 1, "a");
+        Row b = new Row(NOW + 2, "b");
+        assertEquals(List.of(a, b), cursor.advance(List.of(a, b)));
+
+        Row c = new Row(NOW + 3, "c");
+        assertEquals(List.of(c), cursor.advance(List.of(a, b, c)));
+        assertTrue(cursor.advance(List.of(a, b, c)).isEmpty());
+    }
+
+    @Test
+    void equalRowsInOnePollAreAllPublished() {
+        TimeCursor<Row> cursor = cursor();
+        Row row = new Row(NOW + 1, "same");
+        assertEquals(List.of(row, row), cursor.advance(List.of(row, row)));
+        // re-reading both is harmless, a third equal row is new
+        assertTrue(cursor.advance(List.of(row, row)).isEmpty());
+        assertEquals(List.of(row), cursor.advance(List.of(row, row, row)));
+    }
+
+    @Test
+    void partialPollTrailsTheNewestRow() {
+        TimeCursor<Row> cursor = cursor();
+        long newest = NOW + 60_000L;
+        cursor.advance(List.of(new Row(NOW + 1, "a"), new Row(newest, "b")));
+        assertEquals(newest - AuditTail.WRITE_LAG_MS, cursor.from());
+        assertFalse(cursor.skipped);
+
+        // rows older than the bound are forgotten; the newest one is still recognised
+        assertTrue(cursor.advance(List.of(new Row(newest, "b"))).isEmpty());
+    }
+
+    @Test
+    void fullPollContinuesFromItsLastTimestamp() {
+        TimeCursor<Row> cursor = cursor();
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < AuditTail.POLL_LIMIT; i++) {
+            rows.add(new Row(NOW + i / 10, "row" + i));
+        }
+        assertEquals(rows, cursor.advance(rows));
+        long last = rows.get(rows.size() - 1).ts();
+        assertEquals(last, cursor.from());
+        assertFalse(cursor.skipped);
+
+        // the next poll starts at that millisecond again and only publishes what it had not reached yet
+        List<Row> next = new ArrayList<>(rows.subList(rows.size() - 10, rows.size()));
+        Row fresh = new Row(last, "late");
+        next.add(fresh);
+        assertEquals(List.of(fresh), cursor.advance(next));
+    }
+
+    @Test
+    void fullPollWithinOneMillisecondStepsPastIt() {
+        TimeCursor<Row> cursor = cursor();
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < AuditTail.POLL_LIMIT; i++) {
+            rows.add(new Row(NOW + 5, "row" + i));
+        }
+        cursor.advance(rows);
+        assertEquals(NOW + 6, cursor.from());
+        assertTrue(cursor.skipped);
+
+        cursor.advance(List.of(new Row(NOW + 6, "next")));
+        assertFalse(cursor.skipped);
+    }
+
+    private static TimeCursor<Row> cursor() {
+        TimeCursor<Row> cursor = new TimeCursor<>(Row::ts);
+        cursor.restart(NOW);
+        return cursor;
+    }
+}